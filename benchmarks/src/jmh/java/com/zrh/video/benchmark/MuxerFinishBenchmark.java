@@ -0,0 +1,65 @@
+package com.zrh.video.benchmark;
+
+import com.zrh.video.codec.CodecBufferInfo;
+import com.zrh.video.mp4.MP4Builder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * finishMovie的耗时，包括生成样本表和写入moov。每次调用前写入完整的合成流，
+ * 写入过程不计入测量
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@State(Scope.Thread)
+public class MuxerFinishBenchmark {
+    @Param
+    private StreamScenario scenario;
+
+    private SyntheticStream stream;
+    private final CodecBufferInfo info = new CodecBufferInfo();
+    private File file;
+    private MP4Builder builder;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws Exception {
+        stream = new SyntheticStream(scenario);
+        file = File.createTempFile("finish", ".mp4");
+    }
+
+    @Setup(Level.Invocation)
+    public void writeStream() throws Exception {
+        builder = stream.createMovie(file);
+        stream.writeAll(builder, info);
+    }
+
+    @Benchmark
+    public long finishMovie() throws Exception {
+        builder.finishMovie(false);
+        return builder.getWrittenSize();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        file.delete();
+    }
+}
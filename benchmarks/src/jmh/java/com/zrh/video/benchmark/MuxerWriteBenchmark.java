@@ -0,0 +1,74 @@
+package com.zrh.video.benchmark;
+
+import com.zrh.video.codec.CodecBufferInfo;
+import com.zrh.video.mp4.MP4Builder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * writeSampleData的吞吐量，每次操作写入一个样本。每轮迭代写入同一个文件，
+ * 序列写完后时间戳顺延继续写，样本表随迭代时间增长，与长时间录制时的情况一致
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class MuxerWriteBenchmark {
+    @Param
+    private StreamScenario scenario;
+
+    private SyntheticStream stream;
+    private final CodecBufferInfo info = new CodecBufferInfo();
+    private File file;
+    private MP4Builder builder;
+    private int index;
+    private long offsetUs;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws Exception {
+        stream = new SyntheticStream(scenario);
+        file = File.createTempFile("write", ".mp4");
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration() throws Exception {
+        builder = stream.createMovie(file);
+        index = 0;
+        offsetUs = 0;
+    }
+
+    @Benchmark
+    public boolean writeSample() throws Exception {
+        boolean flushed = stream.write(builder, index, offsetUs, info);
+        if (++index == stream.getSampleCount()) {
+            index = 0;
+            offsetUs += stream.getDurationUs();
+        }
+        return flushed;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownIteration() throws Exception {
+        builder.finishMovie(true);
+        builder = null;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        file.delete();
+    }
+}
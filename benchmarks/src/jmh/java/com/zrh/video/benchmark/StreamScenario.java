@@ -0,0 +1,52 @@
+package com.zrh.video.benchmark;
+
+import com.zrh.video.mp4.TrackFormat;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * 基准测试使用的合成流场景，长录像场景缩小了单帧大小，避免磁盘写入掩盖封装本身的开销
+ */
+public enum StreamScenario {
+    // 15秒720p30的短视频，44.1kHz AAC
+    SHORT_CLIP(15, 1280, 720, 30, 30, 60_000, 8_000,
+            TrackFormat.MIMETYPE_AUDIO_AAC, 44100, 2, 1024, 400),
+    // 1小时1080p60的录像，48kHz AAC
+    LONG_RECORDING(3600, 1920, 1080, 60, 60, 4_000, 500,
+            TrackFormat.MIMETYPE_AUDIO_AAC, 48000, 2, 1024, 64),
+    // 10分钟低帧率视频，AMR-NB每20ms一个32字节的小样本
+    AUDIO_HEAVY(600, 320, 240, 5, 10, 2_000, 200,
+            TrackFormat.MIMETYPE_AUDIO_AMR_NB, 8000, 1, 160, 32);
+
+    final int durationSeconds;
+    final int width;
+    final int height;
+    final int frameRate;
+    final int keyFrameInterval;
+    final int keyFrameSize;
+    final int frameSize;
+    final String audioMime;
+    final int sampleRate;
+    final int channelCount;
+    // 每个音频样本包含的PCM采样数
+    final int samplesPerFrame;
+    final int audioFrameSize;
+
+    StreamScenario(int durationSeconds, int width, int height, int frameRate, int keyFrameInterval,
+                   int keyFrameSize, int frameSize, String audioMime, int sampleRate, int channelCount,
+                   int samplesPerFrame, int audioFrameSize) {
+        this.durationSeconds = durationSeconds;
+        this.width = width;
+        this.height = height;
+        this.frameRate = frameRate;
+        this.keyFrameInterval = keyFrameInterval;
+        this.keyFrameSize = keyFrameSize;
+        this.frameSize = frameSize;
+        this.audioMime = audioMime;
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+        this.samplesPerFrame = samplesPerFrame;
+        this.audioFrameSize = audioFrameSize;
+    }
+}
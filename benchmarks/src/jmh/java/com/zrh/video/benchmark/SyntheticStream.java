@@ -0,0 +1,174 @@
+package com.zrh.video.benchmark;
+
+import com.zrh.video.codec.CodecBufferInfo;
+import com.zrh.video.mp4.MP4Builder;
+import com.zrh.video.mp4.Mp4Movie;
+import com.zrh.video.mp4.TrackFormat;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * 按场景预先生成交错的音视频样本序列，写入时只填充CodecBufferInfo，不在测量中分配内存
+ */
+public class SyntheticStream {
+    private static final byte[] SPS = bytes(
+            0x00, 0x00, 0x00, 0x01, 0x67, 0x64, 0x00, 0x1F, 0xAC, 0xD9, 0x40, 0x50, 0x05, 0xBB, 0x01, 0x10,
+            0x00, 0x00, 0x03, 0x00, 0x10, 0x00, 0x00, 0x03, 0x03, 0xC0, 0xF1, 0x83, 0x19, 0x60
+    );
+    private static final byte[] PPS = bytes(0x00, 0x00, 0x00, 0x01, 0x68, 0xEB, 0xE3, 0xCB, 0x22, 0xC0);
+    // 样本大小在平均值上下浮动的比例
+    private static final float SIZE_JITTER = 0.25f;
+
+    private final StreamScenario scenario;
+    private final boolean[] audio;
+    private final long[] timestamps;
+    private final int[] sizes;
+    private final int[] flags;
+    private final ByteBuffer keyFrame;
+    private final ByteBuffer frame;
+    private final ByteBuffer audioFrame;
+    private final long durationUs;
+    private int videoTrack = -1;
+    private int audioTrack = -1;
+
+    public SyntheticStream(StreamScenario scenario) {
+        this.scenario = scenario;
+        durationUs = scenario.durationSeconds * 1_000_000L;
+        int videoCount = scenario.durationSeconds * scenario.frameRate;
+        int audioCount = (int) ((long) scenario.durationSeconds * scenario.sampleRate / scenario.samplesPerFrame);
+        int count = videoCount + audioCount;
+        audio = new boolean[count];
+        timestamps = new long[count];
+        sizes = new int[count];
+        flags = new int[count];
+
+        // 按时间戳交错，与编码器和音频提取交替输出的顺序接近
+        Random random = new Random(scenario.ordinal());
+        int video = 0;
+        int audioIndex = 0;
+        for (int i = 0; i < count; i++) {
+            long videoUs = video < videoCount ? video * 1_000_000L / scenario.frameRate : Long.MAX_VALUE;
+            long audioUs = audioIndex < audioCount
+                    ? audioIndex * (long) scenario.samplesPerFrame * 1_000_000L / scenario.sampleRate : Long.MAX_VALUE;
+            if (videoUs <= audioUs) {
+                boolean key = video % scenario.keyFrameInterval == 0;
+                timestamps[i] = videoUs;
+                sizes[i] = jitter(random, key ? scenario.keyFrameSize : scenario.frameSize);
+                flags[i] = key ? CodecBufferInfo.BUFFER_FLAG_KEY_FRAME : 0;
+                video++;
+            } else {
+                audio[i] = true;
+                timestamps[i] = audioUs;
+                sizes[i] = jitter(random, scenario.audioFrameSize);
+                flags[i] = CodecBufferInfo.BUFFER_FLAG_KEY_FRAME;
+                audioIndex++;
+            }
+        }
+
+        int maxVideoSize = (int) (Math.max(scenario.keyFrameSize, scenario.frameSize) * (1 + SIZE_JITTER)) + 1;
+        keyFrame = createNalUnit(random, 0x65, maxVideoSize);
+        frame = createNalUnit(random, 0x41, maxVideoSize);
+        byte[] audioBytes = new byte[(int) (scenario.audioFrameSize * (1 + SIZE_JITTER)) + 1];
+        random.nextBytes(audioBytes);
+        audioFrame = ByteBuffer.allocateDirect(audioBytes.length);
+        audioFrame.put(audioBytes).flip();
+    }
+
+    public MP4Builder createMovie(File file) throws Exception {
+        Mp4Movie movie = new Mp4Movie();
+        movie.setCacheFile(file);
+        movie.setSize(scenario.width, scenario.height);
+        MP4Builder builder = new MP4Builder().createMovie(movie);
+
+        TrackFormat videoFormat = TrackFormat.createVideoFormat(TrackFormat.MIMETYPE_VIDEO_AVC,
+                scenario.width, scenario.height);
+        videoFormat.setByteBuffer(TrackFormat.KEY_CSD[0], ByteBuffer.wrap(SPS));
+        videoFormat.setByteBuffer(TrackFormat.KEY_CSD[1], ByteBuffer.wrap(PPS));
+        TrackFormat audioFormat = TrackFormat.createAudioFormat(scenario.audioMime,
+                scenario.sampleRate, scenario.channelCount);
+        if (TrackFormat.MIMETYPE_AUDIO_AAC.equals(scenario.audioMime)) {
+            audioFormat.setByteBuffer(TrackFormat.KEY_CSD[0], ByteBuffer.wrap(createAudioSpecificConfig()));
+        }
+        videoTrack = builder.addTrack(videoFormat, false);
+        audioTrack = builder.addTrack(audioFormat, true);
+        return builder;
+    }
+
+    /**
+     * 写入第index个样本，时间戳加上offsetUs，用于循环写入同一序列
+     */
+    public boolean write(MP4Builder builder, int index, long offsetUs, CodecBufferInfo info) throws Exception {
+        ByteBuffer buffer;
+        int track;
+        if (audio[index]) {
+            buffer = audioFrame;
+            track = audioTrack;
+        } else {
+            buffer = flags[index] != 0 ? keyFrame : frame;
+            track = videoTrack;
+        }
+        info.set(0, sizes[index], timestamps[index] + offsetUs, flags[index]);
+        return builder.writeSampleData(track, buffer, info, audio[index]);
+    }
+
+    public void writeAll(MP4Builder builder, CodecBufferInfo info) throws Exception {
+        for (int i = 0; i < audio.length; i++) {
+            write(builder, i, 0, info);
+        }
+    }
+
+    public int getSampleCount() {
+        return audio.length;
+    }
+
+    public long getDurationUs() {
+        return durationUs;
+    }
+
+    private static int jitter(Random random, int size) {
+        float scale = 1 + (random.nextFloat() * 2 - 1) * SIZE_JITTER;
+        return Math.max(8, (int) (size * scale));
+    }
+
+    /**
+     * 起始码加NAL头，后面填充不含0的随机数据，保证整个缓冲区只有一个NAL单元，
+     * 写入时取前size个字节
+     */
+    private static ByteBuffer createNalUnit(Random random, int header, int size) {
+        byte[] bytes = new byte[size];
+        bytes[3] = 1;
+        bytes[4] = (byte) header;
+        for (int i = 5; i < size; i++) {
+            bytes[i] = (byte) (1 + random.nextInt(255));
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        buffer.put(bytes).flip();
+        return buffer;
+    }
+
+    /**
+     * AAC-LC的AudioSpecificConfig
+     */
+    private byte[] createAudioSpecificConfig() {
+        int[] rates = {96000, 88200, 64000, 48000, 44100, 32000, 24000, 22050, 16000, 12000, 11025, 8000, 7350};
+        int frequencyIndex = 0;
+        while (rates[frequencyIndex] != scenario.sampleRate) {
+            frequencyIndex++;
+        }
+        int config = (2 << 11) | (frequencyIndex << 7) | (scenario.channelCount << 3);
+        return new byte[]{(byte) (config >> 8), (byte) config};
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,246 @@
+package com.zrh.video;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * 按大小分级复用的直接内存缓冲区池，所有任务共享同一个内存预算。
+ * 直接内存只能等GC回收，多个任务同时运行时反复分配会让native内存快速上涨。
+ * <p>
+ * 预算包括使用中和空闲的缓冲区，超出时先丢弃空闲的缓冲区，仍然不够时等待其他任务归还，
+ * 超时或等待时间为0时抛出{@link IllegalStateException}
+ */
+public class DirectBufferPool {
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final DirectBufferPool DEFAULT = new DirectBufferPool(64L * 1024 * 1024);
+
+    // 按容量分级的空闲缓冲区
+    private final Map<Integer, ArrayDeque<ByteBuffer>> idleBuffers = new HashMap<>();
+    private final Set<ByteBuffer> inUseBuffers = Collections.newSetFromMap(new IdentityHashMap<ByteBuffer, Boolean>());
+    private long budget;
+    // 预算不足时的最长等待时间，0表示立即失败，<0表示一直等待
+    private long waitTimeoutMs = 5000;
+    private long allocatedBytes = 0;
+    private long idleBytes = 0;
+    private long peakBytes = 0;
+    private long acquireCount = 0;
+    private long reuseCount = 0;
+    private long waitCount = 0;
+    private long failCount = 0;
+
+    /**
+     * 引擎和画面读取使用的共享实例，默认预算64MB
+     */
+    public static DirectBufferPool getDefault() {
+        return DEFAULT;
+    }
+
+    public DirectBufferPool(long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * 获取一个position为0、limit为size的缓冲区，容量按级别向上取整，使用完后需要调用{@link #release(ByteBuffer)}
+     */
+    public synchronized ByteBuffer acquire(int size) {
+        if (size < 0 || size > MAX_CAPACITY) {
+            throw new IllegalArgumentException("invalid buffer size: " + size);
+        }
+        int capacity = getCapacity(size);
+        acquireCount++;
+        if (capacity > budget) {
+            failCount++;
+            throw new IllegalStateException("buffer of " + capacity + " bytes exceeds budget " + budget);
+        }
+        long deadline = System.currentTimeMillis() + waitTimeoutMs;
+        boolean waited = false;
+        while (true) {
+            ArrayDeque<ByteBuffer> idle = idleBuffers.get(capacity);
+            if (idle != null && !idle.isEmpty()) {
+                idleBytes -= capacity;
+                reuseCount++;
+                return take(idle.pop(), size);
+            }
+            // 丢弃空闲的缓冲区可以满足时才丢弃
+            long needed = allocatedBytes + capacity - budget;
+            if (needed > 0 && needed <= idleBytes) {
+                evictIdle(needed);
+            }
+            if (allocatedBytes + capacity <= budget) {
+                allocatedBytes += capacity;
+                peakBytes = Math.max(peakBytes, allocatedBytes);
+                return take(ByteBuffer.allocateDirect(capacity), size);
+            }
+
+            long remaining = waitTimeoutMs < 0 ? Long.MAX_VALUE : deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                failCount++;
+                throw new IllegalStateException("direct buffer budget exhausted: " + this);
+            }
+            if (!waited) {
+                waitCount++;
+                waited = true;
+            }
+            try {
+                if (waitTimeoutMs < 0) {
+                    wait();
+                } else {
+                    wait(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failCount++;
+                throw new IllegalStateException("interrupted while waiting for direct buffer");
+            }
+        }
+    }
+
+    /**
+     * 归还缓冲区，归还后不能再使用
+     */
+    public synchronized void release(ByteBuffer buffer) {
+        if (buffer == null) {
+            return;
+        }
+        if (!inUseBuffers.remove(buffer)) {
+            throw new IllegalArgumentException("buffer is not acquired from this pool");
+        }
+        int capacity = buffer.capacity();
+        if (allocatedBytes > budget) {
+            // 预算调小后不再保留
+            allocatedBytes -= capacity;
+        } else {
+            buffer.clear();
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            ArrayDeque<ByteBuffer> idle = idleBuffers.get(capacity);
+            if (idle == null) {
+                idle = new ArrayDeque<>();
+                idleBuffers.put(capacity, idle);
+            }
+            idle.push(buffer);
+            idleBytes += capacity;
+        }
+        notifyAll();
+    }
+
+    private ByteBuffer take(ByteBuffer buffer, int size) {
+        inUseBuffers.add(buffer);
+        buffer.limit(size);
+        return buffer;
+    }
+
+    private void evictIdle(long bytes) {
+        Iterator<ArrayDeque<ByteBuffer>> iterator = idleBuffers.values().iterator();
+        while (bytes > 0 && iterator.hasNext()) {
+            ArrayDeque<ByteBuffer> idle = iterator.next();
+            while (bytes > 0 && !idle.isEmpty()) {
+                int capacity = idle.pop().capacity();
+                allocatedBytes -= capacity;
+                idleBytes -= capacity;
+                bytes -= capacity;
+            }
+            if (idle.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 每个2的幂区间分为4级，浪费不超过25%
+     */
+    static int getCapacity(int size) {
+        if (size <= MIN_CAPACITY) {
+            return MIN_CAPACITY;
+        }
+        int step = Integer.highestOneBit(size - 1) >> 2;
+        return ((size - 1) / step + 1) * step;
+    }
+
+    public synchronized long getBudget() {
+        return budget;
+    }
+
+    /**
+     * 调小预算时丢弃超出的空闲缓冲区，使用中的缓冲区归还时不再保留
+     */
+    public synchronized void setBudget(long budget) {
+        this.budget = budget;
+        if (allocatedBytes > budget) {
+            evictIdle(Math.min(allocatedBytes - budget, idleBytes));
+        }
+        notifyAll();
+    }
+
+    public synchronized long getWaitTimeoutMs() {
+        return waitTimeoutMs;
+    }
+
+    public synchronized void setWaitTimeoutMs(long waitTimeoutMs) {
+        this.waitTimeoutMs = waitTimeoutMs;
+    }
+
+    /**
+     * @return 使用中和空闲的缓冲区总容量
+     */
+    public synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public synchronized long getInUseBytes() {
+        return allocatedBytes - idleBytes;
+    }
+
+    public synchronized long getIdleBytes() {
+        return idleBytes;
+    }
+
+    public synchronized long getPeakBytes() {
+        return peakBytes;
+    }
+
+    public synchronized long getAcquireCount() {
+        return acquireCount;
+    }
+
+    /**
+     * @return 复用空闲缓冲区的次数
+     */
+    public synchronized long getReuseCount() {
+        return reuseCount;
+    }
+
+    /**
+     * @return 因预算不足而等待的次数
+     */
+    public synchronized long getWaitCount() {
+        return waitCount;
+    }
+
+    public synchronized long getFailCount() {
+        return failCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "DirectBufferPool{budget=" + budget
+                + ", allocated=" + allocatedBytes
+                + ", inUse=" + (allocatedBytes - idleBytes)
+                + ", peak=" + peakBytes
+                + ", acquire=" + acquireCount
+                + ", reuse=" + reuseCount
+                + ", wait=" + waitCount
+                + ", fail=" + failCount
+                + '}';
+    }
+}
@@ -22,6 +22,12 @@ public class LowQualityStrategy implements VideoQualityStrategy {
         float quality = VideoQualityUtils.getQuality(origin.getResolution(), origin.getBitrate());
         quality = VideoQualityUtils.getLowerQuality(quality);
         int bitrate = VideoQualityUtils.getBitrate(resolution, quality);
-        return new VideoQuality(resolution, bitrate);
+        VideoQuality result = new VideoQuality(resolution, bitrate);
+        // 音频重新编码时使用的码率
+        result.setAudioBitrate(VideoQualityUtils.getAudioBitrate(resolution, origin.getAudioBitrate()));
+        // 编码器支持时使用VBR和High profile，同码率下画质更好
+        result.setBitrateMode(VideoQuality.BITRATE_MODE_VBR);
+        result.setProfile(VideoQuality.PROFILE_AVC_HIGH);
+        return result;
     }
 }
@@ -0,0 +1,91 @@
+package com.zrh.video;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * 按目标文件大小压缩：根据时长和音频大小计算视频码率预算，
+ * 再选择满足最低画质要求的最高分辨率。
+ */
+public class TargetSizeStrategy implements VideoQualityStrategy {
+    // 预留给MP4封装的空间
+    private static final float CONTAINER_OVERHEAD = 0.03f;
+    private static final int DEFAULT_AUDIO_BITRATE = 128000;
+
+    private final long targetSize;
+    // 音频重新编码时的最高码率，<=0表示音频不重新编码
+    private int maxAudioBitrate = 0;
+
+    /**
+     * @param targetSize 目标文件大小，单位字节
+     */
+    public TargetSizeStrategy(long targetSize) {
+        this.targetSize = targetSize;
+    }
+
+    public long getTargetSize() {
+        return targetSize;
+    }
+
+    public int getMaxAudioBitrate() {
+        return maxAudioBitrate;
+    }
+
+    public void setMaxAudioBitrate(int maxAudioBitrate) {
+        this.maxAudioBitrate = maxAudioBitrate;
+    }
+
+    @Override
+    public boolean accept(VideoQuality origin) {
+        if (origin.getDurationMs() <= 0) {
+            return false;
+        }
+        // 原视频码率为整个文件的码率，已包含音频
+        long originSize = (long) origin.getBitrate() * origin.getDurationMs() / 8000;
+        return originSize > targetSize;
+    }
+
+    @Override
+    public VideoQuality calculate(VideoQuality origin) {
+        int bitrate = getVideoBitrate(origin);
+        if (origin.getBitrate() > 0) {
+            bitrate = Math.min(bitrate, origin.getBitrate());
+        }
+        int[] originResolution = origin.getResolution();
+
+        //从原分辨率开始逐级降低，直到码率足够支撑该分辨率的最低画质
+        int level = VideoQualityUtils.getResolutionLevel(originResolution);
+        int[] resolution = getResolution(originResolution, level);
+        while (VideoQualityUtils.getQuality(resolution, bitrate) < VideoQuality.VERY_LOW
+                && level > VideoQuality.VIDEO_360P) {
+            level = VideoQualityUtils.getLowerResolutionLevel(level);
+            resolution = getResolution(originResolution, level);
+        }
+        VideoQuality quality = new VideoQuality(resolution, bitrate);
+        quality.setDurationMs(origin.getDurationMs());
+        quality.setAudioBitrate(maxAudioBitrate > 0 ? getAudioBitrate(origin) : origin.getAudioBitrate());
+        // 码率由BitrateController动态修正，不能使用CQ
+        quality.setBitrateMode(VideoQuality.BITRATE_MODE_VBR);
+        quality.setProfile(VideoQuality.PROFILE_AVC_HIGH);
+        return quality;
+    }
+
+    private int[] getResolution(int[] origin, int level) {
+        // 不放大原视频
+        if (level >= Math.max(origin[0], origin[1])) {
+            return origin;
+        }
+        return VideoQualityUtils.getResolution(origin, level);
+    }
+
+    private int getVideoBitrate(VideoQuality origin) {
+        long totalBits = (long) (targetSize * 8 * (1 - CONTAINER_OVERHEAD));
+        long bitrate = totalBits * 1000 / origin.getDurationMs() - getAudioBitrate(origin);
+        return (int) Math.max(bitrate, 1);
+    }
+
+    private int getAudioBitrate(VideoQuality origin) {
+        int bitrate = origin.getAudioBitrate() > 0 ? origin.getAudioBitrate() : DEFAULT_AUDIO_BITRATE;
+        return maxAudioBitrate > 0 ? Math.min(bitrate, maxAudioBitrate) : bitrate;
+    }
+}
@@ -0,0 +1,130 @@
+package com.zrh.video;
+
+/**
+ * @author zrh
+ * @date 2023/7/8
+ * <p>
+ * 标清360P(480*360)
+ * 高清480P(640×480)
+ * 超清720P(1280×720)
+ * 蓝光1080P(1920×1080)
+ * <p>
+ * 码率 =  (w x h x 3) * quality
+ * <p>
+ * 极低 quality = 1/4
+ * 低 quality = 1/2
+ * 中 quality = 1
+ * 高 quality = 2
+ * 极高 quality = 4
+ */
+public class VideoQuality {
+    public static final float VERY_LOW = 0.25f;
+    public static final float LOW = 0.5f;
+    public static final float MEDIUM = 1;
+    public static final float HIGH = 2;
+    public static final float VERY_HIGH = 4;
+
+    public static final int VIDEO_1080P = 1920;
+    public static final int VIDEO_720P = 1280;
+    public static final int VIDEO_480P = 640;
+    public static final int VIDEO_360P = 480;
+
+    // 与MediaCodecInfo.EncoderCapabilities中的取值相同
+    public static final int BITRATE_MODE_CQ = 0;
+    public static final int BITRATE_MODE_VBR = 1;
+    public static final int BITRATE_MODE_CBR = 2;
+    // 与MediaCodecInfo.CodecProfileLevel中的取值相同
+    public static final int PROFILE_AVC_BASELINE = 1;
+    public static final int PROFILE_AVC_MAIN = 2;
+    public static final int PROFILE_AVC_HIGH = 8;
+    public static final int PROFILE_HEVC_MAIN = 1;
+
+    // 0-width 1-height
+    private final int[] resolution;
+    private final int bitrate;
+    // 视频时长，单位毫秒，未知时为0
+    private long durationMs;
+    // 音频码率，未知时为0
+    private int audioBitrate;
+    // 码率模式 BITRATE_MODE_*，<0时使用编码器默认值
+    private int bitrateMode = -1;
+    // MediaCodecInfo.CodecProfileLevel中AVC的profile和level，编码时按输出格式换算，0时使用编码器默认值
+    private int profile;
+    private int level;
+    // 关键帧间隔，单位秒，<=0时沿用原视频
+    private int iFrameInterval;
+
+    public VideoQuality(int width, int height, int bitrate) {
+        this.resolution = new int[]{width, height};
+        this.bitrate = bitrate;
+    }
+
+    public VideoQuality(int[] resolution, int bitrate) {
+        this.resolution = resolution;
+        this.bitrate = bitrate;
+    }
+
+    public int getWidth() {
+        return resolution[0];
+    }
+
+    public int getHeight() {
+        return resolution[1];
+    }
+
+    public int[] getResolution() {
+        return resolution;
+    }
+
+    public int getBitrate() {
+        return bitrate;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public void setDurationMs(long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    public int getAudioBitrate() {
+        return audioBitrate;
+    }
+
+    public void setAudioBitrate(int audioBitrate) {
+        this.audioBitrate = audioBitrate;
+    }
+
+    public int getBitrateMode() {
+        return bitrateMode;
+    }
+
+    public void setBitrateMode(int bitrateMode) {
+        this.bitrateMode = bitrateMode;
+    }
+
+    public int getProfile() {
+        return profile;
+    }
+
+    public void setProfile(int profile) {
+        this.profile = profile;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    public int getIFrameInterval() {
+        return iFrameInterval;
+    }
+
+    public void setIFrameInterval(int iFrameInterval) {
+        this.iFrameInterval = iFrameInterval;
+    }
+}
@@ -0,0 +1,144 @@
+package com.zrh.video;
+
+import static com.zrh.video.VideoQuality.HIGH;
+import static com.zrh.video.VideoQuality.LOW;
+import static com.zrh.video.VideoQuality.MEDIUM;
+import static com.zrh.video.VideoQuality.VERY_HIGH;
+import static com.zrh.video.VideoQuality.VIDEO_1080P;
+import static com.zrh.video.VideoQuality.VIDEO_360P;
+import static com.zrh.video.VideoQuality.VIDEO_480P;
+import static com.zrh.video.VideoQuality.VIDEO_720P;
+
+/**
+ * @author zrh
+ * @date 2023/7/8
+ */
+public class VideoQualityUtils {
+    private static final String MIMETYPE_VIDEO_AVC = "video/avc";
+    private static final String MIMETYPE_VIDEO_HEVC = "video/hevc";
+    // AVC的level按1<<i取值，对应的HEVC Main tier level取能容纳相同画面大小和码率的最低一级
+    private static final int[] HEVC_LEVELS = {
+            0x1, 0x1, // 1, 1b -> 1
+            0x4, 0x4, 0x4, 0x4, // 1.1-2 -> 2
+            0x10, // 2.1 -> 2.1
+            0x40, 0x40, // 2.2, 3 -> 3
+            0x100, // 3.1 -> 3.1
+            0x400, 0x400, // 3.2, 4 -> 4
+            0x1000, 0x1000, // 4.1, 4.2 -> 4.1
+            0x4000, 0x10000, 0x40000, // 5, 5.1, 5.2
+            0x100000, 0x400000, 0x1000000 // 6, 6.1, 6.2
+    };
+
+    public static float getQuality(int[] resolution, int bitrate) {
+        return bitrate * 1f / (resolution[0] * resolution[1] * 3);
+    }
+
+    public static float getLowerQuality(float quality) {
+        if (quality >= VERY_HIGH) {
+            quality = HIGH;
+        } else if (quality >= HIGH) {
+            quality = MEDIUM;
+        } else if (quality >= MEDIUM) {
+            quality = LOW;
+        }
+        return quality;
+    }
+
+    public static int getBitrate(int[] resolution, float quality) {
+        return Math.round(resolution[0] * resolution[1] * 3 * quality);
+    }
+
+    /**
+     * 相同画质下各编码格式相对AVC的码率比例
+     */
+    public static float getBitrateScale(String mimeType) {
+        if (MIMETYPE_VIDEO_HEVC.equals(mimeType)) {
+            return 0.65f;
+        }
+        return 1f;
+    }
+
+    /**
+     * 策略按AVC给出profile，换算为输出编码格式的profile，无法换算时返回0使用编码器默认值
+     */
+    public static int getProfile(String mimeType, int avcProfile) {
+        if (avcProfile <= 0) {
+            return 0;
+        }
+        if (MIMETYPE_VIDEO_AVC.equals(mimeType)) {
+            return avcProfile;
+        }
+        if (MIMETYPE_VIDEO_HEVC.equals(mimeType)) {
+            return VideoQuality.PROFILE_HEVC_MAIN;
+        }
+        return 0;
+    }
+
+    /**
+     * 策略按AVC给出level，换算为输出编码格式的level，无法换算时返回0
+     */
+    public static int getLevel(String mimeType, int avcLevel) {
+        if (avcLevel <= 0) {
+            return 0;
+        }
+        if (MIMETYPE_VIDEO_AVC.equals(mimeType)) {
+            return avcLevel;
+        }
+        int index = Integer.numberOfTrailingZeros(avcLevel);
+        if (MIMETYPE_VIDEO_HEVC.equals(mimeType) && Integer.bitCount(avcLevel) == 1 && index < HEVC_LEVELS.length) {
+            return HEVC_LEVELS[index];
+        }
+        return 0;
+    }
+
+    /**
+     * 重新编码时的AAC-LC码率，不超过原音频码率
+     *
+     * @param originBitrate 原音频码率，未知时为0
+     */
+    public static int getAudioBitrate(int[] resolution, int originBitrate) {
+        int bitrate = getResolutionLevel(resolution) <= VIDEO_480P ? 64000 : 96000;
+        return originBitrate > 0 ? Math.min(originBitrate, bitrate) : bitrate;
+    }
+
+    public static int getResolutionLevel(int[] resolution) {
+        if (resolution[0] >= VIDEO_1080P || resolution[1] >= VIDEO_1080P) {
+            return VIDEO_1080P;
+        }
+        if (resolution[0] >= VIDEO_720P || resolution[1] >= VIDEO_720P) {
+            return VIDEO_720P;
+        }
+        if (resolution[0] >= VIDEO_480P || resolution[1] >= VIDEO_480P) {
+            return VIDEO_480P;
+        }
+        return VIDEO_360P;
+    }
+
+    public static int getLowerResolutionLevel(int level) {
+        if (level >= VIDEO_1080P) {
+            level = VIDEO_720P;
+        } else if (level >= VIDEO_720P) {
+            level = VIDEO_480P;
+        } else if (level >= VIDEO_480P) {
+            level = VIDEO_360P;
+        }
+        return level;
+    }
+
+    public static int[] getResolution(int[] resolution, int level) {
+        int width = resolution[0];
+        int height = resolution[1];
+        int maxLength = Math.max(width, height);
+        float scale = level * 1f / maxLength;
+
+        int newWidth = (int) (width * scale);
+        int newHeight = (int) (height * scale);
+        if (newWidth % 2 == 1) {
+            newWidth += 1;
+        }
+        if (newHeight % 2 == 1) {
+            newHeight += 1;
+        }
+        return new int[]{newWidth, newHeight};
+    }
+}
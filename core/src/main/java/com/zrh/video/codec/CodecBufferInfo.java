@@ -0,0 +1,26 @@
+package com.zrh.video.codec;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * 与android.media.MediaCodec.BufferInfo字段一致，不依赖Android，可以在JVM中使用
+ */
+public class CodecBufferInfo {
+    // 与MediaCodec的BUFFER_FLAG_*取值相同
+    public static final int BUFFER_FLAG_KEY_FRAME = 1;
+    public static final int BUFFER_FLAG_CODEC_CONFIG = 2;
+    public static final int BUFFER_FLAG_END_OF_STREAM = 4;
+
+    public int offset;
+    public int size;
+    public long presentationTimeUs;
+    public int flags;
+
+    public void set(int offset, int size, long presentationTimeUs, int flags) {
+        this.offset = offset;
+        this.size = size;
+        this.presentationTimeUs = presentationTimeUs;
+        this.flags = flags;
+    }
+}
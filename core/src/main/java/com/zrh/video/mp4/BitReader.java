@@ -0,0 +1,99 @@
+package com.zrh.video.mp4;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 按位读取NAL单元的RBSP数据，自动跳过防竞争字节(00 00 03)
+ */
+class BitReader {
+    private final ByteBuffer buffer;
+    private final int end;
+    private int position;
+    private int currentByte;
+    private int bitIndex = 8;
+    private int zeroCount = 0;
+
+    /**
+     * @param start NAL头之后的第一个字节
+     * @param end   NAL单元的结束位置(不包含)
+     */
+    BitReader(ByteBuffer buffer, int start, int end) {
+        this.buffer = buffer;
+        this.position = start;
+        this.end = end;
+    }
+
+    int readBit() {
+        if (bitIndex == 8) {
+            nextByte();
+        }
+        return (currentByte >> (7 - bitIndex++)) & 1;
+    }
+
+    int readBits(int count) {
+        int value = 0;
+        for (int i = 0; i < count; i++) {
+            value = (value << 1) | readBit();
+        }
+        return value;
+    }
+
+    void skipBits(int count) {
+        for (int i = 0; i < count; i++) {
+            readBit();
+        }
+    }
+
+    boolean readBoolean() {
+        return readBit() == 1;
+    }
+
+    /**
+     * 无符号指数哥伦布编码 ue(v)
+     */
+    int readUE() {
+        int leadingZeros = 0;
+        while (readBit() == 0) {
+            leadingZeros++;
+            if (leadingZeros > 31) {
+                throw new IllegalStateException("invalid exp-golomb code");
+            }
+        }
+        if (leadingZeros == 0) {
+            return 0;
+        }
+        return (int) ((1L << leadingZeros) - 1 + readBitsLong(leadingZeros));
+    }
+
+    /**
+     * 有符号指数哥伦布编码 se(v)
+     */
+    int readSE() {
+        int value = readUE();
+        return (value & 1) == 1 ? (value + 1) / 2 : -(value / 2);
+    }
+
+    private long readBitsLong(int count) {
+        long value = 0;
+        for (int i = 0; i < count; i++) {
+            value = (value << 1) | readBit();
+        }
+        return value;
+    }
+
+    private void nextByte() {
+        if (position >= end) {
+            throw new IllegalStateException("read past the end of the nal unit");
+        }
+        int value = buffer.get(position++) & 0xff;
+        if (zeroCount >= 2 && value == 3) {
+            // 防竞争字节不属于RBSP
+            zeroCount = 0;
+            nextByte();
+            return;
+        }
+        zeroCount = value == 0 ? zeroCount + 1 : 0;
+        currentByte = value;
+        bitIndex = 0;
+    }
+}
@@ -1,17 +1,16 @@
 package com.zrh.video.mp4;
 
-import android.annotation.TargetApi;
-import android.media.MediaCodec;
-import android.media.MediaFormat;
-
 import com.coremedia.iso.BoxParser;
 import com.coremedia.iso.IsoFile;
 import com.coremedia.iso.IsoTypeWriter;
 import com.coremedia.iso.boxes.Box;
+import com.coremedia.iso.boxes.CompositionTimeToSample;
 import com.coremedia.iso.boxes.Container;
 import com.coremedia.iso.boxes.DataEntryUrlBox;
 import com.coremedia.iso.boxes.DataInformationBox;
 import com.coremedia.iso.boxes.DataReferenceBox;
+import com.coremedia.iso.boxes.EditBox;
+import com.coremedia.iso.boxes.EditListBox;
 import com.coremedia.iso.boxes.FileTypeBox;
 import com.coremedia.iso.boxes.HandlerBox;
 import com.coremedia.iso.boxes.MediaBox;
@@ -29,35 +28,50 @@ import com.coremedia.iso.boxes.TrackBox;
 import com.coremedia.iso.boxes.TrackHeaderBox;
 import com.googlecode.mp4parser.DataSource;
 import com.googlecode.mp4parser.util.Matrix;
+import com.zrh.video.codec.CodecBufferInfo;
 
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 
-@TargetApi(16)
 public class MP4Builder {
     private InterleaveChunkMdat mdat = null;
     private Mp4Movie currentMp4Movie = null;
-    private FileOutputStream fos = null;
+    // 恢复任务时需要截断文件并回写mdat头，使用RandomAccessFile
+    private RandomAccessFile file = null;
     private FileChannel fc = null;
     private long dataOffset = 0;
     private long writedSinceLastMdat = 0;
     private boolean writeNewMdat = true;
     private HashMap<Track, long[]> track2SampleSizes = new HashMap<>();
-    private ByteBuffer sizeBuffer = null;
+    private NalSampleWriter nalSampleWriter = null;
+    // 为空时不记录样本表日志
+    private SampleJournal journal = null;
+    // 从日志恢复的轨道，编码器重新输出格式时沿用，不再添加
+    private boolean[] restoredTracks = new boolean[0];
 
     public MP4Builder createMovie(Mp4Movie mp4Movie) throws Exception {
+        return createMovie(mp4Movie, null);
+    }
+
+    /**
+     * @param journal 不为空时在视频关键帧处记录检查点，进程被杀死后可以通过{@link #resumeMovie}继续写入
+     */
+    public MP4Builder createMovie(Mp4Movie mp4Movie, SampleJournal journal) throws Exception {
         currentMp4Movie = mp4Movie;
 
-        fos = new FileOutputStream(mp4Movie.getCacheFile());
-        fc = fos.getChannel();
+        file = new RandomAccessFile(mp4Movie.getCacheFile(), "rw");
+        file.setLength(0);
+        fc = file.getChannel();
 
         FileTypeBox fileTypeBox = createFileTypeBox();
         fileTypeBox.getBox(fc);
@@ -66,8 +80,41 @@ public class MP4Builder {
 
         mdat = new InterleaveChunkMdat();
 
-        sizeBuffer = ByteBuffer.allocateDirect(4);
+        nalSampleWriter = new NalSampleWriter();
+
+        if (journal != null) {
+            journal.create();
+            this.journal = journal;
+        }
+        return this;
+    }
+
+    /**
+     * 从日志的检查点继续写入：截断输出文件，重建样本表，之后的样本从检查点的关键帧开始写入
+     */
+    public MP4Builder resumeMovie(Mp4Movie mp4Movie, SampleJournal journal, SampleJournal.Checkpoint checkpoint) throws Exception {
+        currentMp4Movie = mp4Movie;
+        journal.replay(checkpoint, mp4Movie);
+        restoredTracks = new boolean[mp4Movie.getTracks().size()];
+        Arrays.fill(restoredTracks, true);
+
+        file = new RandomAccessFile(mp4Movie.getCacheFile(), "rw");
+        if (file.length() < checkpoint.getDataOffset()) {
+            file.close();
+            throw new IOException("output is shorter than checkpoint");
+        }
+        file.setLength(checkpoint.getDataOffset());
+        fc = file.getChannel();
+        fc.position(checkpoint.getDataOffset());
+        dataOffset = checkpoint.getDataOffset();
+
+        mdat = new InterleaveChunkMdat();
+        // 检查点之后还没有写入新的mdat，结束时不需要回写
+        mdat.setContentSize(0);
+        nalSampleWriter = new NalSampleWriter();
 
+        journal.open(checkpoint);
+        this.journal = journal;
         return this;
     }
 
@@ -78,10 +125,25 @@ public class MP4Builder {
         fc.position(oldPosition);
         mdat.setDataOffset(0);
         mdat.setContentSize(0);
-        fos.flush();
     }
 
-    public boolean writeSampleData(int trackIndex, ByteBuffer byteBuf, MediaCodec.BufferInfo bufferInfo, boolean isAudio) throws Exception {
+    public boolean writeSampleData(int trackIndex, ByteBuffer byteBuf, CodecBufferInfo bufferInfo, boolean isAudio) throws Exception {
+        // AVC/HEVC的起始码替换为长度前缀，转换后的大小可能和原数据不同
+        long sampleSize = -1;
+        if (!isAudio && currentMp4Movie.isNalTrack(trackIndex)) {
+            sampleSize = nalSampleWriter.prepare(byteBuf, bufferInfo.offset, bufferInfo.size);
+        }
+        boolean convert = sampleSize >= 0;
+        if (!convert) {
+            sampleSize = bufferInfo.size;
+        }
+
+        // 在关键帧之前记录检查点，恢复时从这一帧开始重新编码
+        if (journal != null && !isAudio && (bufferInfo.flags & CodecBufferInfo.BUFFER_FLAG_KEY_FRAME) != 0
+                && journal.isCheckpointDue(bufferInfo.presentationTimeUs)) {
+            checkpoint(bufferInfo.presentationTimeUs);
+        }
+
         if (writeNewMdat) {
             mdat.setContentSize(0);
             mdat.getBox(fc);
@@ -91,8 +153,8 @@ public class MP4Builder {
             writeNewMdat = false;
         }
 
-        mdat.setContentSize(mdat.getContentSize() + bufferInfo.size);
-        writedSinceLastMdat += bufferInfo.size;
+        mdat.setContentSize(mdat.getContentSize() + sampleSize);
+        writedSinceLastMdat += sampleSize;
 
         boolean flush = false;
         if (writedSinceLastMdat >= 32 * 1024) {
@@ -102,28 +164,54 @@ public class MP4Builder {
             writedSinceLastMdat -= 32 * 1024;
         }
 
-        currentMp4Movie.addSample(trackIndex, dataOffset, bufferInfo);
-        byteBuf.position(bufferInfo.offset + (isAudio ? 0 : 4));
-        byteBuf.limit(bufferInfo.offset + bufferInfo.size);
-
-        if (!isAudio) {
-            sizeBuffer.position(0);
-            sizeBuffer.putInt(bufferInfo.size - 4);
-            sizeBuffer.position(0);
-            fc.write(sizeBuffer);
+        currentMp4Movie.addSample(trackIndex, dataOffset, sampleSize, bufferInfo);
+        if (journal != null) {
+            journal.addSample(trackIndex, dataOffset, sampleSize, bufferInfo);
         }
-
-        fc.write(byteBuf);
-        dataOffset += bufferInfo.size;
-
-        if (flush) {
-            fos.flush();
+        if (convert) {
+            nalSampleWriter.write(fc, byteBuf);
+        } else {
+            byteBuf.position(bufferInfo.offset);
+            byteBuf.limit(bufferInfo.offset + bufferInfo.size);
+            fc.write(byteBuf);
         }
+        dataOffset += sampleSize;
         return flush;
     }
 
-    public int addTrack(MediaFormat mediaFormat, boolean isAudio) throws Exception {
-        return currentMp4Movie.addTrack(mediaFormat, isAudio);
+    /**
+     * 结束当前的mdat并写入日志检查点，没有日志时不处理
+     *
+     * @param resumeTimeUs 恢复时继续编码的时间戳
+     */
+    public void checkpoint(long resumeTimeUs) throws Exception {
+        if (journal == null) {
+            return;
+        }
+        if (!writeNewMdat) {
+            flushCurrentMdat();
+            writeNewMdat = true;
+            writedSinceLastMdat = 0;
+        }
+        journal.checkpoint(dataOffset, resumeTimeUs);
+    }
+
+    public long getWrittenSize() {
+        return dataOffset;
+    }
+
+    public int addTrack(TrackFormat mediaFormat, boolean isAudio) throws Exception {
+        for (int i = 0; i < restoredTracks.length; i++) {
+            if (restoredTracks[i] && currentMp4Movie.getTracks().get(i).isAudio() == isAudio) {
+                restoredTracks[i] = false;
+                return i;
+            }
+        }
+        int trackIndex = currentMp4Movie.addTrack(mediaFormat, isAudio);
+        if (journal != null) {
+            journal.addTrack(trackIndex, mediaFormat, isAudio);
+        }
+        return trackIndex;
     }
 
     public void finishMovie(boolean error) throws Exception {
@@ -142,10 +230,12 @@ public class MP4Builder {
 
         Box moov = createMovieBox(currentMp4Movie);
         moov.getBox(fc);
-        fos.flush();
 
         fc.close();
-        fos.close();
+        file.close();
+        if (journal != null) {
+            journal.close();
+        }
     }
 
     protected FileTypeBox createFileTypeBox() {
@@ -159,6 +249,8 @@ public class MP4Builder {
         private Container parent;
         private long contentSize = 1024 * 1024 * 1024;
         private long dataOffset = 0;
+        // 每次刷新mdat都会写一次头部，复用同一个缓冲区
+        private final ByteBuffer header = ByteBuffer.allocate(16);
 
         public Container getParent() {
             return parent;
@@ -202,7 +294,8 @@ public class MP4Builder {
         }
 
         public void getBox(WritableByteChannel writableByteChannel) throws IOException {
-            ByteBuffer bb = ByteBuffer.allocate(16);
+            ByteBuffer bb = header;
+            bb.clear();
             long size = getSize();
             if (isSmallBox(size)) {
                 IsoTypeWriter.writeUInt32(bb, size);
@@ -211,7 +304,7 @@ public class MP4Builder {
             }
             bb.put(IsoFile.fourCCtoBytes("mdat"));
             if (isSmallBox(size)) {
-                bb.put(new byte[8]);
+                bb.putLong(0);
             } else {
                 IsoTypeWriter.writeUInt64(bb, size);
             }
@@ -290,6 +383,16 @@ public class MP4Builder {
 
         trackBox.addBox(tkhd);
 
+        // 存在B帧时第一帧的显示时间晚于解码时间，用编辑列表跳过这段延迟保持音画同步
+        if (track.getCompositionDelay() > 0) {
+            EditBox edts = new EditBox();
+            EditListBox elst = new EditListBox();
+            elst.setEntries(Collections.singletonList(
+                    new EditListBox.Entry(elst, tkhd.getDuration(), track.getCompositionDelay(), 1)));
+            edts.addBox(elst);
+            trackBox.addBox(edts);
+        }
+
         MediaBox mdia = new MediaBox();
         trackBox.addBox(mdia);
         MediaHeaderBox mdhd = new MediaHeaderBox();
@@ -327,6 +430,7 @@ public class MP4Builder {
 
         createStsd(track, stbl);
         createStts(track, stbl);
+        createCtts(track, stbl);
         createStss(track, stbl);
         createStsc(track, stbl);
         createStsz(track, stbl);
@@ -356,6 +460,26 @@ public class MP4Builder {
         stbl.addBox(stts);
     }
 
+    protected void createCtts(Track track, SampleTableBox stbl) {
+        long[] offsets = track.getCompositionOffsets();
+        if (offsets == null) {
+            return;
+        }
+        CompositionTimeToSample.Entry lastEntry = null;
+        List<CompositionTimeToSample.Entry> entries = new ArrayList<>();
+        for (long offset : offsets) {
+            if (lastEntry != null && lastEntry.getOffset() == offset) {
+                lastEntry.setCount(lastEntry.getCount() + 1);
+            } else {
+                lastEntry = new CompositionTimeToSample.Entry(1, (int) offset);
+                entries.add(lastEntry);
+            }
+        }
+        CompositionTimeToSample ctts = new CompositionTimeToSample();
+        ctts.setEntries(entries);
+        stbl.addBox(ctts);
+    }
+
     protected void createStss(Track track, SampleTableBox stbl) {
         long[] syncSamples = track.getSyncSamples();
         if (syncSamples != null && syncSamples.length > 0) {
@@ -1,15 +1,11 @@
 package com.zrh.video.mp4;
 
-import android.annotation.TargetApi;
-import android.media.MediaCodec;
-import android.media.MediaFormat;
-
 import com.googlecode.mp4parser.util.Matrix;
+import com.zrh.video.codec.CodecBufferInfo;
 
 import java.io.File;
 import java.util.ArrayList;
 
-@TargetApi(16)
 public class Mp4Movie {
     private Matrix matrix = Matrix.ROTATE_0;
     private ArrayList<Track> tracks = new ArrayList<>();
@@ -58,15 +54,19 @@ public class Mp4Movie {
         return cacheFile;
     }
 
-    public void addSample(int trackIndex, long offset, MediaCodec.BufferInfo bufferInfo) throws Exception {
+    public void addSample(int trackIndex, long offset, long size, CodecBufferInfo bufferInfo) throws Exception {
         if (trackIndex < 0 || trackIndex >= tracks.size()) {
             return;
         }
         Track track = tracks.get(trackIndex);
-        track.addSample(offset, bufferInfo);
+        track.addSample(offset, size, bufferInfo);
+    }
+
+    public boolean isNalTrack(int trackIndex) {
+        return trackIndex >= 0 && trackIndex < tracks.size() && tracks.get(trackIndex).isNalFormat();
     }
 
-    public int addTrack(MediaFormat mediaFormat, boolean isAudio) throws Exception {
+    public int addTrack(TrackFormat mediaFormat, boolean isAudio) throws Exception {
         tracks.add(new Track(tracks.size(), mediaFormat, isAudio));
         return tracks.size() - 1;
     }
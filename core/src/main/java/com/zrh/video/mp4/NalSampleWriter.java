@@ -0,0 +1,77 @@
+package com.zrh.video.mp4;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+
+/**
+ * 把编码器输出的Annex-B视频帧转换为4字节长度前缀的格式写入文件。
+ * 一帧可能包含SEI或多个slice，每个NAL单元的起始码替换为长度前缀，NAL数据不复制，
+ * 前缀和数据通过一次聚集写入。AVC/HEVC轨道的样本都来自编码器输出，按Annex-B格式解析，不再根据内容判断
+ */
+class NalSampleWriter {
+    private int[] nalRanges = new int[32];
+    private ByteBuffer[] prefixes = new ByteBuffer[0];
+    private ByteBuffer[] buffers = new ByteBuffer[0];
+    private int nalCount = 0;
+
+    /**
+     * 解析一帧数据中的NAL单元
+     *
+     * @return 转换后的帧大小，找不到NAL单元时返回-1
+     */
+    long prepare(ByteBuffer buffer, int offset, int size) {
+        nalCount = 0;
+        int count = NalUnitUtils.findNalUnits(buffer, offset, size, nalRanges);
+        if (count == 0) {
+            return -1;
+        }
+        if (count * 2 > nalRanges.length) {
+            nalRanges = new int[count * 2];
+            NalUnitUtils.findNalUnits(buffer, offset, size, nalRanges);
+        }
+        nalCount = count;
+        long sampleSize = 0;
+        for (int i = 0; i < count; i++) {
+            sampleSize += 4 + nalRanges[i * 2 + 1] - nalRanges[i * 2];
+        }
+        return sampleSize;
+    }
+
+    /**
+     * 写入上一次prepare解析出的NAL单元
+     */
+    void write(GatheringByteChannel channel, ByteBuffer buffer) throws IOException {
+        if (prefixes.length < nalCount) {
+            ByteBuffer[] newPrefixes = new ByteBuffer[nalCount];
+            System.arraycopy(prefixes, 0, newPrefixes, 0, prefixes.length);
+            for (int i = prefixes.length; i < nalCount; i++) {
+                newPrefixes[i] = ByteBuffer.allocateDirect(4);
+            }
+            prefixes = newPrefixes;
+            buffers = new ByteBuffer[nalCount * 2];
+        }
+        long remaining = 0;
+        for (int i = 0; i < nalCount; i++) {
+            int start = nalRanges[i * 2];
+            int end = nalRanges[i * 2 + 1];
+            ByteBuffer prefix = prefixes[i];
+            prefix.clear();
+            prefix.putInt(end - start);
+            prefix.flip();
+            ByteBuffer nal = buffer.duplicate();
+            nal.limit(end);
+            nal.position(start);
+            buffers[i * 2] = prefix;
+            buffers[i * 2 + 1] = nal;
+            remaining += 4 + end - start;
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers, 0, nalCount * 2);
+        }
+        // 不持有编码器的缓冲区
+        for (int i = 0; i < nalCount; i++) {
+            buffers[i * 2 + 1] = null;
+        }
+    }
+}
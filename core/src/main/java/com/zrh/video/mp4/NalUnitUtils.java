@@ -0,0 +1,196 @@
+package com.zrh.video.mp4;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * H.264 NAL单元解析，支持Annex-B(起始码)和AVCC(4字节长度前缀)两种格式，
+ * 只使用绝对位置读取，不会修改ByteBuffer的position和limit
+ */
+public class NalUnitUtils {
+    public static final int NAL_TYPE_SLICE = 1;
+    public static final int NAL_TYPE_PARTITION_A = 2;
+    public static final int NAL_TYPE_IDR = 5;
+    public static final int NAL_TYPE_SEI = 6;
+    public static final int NAL_TYPE_SPS = 7;
+    public static final int NAL_TYPE_PPS = 8;
+
+    public static final int HEVC_NAL_TYPE_VPS = 32;
+    public static final int HEVC_NAL_TYPE_SPS = 33;
+    public static final int HEVC_NAL_TYPE_PPS = 34;
+
+    public static final int SLICE_TYPE_P = 0;
+    public static final int SLICE_TYPE_B = 1;
+    public static final int SLICE_TYPE_I = 2;
+    public static final int SLICE_TYPE_SP = 3;
+    public static final int SLICE_TYPE_SI = 4;
+
+    public static int getNalType(byte header) {
+        return header & 0x1f;
+    }
+
+    public static int getNalRefIdc(byte header) {
+        return (header >> 5) & 0x3;
+    }
+
+    public static int getHevcNalType(byte header) {
+        return (header >> 1) & 0x3f;
+    }
+
+    /**
+     * 按起始码拆分Annex-B数据，返回不包含起始码的NAL单元，用于解析csd等配置数据
+     */
+    public static List<byte[]> getNalUnits(ByteBuffer buffer) {
+        int[] ranges = new int[16];
+        int count = findNalUnits(buffer, buffer.position(), buffer.remaining(), ranges);
+        if (count * 2 > ranges.length) {
+            ranges = new int[count * 2];
+            findNalUnits(buffer, buffer.position(), buffer.remaining(), ranges);
+        }
+        List<byte[]> nalUnits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] nal = new byte[ranges[i * 2 + 1] - ranges[i * 2]];
+            for (int j = 0; j < nal.length; j++) {
+                nal[j] = buffer.get(ranges[i * 2] + j);
+            }
+            nalUnits.add(nal);
+        }
+        return nalUnits;
+    }
+
+    /**
+     * 查找Annex-B数据中的NAL单元，不复制数据。第i个NAL单元的范围为[ranges[2i], ranges[2i+1])，
+     * 不包含起始码和结尾的0，ranges容量不足时只写入能容纳的部分
+     *
+     * @return NAL单元的数量
+     */
+    public static int findNalUnits(ByteBuffer buffer, int offset, int size, int[] ranges) {
+        int count = 0;
+        int end = offset + size;
+        int startCode = findStartCode(buffer, offset, end);
+        while (startCode >= 0) {
+            int nalStart = startCode + 3;
+            int next = findStartCode(buffer, nalStart, end);
+            int nalEnd = next < 0 ? end : next;
+            // 去掉四字节起始码多出的0以及结尾的填充
+            while (nalEnd > nalStart && buffer.get(nalEnd - 1) == 0) {
+                nalEnd--;
+            }
+            if (nalEnd > nalStart) {
+                if (count * 2 + 1 < ranges.length) {
+                    ranges[count * 2] = nalStart;
+                    ranges[count * 2 + 1] = nalEnd;
+                }
+                count++;
+            }
+            startCode = next;
+        }
+        return count;
+    }
+
+    /**
+     * 以起始码开头的数据为Annex-B格式，否则按AVCC格式处理。
+     * 长度为1或256-511字节的AVCC NAL单元同样以00 00 0x开头，格式已知时不能用来判断
+     */
+    public static boolean isAnnexB(ByteBuffer buffer, int offset, int size) {
+        if (size >= 3 && buffer.get(offset) == 0 && buffer.get(offset + 1) == 0) {
+            int third = buffer.get(offset + 2);
+            return third == 1 || (third == 0 && size >= 4 && buffer.get(offset + 3) == 1);
+        }
+        return false;
+    }
+
+    /**
+     * @return [from, end)中第一个三字节起始码(00 00 01)的位置，没有时返回-1，
+     * 四字节起始码(00 00 00 01)返回的是第二个00的位置
+     */
+    public static int findStartCode(ByteBuffer buffer, int from, int end) {
+        for (int i = from; i + 2 < end; i++) {
+            if ((buffer.get(i + 2) & 0xff) > 1) {
+                // 第三个字节大于1时可以直接跳过三个字节
+                i += 2;
+            } else if (buffer.get(i) == 0 && buffer.get(i + 1) == 0 && buffer.get(i + 2) == 1) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 读取slice header中的slice_type，结果为0-4，解析失败时返回-1
+     *
+     * @param nalStart NAL头所在的位置
+     * @param nalEnd   NAL单元的结束位置(不包含)
+     */
+    public static int getSliceType(ByteBuffer buffer, int nalStart, int nalEnd) {
+        try {
+            BitReader reader = new BitReader(buffer, nalStart + 1, nalEnd);
+            // first_mb_in_slice
+            reader.readUE();
+            int sliceType = reader.readUE();
+            return sliceType <= 9 ? sliceType % 5 : -1;
+        } catch (IllegalStateException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 判断一个视频帧是否可以不送入解码器：帧内所有slice都是非参考帧(nal_ref_idc为0)且不是I slice，
+     * 丢弃后不影响其它帧的解码
+     *
+     * @param annexB 样本是Annex-B格式还是AVCC格式，由样本来源决定
+     */
+    public static boolean isDisposable(ByteBuffer buffer, int offset, int size, boolean annexB) {
+        int end = offset + size;
+        boolean hasSlice = false;
+        int position = offset;
+        while (position < end) {
+            int nalStart;
+            int nalEnd;
+            if (annexB) {
+                int startCode = findStartCode(buffer, position, end);
+                if (startCode < 0) {
+                    break;
+                }
+                nalStart = startCode + 3;
+                int next = findStartCode(buffer, nalStart, end);
+                nalEnd = next < 0 ? end : next;
+            } else {
+                if (position + 4 > end) {
+                    break;
+                }
+                nalStart = position + 4;
+                nalEnd = (int) Math.min(nalStart + readUInt32(buffer, position), end);
+            }
+            position = nalEnd;
+            if (nalStart >= nalEnd) {
+                continue;
+            }
+
+            byte header = buffer.get(nalStart);
+            int type = getNalType(header);
+            if (type == NAL_TYPE_IDR) {
+                return false;
+            }
+            if (type == NAL_TYPE_SLICE || type == NAL_TYPE_PARTITION_A) {
+                if (getNalRefIdc(header) != 0) {
+                    return false;
+                }
+                int sliceType = getSliceType(buffer, nalStart, nalEnd);
+                if (sliceType < 0 || sliceType == SLICE_TYPE_I || sliceType == SLICE_TYPE_SI) {
+                    return false;
+                }
+                hasSlice = true;
+            }
+        }
+        return hasSlice;
+    }
+
+    static long readUInt32(ByteBuffer buffer, int position) {
+        return ((buffer.get(position) & 0xffL) << 24)
+                | ((buffer.get(position + 1) & 0xffL) << 16)
+                | ((buffer.get(position + 2) & 0xffL) << 8)
+                | (buffer.get(position + 3) & 0xffL);
+    }
+}
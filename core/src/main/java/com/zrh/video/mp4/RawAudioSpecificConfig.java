@@ -0,0 +1,32 @@
+package com.zrh.video.mp4;
+
+import com.googlecode.mp4parser.boxes.mp4.objectdescriptors.AudioSpecificConfig;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 原样写入csd-0的AudioSpecificConfig，isoparser只能序列化不带扩展的AAC-LC配置
+ */
+class RawAudioSpecificConfig extends AudioSpecificConfig {
+    private final byte[] config;
+
+    RawAudioSpecificConfig(byte[] config) {
+        this.config = config;
+    }
+
+    @Override
+    public int serializedSize() {
+        return 2 + config.length;
+    }
+
+    @Override
+    public ByteBuffer serialize() {
+        ByteBuffer buffer = ByteBuffer.allocate(serializedSize());
+        // DecoderSpecificInfo的tag和长度，配置不超过127字节
+        buffer.put((byte) 0x05);
+        buffer.put((byte) config.length);
+        buffer.put(config);
+        buffer.rewind();
+        return buffer;
+    }
+}
@@ -0,0 +1,31 @@
+package com.zrh.video.mp4;
+
+import com.googlecode.mp4parser.AbstractBox;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 内容已按格式编码好的box，用于isoparser没有实现的dOps、damr等配置box
+ */
+class RawBox extends AbstractBox {
+    private final byte[] content;
+
+    RawBox(String type, byte[] content) {
+        super(type);
+        this.content = content;
+    }
+
+    @Override
+    protected long getContentSize() {
+        return content.length;
+    }
+
+    @Override
+    protected void getContent(ByteBuffer byteBuffer) {
+        byteBuffer.put(content);
+    }
+
+    @Override
+    protected void _parseDetails(ByteBuffer content) {
+    }
+}
@@ -0,0 +1,254 @@
+package com.zrh.video.mp4;
+
+import com.zrh.video.codec.CodecBufferInfo;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+
+/**
+ * MP4Builder的样本表日志。新的轨道和样本先在内存中累积，在视频关键帧处连同输出文件的有效长度一起
+ * 追加到日志文件，称为检查点。进程被杀死后通过{@link MP4Builder#resumeMovie}截断输出文件到检查点，
+ * 重建样本表，再从检查点的关键帧继续编码。
+ * <p>
+ * 检查点只需要在进程被杀死后保留，写入后不调用fsync
+ */
+public class SampleJournal implements Closeable {
+    // 视频已经全部写入，恢复时只需要重新处理音频
+    public static final long RESUME_VIDEO_DONE = Long.MAX_VALUE;
+
+    private static final int MAGIC = 0x4D584A52; // "MXJR"
+    private static final int VERSION = 1;
+    private static final int RECORD_TRACK = 1;
+    private static final int RECORD_SAMPLE = 2;
+    private static final int RECORD_CHECKPOINT = 3;
+
+    private final File file;
+    // 检查点之间的最小间隔，单位微秒
+    private long intervalUs = 2_000_000L;
+    private long lastCheckpointUs = 0;
+    private FileOutputStream out;
+    private final ByteArrayOutputStream pendingBytes = new ByteArrayOutputStream(64 * 1024);
+    private final DataOutputStream pending = new DataOutputStream(pendingBytes);
+
+    public SampleJournal(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public void setIntervalUs(long intervalUs) {
+        this.intervalUs = intervalUs;
+    }
+
+    /**
+     * 新建日志，覆盖已有的文件
+     */
+    void create() throws IOException {
+        out = new FileOutputStream(file);
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.flush();
+        lastCheckpointUs = 0;
+    }
+
+    /**
+     * 丢弃检查点之后不完整的记录，继续追加
+     */
+    void open(Checkpoint checkpoint) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(checkpoint.journalLength);
+        }
+        out = new FileOutputStream(file, true);
+        lastCheckpointUs = checkpoint.resumeTimeUs;
+    }
+
+    void addTrack(int trackIndex, TrackFormat format, boolean isAudio) throws IOException {
+        pending.writeByte(RECORD_TRACK);
+        pending.writeByte(trackIndex);
+        pending.writeBoolean(isAudio);
+        format.write(pending);
+    }
+
+    void addSample(int trackIndex, long offset, long size, CodecBufferInfo bufferInfo) throws IOException {
+        pending.writeByte(RECORD_SAMPLE);
+        pending.writeByte(trackIndex);
+        pending.writeByte(bufferInfo.flags);
+        pending.writeLong(offset);
+        pending.writeInt((int) size);
+        pending.writeLong(bufferInfo.presentationTimeUs);
+    }
+
+    boolean isCheckpointDue(long presentationTimeUs) {
+        return presentationTimeUs - lastCheckpointUs >= intervalUs;
+    }
+
+    /**
+     * 写入累积的记录和检查点，调用前输出文件需要已经写到dataOffset并且mdat头已更新
+     */
+    void checkpoint(long dataOffset, long resumeTimeUs) throws IOException {
+        pending.writeByte(RECORD_CHECKPOINT);
+        pending.writeLong(dataOffset);
+        pending.writeLong(resumeTimeUs);
+        pendingBytes.writeTo(out);
+        pendingBytes.reset();
+        out.flush();
+        lastCheckpointUs = resumeTimeUs;
+    }
+
+    /**
+     * 按日志重建轨道和样本表，只读取到检查点为止
+     */
+    void replay(Checkpoint checkpoint, Mp4Movie movie) throws Exception {
+        try (CountingInputStream counter = new CountingInputStream(new FileInputStream(file))) {
+            DataInputStream in = new DataInputStream(counter);
+            readHeader(in);
+            int[] tracks = new int[256];
+            CodecBufferInfo bufferInfo = new CodecBufferInfo();
+            while (counter.count < checkpoint.journalLength) {
+                int type = in.readUnsignedByte();
+                if (type == RECORD_TRACK) {
+                    int trackIndex = in.readUnsignedByte();
+                    boolean isAudio = in.readBoolean();
+                    tracks[trackIndex] = movie.addTrack(TrackFormat.read(in), isAudio);
+                } else if (type == RECORD_SAMPLE) {
+                    int trackIndex = in.readUnsignedByte();
+                    int flags = in.readUnsignedByte();
+                    long offset = in.readLong();
+                    int size = in.readInt();
+                    bufferInfo.set(0, size, in.readLong(), flags);
+                    movie.addSample(tracks[trackIndex], offset, size, bufferInfo);
+                } else if (type == RECORD_CHECKPOINT) {
+                    in.readLong();
+                    in.readLong();
+                } else {
+                    throw new IOException("unknown journal record: " + type);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    /**
+     * 读取最后一个完整的检查点，文件不存在、格式错误或还没有检查点时返回null
+     */
+    public static Checkpoint readCheckpoint(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        Checkpoint checkpoint = null;
+        try (CountingInputStream counter = new CountingInputStream(new FileInputStream(file))) {
+            DataInputStream in = new DataInputStream(counter);
+            readHeader(in);
+            while (true) {
+                int type = in.read();
+                if (type == RECORD_TRACK) {
+                    in.readUnsignedByte();
+                    in.readBoolean();
+                    TrackFormat.read(in);
+                } else if (type == RECORD_SAMPLE) {
+                    in.readFully(new byte[1 + 1 + 8 + 4 + 8]);
+                } else if (type == RECORD_CHECKPOINT) {
+                    long dataOffset = in.readLong();
+                    long resumeTimeUs = in.readLong();
+                    checkpoint = new Checkpoint(dataOffset, resumeTimeUs, counter.count);
+                } else {
+                    // 文件结尾或写了一半的记录
+                    break;
+                }
+            }
+        } catch (EOFException ignored) {
+            // 检查点之后的记录不完整
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        return checkpoint;
+    }
+
+    private static void readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("not a sample journal");
+        }
+    }
+
+    public static class Checkpoint {
+        private final long dataOffset;
+        private final long resumeTimeUs;
+        // 日志文件中到该检查点为止的长度
+        private final long journalLength;
+
+        Checkpoint(long dataOffset, long resumeTimeUs, long journalLength) {
+            this.dataOffset = dataOffset;
+            this.resumeTimeUs = resumeTimeUs;
+            this.journalLength = journalLength;
+        }
+
+        /**
+         * @return 输出文件的有效长度
+         */
+        public long getDataOffset() {
+            return dataOffset;
+        }
+
+        /**
+         * @return 继续编码的视频时间戳，是检查点之后第一个关键帧的时间，视频已写完时为{@link #RESUME_VIDEO_DONE}
+         */
+        public long getResumeTimeUs() {
+            return resumeTimeUs;
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(new BufferedInputStream(in, 64 * 1024));
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value >= 0) {
+                count++;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
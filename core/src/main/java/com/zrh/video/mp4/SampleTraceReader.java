@@ -0,0 +1,126 @@
+package com.zrh.video.mp4;
+
+import com.zrh.video.codec.CodecBufferInfo;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 按顺序读取{@link SampleTraceWriter}记录的轨道和样本。任务中途崩溃时文件末尾的记录可能不完整，
+ * 读到不完整的记录时视为结束
+ */
+public class SampleTraceReader implements Closeable {
+    public static final int RECORD_END = 0;
+    public static final int RECORD_TRACK = 1;
+    public static final int RECORD_SAMPLE = 2;
+
+    private final DataInputStream in;
+    private final int rotation;
+    private final boolean[] audioTracks = new boolean[256];
+    private final CodecBufferInfo bufferInfo = new CodecBufferInfo();
+    private ByteBuffer sample = ByteBuffer.allocate(0);
+    private TrackFormat trackFormat;
+    private int trackIndex;
+    private boolean truncated = false;
+
+    public SampleTraceReader(File file) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+        if (in.readInt() != SampleTraceWriter.MAGIC) {
+            in.close();
+            throw new IOException("not a sample trace: " + file);
+        }
+        int version = in.readInt();
+        if (version != SampleTraceWriter.VERSION) {
+            in.close();
+            throw new IOException("unsupported sample trace version: " + version);
+        }
+        rotation = in.readInt();
+    }
+
+    public int getRotation() {
+        return rotation;
+    }
+
+    /**
+     * 读取下一条记录，通过对应的getter获取内容，样本缓冲区在下一次调用时会被覆盖
+     *
+     * @return 记录类型，读完时返回{@link #RECORD_END}
+     */
+    public int next() throws IOException {
+        int type = in.read();
+        if (type < 0) {
+            return RECORD_END;
+        }
+        try {
+            if (type == RECORD_TRACK) {
+                readTrack();
+            } else if (type == RECORD_SAMPLE) {
+                readSample();
+            } else {
+                throw new IOException("unknown record type: " + type);
+            }
+            return type;
+        } catch (EOFException e) {
+            truncated = true;
+            return RECORD_END;
+        }
+    }
+
+    private void readTrack() throws IOException {
+        trackIndex = in.readUnsignedByte();
+        audioTracks[trackIndex] = in.readBoolean();
+        trackFormat = TrackFormat.read(in);
+    }
+
+    private void readSample() throws IOException {
+        trackIndex = in.readUnsignedByte();
+        int flags = in.readUnsignedByte();
+        long presentationTimeUs = in.readLong();
+        int size = in.readInt();
+        if (sample.capacity() < size) {
+            sample = ByteBuffer.allocate(size);
+        }
+        sample.clear();
+        in.readFully(sample.array(), 0, size);
+        sample.limit(size);
+        bufferInfo.set(0, size, presentationTimeUs, flags);
+    }
+
+    public int getTrackIndex() {
+        return trackIndex;
+    }
+
+    public boolean isAudio() {
+        return audioTracks[trackIndex];
+    }
+
+    public TrackFormat getTrackFormat() {
+        return trackFormat;
+    }
+
+    public CodecBufferInfo getBufferInfo() {
+        return bufferInfo;
+    }
+
+    public ByteBuffer getSample() {
+        return sample;
+    }
+
+    /**
+     * @return 文件末尾是否有不完整的记录
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,57 @@
+package com.zrh.video.mp4;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * 把{@link SampleTraceWriter}记录的样本重新写入MP4Builder，用于在JVM上复现封装问题和测试耗时
+ * <p>
+ * 命令行：java -cp core.jar:isoparser.jar com.zrh.video.mp4.SampleTraceReplayer trace output.mp4 [repeat]
+ */
+public class SampleTraceReplayer {
+
+    /**
+     * @return 写入的样本数
+     */
+    public static long replay(File trace, File output) throws Exception {
+        try (SampleTraceReader reader = new SampleTraceReader(trace)) {
+            Mp4Movie movie = new Mp4Movie();
+            movie.setCacheFile(output);
+            movie.setRotation(reader.getRotation());
+            MP4Builder builder = new MP4Builder().createMovie(movie);
+            // 记录中的轨道序号映射为重新添加后的序号
+            int[] tracks = new int[256];
+            Arrays.fill(tracks, -1);
+            long count = 0;
+            int type;
+            while ((type = reader.next()) != SampleTraceReader.RECORD_END) {
+                if (type == SampleTraceReader.RECORD_TRACK) {
+                    tracks[reader.getTrackIndex()] = builder.addTrack(reader.getTrackFormat(), reader.isAudio());
+                } else {
+                    builder.writeSampleData(tracks[reader.getTrackIndex()], reader.getSample(),
+                            reader.getBufferInfo(), reader.isAudio());
+                    count++;
+                }
+            }
+            builder.finishMovie(false);
+            return count;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("usage: SampleTraceReplayer <trace> <output.mp4> [repeat]");
+            System.exit(1);
+        }
+        File trace = new File(args[0]);
+        File output = new File(args[1]);
+        int repeat = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        for (int i = 0; i < repeat; i++) {
+            long start = System.nanoTime();
+            long count = replay(trace, output);
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            System.out.println("run " + (i + 1) + ": " + count + " samples, "
+                    + output.length() + " bytes, " + elapsedMs + " ms");
+        }
+    }
+}
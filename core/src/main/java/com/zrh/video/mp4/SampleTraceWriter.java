@@ -0,0 +1,67 @@
+package com.zrh.video.mp4;
+
+import com.zrh.video.codec.CodecBufferInfo;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 记录写入MP4Builder的轨道格式和每个样本，用{@link SampleTraceReader}读取，
+ * {@link SampleTraceReplayer}可以在JVM上重新封装
+ * <p>
+ * 格式：文件头为magic、版本和旋转角度，之后是轨道记录和样本记录，整数均为大端序
+ */
+public class SampleTraceWriter implements Closeable {
+    static final int MAGIC = 0x4D585452; // "MXTR"
+    static final int VERSION = 1;
+
+    private final DataOutputStream out;
+    private byte[] scratch = new byte[0];
+
+    public SampleTraceWriter(File file, int rotation) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(rotation);
+    }
+
+    public void addTrack(int trackIndex, TrackFormat format, boolean isAudio) throws IOException {
+        out.writeByte(SampleTraceReader.RECORD_TRACK);
+        out.writeByte(trackIndex);
+        out.writeBoolean(isAudio);
+        format.write(out);
+    }
+
+    /**
+     * 在写入MP4Builder之前调用，不改变buffer的position和limit
+     */
+    public void writeSample(int trackIndex, ByteBuffer buffer, CodecBufferInfo info) throws IOException {
+        out.writeByte(SampleTraceReader.RECORD_SAMPLE);
+        out.writeByte(trackIndex);
+        out.writeByte(info.flags);
+        out.writeLong(info.presentationTimeUs);
+        writeBytes(buffer, info.offset, info.size);
+    }
+
+    private void writeBytes(ByteBuffer buffer, int offset, int size) throws IOException {
+        if (scratch.length < size) {
+            scratch = new byte[size];
+        }
+        ByteBuffer source = buffer.duplicate();
+        source.limit(offset + size);
+        source.position(offset);
+        source.get(scratch, 0, size);
+        out.writeInt(size);
+        out.write(scratch, 0, size);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,21 @@
+package com.zrh.video.mp4;
+
+/**
+ * 从SPS中解析出的编码参数，用于写入avcC/hvcC
+ */
+public class SpsInfo {
+    public int profileIdc;
+    public int levelIdc;
+    public int chromaFormat = 1;
+    public int bitDepthLumaMinus8;
+    public int bitDepthChromaMinus8;
+    // AVC为constraint_set标志位，HEVC为general_profile_compatibility_flags
+    public long profileCompatibilityFlags;
+
+    // 以下只有HEVC使用
+    public int profileSpace;
+    public boolean tierFlag;
+    public long constraintIndicatorFlags;
+    public int maxSubLayers = 1;
+    public boolean temporalIdNested;
+}
@@ -0,0 +1,112 @@
+package com.zrh.video.mp4;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 解析SPS中写入文件头需要的字段
+ */
+public class SpsParser {
+
+    /**
+     * @param nal 不包含起始码的AVC SPS
+     */
+    public static SpsInfo parseAvc(byte[] nal) {
+        BitReader reader = new BitReader(ByteBuffer.wrap(nal), 1, nal.length);
+        SpsInfo info = new SpsInfo();
+        info.profileIdc = reader.readBits(8);
+        info.profileCompatibilityFlags = reader.readBits(8);
+        info.levelIdc = reader.readBits(8);
+        // seq_parameter_set_id
+        reader.readUE();
+        switch (info.profileIdc) {
+            case 100:
+            case 110:
+            case 122:
+            case 244:
+            case 44:
+            case 83:
+            case 86:
+            case 118:
+            case 128:
+            case 138:
+            case 139:
+            case 134:
+            case 135:
+                // High及以上profile才带有色度和位深
+                info.chromaFormat = reader.readUE();
+                if (info.chromaFormat == 3) {
+                    // separate_colour_plane_flag
+                    reader.skipBits(1);
+                }
+                info.bitDepthLumaMinus8 = reader.readUE();
+                info.bitDepthChromaMinus8 = reader.readUE();
+                break;
+            default:
+                break;
+        }
+        return info;
+    }
+
+    /**
+     * @param nal 不包含起始码的HEVC SPS
+     */
+    public static SpsInfo parseHevc(byte[] nal) {
+        BitReader reader = new BitReader(ByteBuffer.wrap(nal), 2, nal.length);
+        SpsInfo info = new SpsInfo();
+        // sps_video_parameter_set_id
+        reader.skipBits(4);
+        int maxSubLayersMinus1 = reader.readBits(3);
+        info.maxSubLayers = maxSubLayersMinus1 + 1;
+        info.temporalIdNested = reader.readBoolean();
+
+        // profile_tier_level
+        info.profileSpace = reader.readBits(2);
+        info.tierFlag = reader.readBoolean();
+        info.profileIdc = reader.readBits(5);
+        info.profileCompatibilityFlags = reader.readBits(16) & 0xffffL;
+        info.profileCompatibilityFlags = (info.profileCompatibilityFlags << 16) | (reader.readBits(16) & 0xffffL);
+        info.constraintIndicatorFlags = reader.readBits(16) & 0xffffL;
+        info.constraintIndicatorFlags = (info.constraintIndicatorFlags << 16) | (reader.readBits(16) & 0xffffL);
+        info.constraintIndicatorFlags = (info.constraintIndicatorFlags << 16) | (reader.readBits(16) & 0xffffL);
+        info.levelIdc = reader.readBits(8);
+
+        boolean[] subLayerProfilePresent = new boolean[maxSubLayersMinus1];
+        boolean[] subLayerLevelPresent = new boolean[maxSubLayersMinus1];
+        for (int i = 0; i < maxSubLayersMinus1; i++) {
+            subLayerProfilePresent[i] = reader.readBoolean();
+            subLayerLevelPresent[i] = reader.readBoolean();
+        }
+        if (maxSubLayersMinus1 > 0) {
+            reader.skipBits(2 * (8 - maxSubLayersMinus1));
+        }
+        for (int i = 0; i < maxSubLayersMinus1; i++) {
+            if (subLayerProfilePresent[i]) {
+                reader.skipBits(88);
+            }
+            if (subLayerLevelPresent[i]) {
+                reader.skipBits(8);
+            }
+        }
+
+        // sps_seq_parameter_set_id
+        reader.readUE();
+        info.chromaFormat = reader.readUE();
+        if (info.chromaFormat == 3) {
+            // separate_colour_plane_flag
+            reader.skipBits(1);
+        }
+        // pic_width_in_luma_samples, pic_height_in_luma_samples
+        reader.readUE();
+        reader.readUE();
+        if (reader.readBoolean()) {
+            // conformance_window offsets
+            reader.readUE();
+            reader.readUE();
+            reader.readUE();
+            reader.readUE();
+        }
+        info.bitDepthLumaMinus8 = reader.readUE();
+        info.bitDepthChromaMinus8 = reader.readUE();
+        return info;
+    }
+}
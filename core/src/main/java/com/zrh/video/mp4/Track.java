@@ -0,0 +1,519 @@
+package com.zrh.video.mp4;
+
+import com.coremedia.iso.boxes.AbstractMediaHeaderBox;
+import com.coremedia.iso.boxes.SampleDescriptionBox;
+import com.coremedia.iso.boxes.SoundMediaHeaderBox;
+import com.coremedia.iso.boxes.VideoMediaHeaderBox;
+import com.coremedia.iso.boxes.sampleentry.AudioSampleEntry;
+import com.coremedia.iso.boxes.sampleentry.VisualSampleEntry;
+import com.googlecode.mp4parser.boxes.mp4.ESDescriptorBox;
+import com.googlecode.mp4parser.boxes.mp4.objectdescriptors.AudioSpecificConfig;
+import com.googlecode.mp4parser.boxes.mp4.objectdescriptors.DecoderConfigDescriptor;
+import com.googlecode.mp4parser.boxes.mp4.objectdescriptors.ESDescriptor;
+import com.googlecode.mp4parser.boxes.mp4.objectdescriptors.SLConfigDescriptor;
+import com.mp4parser.iso14496.part15.AvcConfigurationBox;
+import com.mp4parser.iso14496.part15.HevcConfigurationBox;
+import com.mp4parser.iso14496.part15.HevcDecoderConfigurationRecord;
+import com.zrh.video.codec.CodecBufferInfo;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+public class Track {
+    private long trackId = 0;
+    private ArrayList<Sample> samples = new ArrayList<>();
+    private long duration = 0;
+    private String handler;
+    private AbstractMediaHeaderBox headerBox = null;
+    private SampleDescriptionBox sampleDescriptionBox = null;
+    private LinkedList<Integer> syncSamples = null;
+    private int timeScale;
+    private Date creationTime = new Date();
+    private int height;
+    private int width;
+    private float volume = 0;
+    private ArrayList<Long> sampleDurations = new ArrayList<Long>();
+    // 按解码顺序记录的显示时间，单位为timeScale，开启B帧时不再单调递增
+    private ArrayList<Long> presentationTimes = new ArrayList<>();
+    private long[] compositionOffsets = null;
+    private long compositionDelay = 0;
+    private long defaultSampleDuration;
+    private boolean timesChanged = false;
+    private boolean isAudio = false;
+    // 样本由NAL单元组成，写入时需要把起始码替换为长度前缀
+    private boolean isNalFormat = false;
+    private static Map<Integer, Integer> samplingFrequencyIndexMap = new HashMap<Integer, Integer>();
+
+    static {
+        samplingFrequencyIndexMap.put(96000, 0x0);
+        samplingFrequencyIndexMap.put(88200, 0x1);
+        samplingFrequencyIndexMap.put(64000, 0x2);
+        samplingFrequencyIndexMap.put(48000, 0x3);
+        samplingFrequencyIndexMap.put(44100, 0x4);
+        samplingFrequencyIndexMap.put(32000, 0x5);
+        samplingFrequencyIndexMap.put(24000, 0x6);
+        samplingFrequencyIndexMap.put(22050, 0x7);
+        samplingFrequencyIndexMap.put(16000, 0x8);
+        samplingFrequencyIndexMap.put(12000, 0x9);
+        samplingFrequencyIndexMap.put(11025, 0xa);
+        samplingFrequencyIndexMap.put(8000, 0xb);
+        samplingFrequencyIndexMap.put(7350, 0xc);
+    }
+
+    public Track(int id, TrackFormat format, boolean isAudio) throws Exception {
+        trackId = id;
+        if (!isAudio) {
+            defaultSampleDuration = 3015;
+            width = format.getInteger(TrackFormat.KEY_WIDTH);
+            height = format.getInteger(TrackFormat.KEY_HEIGHT);
+            timeScale = 90000;
+            syncSamples = new LinkedList<Integer>();
+            handler = "vide";
+            headerBox = new VideoMediaHeaderBox();
+            sampleDescriptionBox = new SampleDescriptionBox();
+            String mime = format.getString(TrackFormat.KEY_MIME);
+            if (mime.equals("video/avc")) {
+                isNalFormat = true;
+                VisualSampleEntry visualSampleEntry = new VisualSampleEntry("avc1");
+                visualSampleEntry.setDataReferenceIndex(1);
+                visualSampleEntry.setDepth(24);
+                visualSampleEntry.setFrameCount(1);
+                visualSampleEntry.setHorizresolution(72);
+                visualSampleEntry.setVertresolution(72);
+                visualSampleEntry.setWidth(width);
+                visualSampleEntry.setHeight(height);
+
+                AvcConfigurationBox avcConfigurationBox = new AvcConfigurationBox();
+                // 写入编码器实际协商的profile和level
+                SpsInfo sps = new SpsInfo();
+                sps.profileIdc = 100;
+                sps.levelIdc = 13;
+
+                // SPS和PPS可能分别在csd-0和csd-1中，也可能都在csd-0中，起始码可能是3或4字节
+                ArrayList<byte[]> spsArray = new ArrayList<byte[]>();
+                ArrayList<byte[]> ppsArray = new ArrayList<byte[]>();
+                for (String key : new String[]{"csd-0", "csd-1"}) {
+                    ByteBuffer csd = format.getByteBuffer(key);
+                    if (csd == null) {
+                        continue;
+                    }
+                    for (byte[] nal : NalUnitUtils.getNalUnits(csd.duplicate())) {
+                        int type = NalUnitUtils.getNalType(nal[0]);
+                        if (type == NalUnitUtils.NAL_TYPE_SPS) {
+                            if (spsArray.isEmpty()) {
+                                sps = SpsParser.parseAvc(nal);
+                            }
+                            spsArray.add(nal);
+                        } else if (type == NalUnitUtils.NAL_TYPE_PPS) {
+                            ppsArray.add(nal);
+                        }
+                    }
+                }
+                if (!spsArray.isEmpty()) {
+                    avcConfigurationBox.setSequenceParameterSets(spsArray);
+                    avcConfigurationBox.setPictureParameterSets(ppsArray);
+                }
+
+                avcConfigurationBox.setAvcLevelIndication(sps.levelIdc);
+                avcConfigurationBox.setAvcProfileIndication(sps.profileIdc);
+                avcConfigurationBox.setBitDepthLumaMinus8(sps.bitDepthLumaMinus8);
+                avcConfigurationBox.setBitDepthChromaMinus8(sps.bitDepthChromaMinus8);
+                avcConfigurationBox.setChromaFormat(sps.chromaFormat);
+                avcConfigurationBox.setConfigurationVersion(1);
+                avcConfigurationBox.setLengthSizeMinusOne(3);
+                avcConfigurationBox.setProfileCompatibility((int) sps.profileCompatibilityFlags);
+
+                visualSampleEntry.addBox(avcConfigurationBox);
+                sampleDescriptionBox.addBox(visualSampleEntry);
+            } else if (mime.equals("video/hevc")) {
+                isNalFormat = true;
+                VisualSampleEntry visualSampleEntry = new VisualSampleEntry("hvc1");
+                visualSampleEntry.setDataReferenceIndex(1);
+                visualSampleEntry.setDepth(24);
+                visualSampleEntry.setFrameCount(1);
+                visualSampleEntry.setHorizresolution(72);
+                visualSampleEntry.setVertresolution(72);
+                visualSampleEntry.setWidth(width);
+                visualSampleEntry.setHeight(height);
+
+                HevcConfigurationBox hevcConfigurationBox = new HevcConfigurationBox();
+                hevcConfigurationBox.setHevcDecoderConfigurationRecord(createHevcConfiguration(format));
+                visualSampleEntry.addBox(hevcConfigurationBox);
+                sampleDescriptionBox.addBox(visualSampleEntry);
+            } else if (mime.equals("video/mp4v")) {
+                VisualSampleEntry visualSampleEntry = new VisualSampleEntry("mp4v");
+                visualSampleEntry.setDataReferenceIndex(1);
+                visualSampleEntry.setDepth(24);
+                visualSampleEntry.setFrameCount(1);
+                visualSampleEntry.setHorizresolution(72);
+                visualSampleEntry.setVertresolution(72);
+                visualSampleEntry.setWidth(width);
+                visualSampleEntry.setHeight(height);
+
+                sampleDescriptionBox.addBox(visualSampleEntry);
+            }
+        } else {
+            isAudio = true;
+            volume = 1;
+            timeScale = format.getInteger(TrackFormat.KEY_SAMPLE_RATE);
+            handler = "soun";
+            headerBox = new SoundMediaHeaderBox();
+            sampleDescriptionBox = new SampleDescriptionBox();
+            sampleDescriptionBox.addBox(createAudioSampleEntry(format));
+        }
+    }
+
+    /**
+     * 是否可以不重新编码直接写入MP4
+     */
+    public static boolean isAudioSupported(TrackFormat format) {
+        String mimeType = format.getString(TrackFormat.KEY_MIME);
+        if (TrackFormat.MIMETYPE_AUDIO_OPUS.equals(mimeType)) {
+            return format.containsKey("csd-0");
+        }
+        return TrackFormat.MIMETYPE_AUDIO_AAC.equals(mimeType)
+                || TrackFormat.MIMETYPE_AUDIO_MPEG.equals(mimeType)
+                || TrackFormat.MIMETYPE_AUDIO_AMR_NB.equals(mimeType)
+                || TrackFormat.MIMETYPE_AUDIO_AMR_WB.equals(mimeType);
+    }
+
+    private AudioSampleEntry createAudioSampleEntry(TrackFormat format) {
+        String mimeType = format.getString(TrackFormat.KEY_MIME);
+        int channelCount = format.getInteger(TrackFormat.KEY_CHANNEL_COUNT);
+        int sampleRate = format.getInteger(TrackFormat.KEY_SAMPLE_RATE);
+        AudioSampleEntry audioSampleEntry;
+        if (TrackFormat.MIMETYPE_AUDIO_OPUS.equals(mimeType)) {
+            defaultSampleDuration = 960;
+            audioSampleEntry = new AudioSampleEntry("Opus");
+            audioSampleEntry.addBox(new RawBox("dOps", createOpusSpecificData(getBytes(format.getByteBuffer("csd-0")))));
+        } else if (TrackFormat.MIMETYPE_AUDIO_AMR_NB.equals(mimeType) || TrackFormat.MIMETYPE_AUDIO_AMR_WB.equals(mimeType)) {
+            boolean wideband = TrackFormat.MIMETYPE_AUDIO_AMR_WB.equals(mimeType);
+            defaultSampleDuration = wideband ? 320 : 160;
+            audioSampleEntry = new AudioSampleEntry(wideband ? "sawb" : "samr");
+            audioSampleEntry.addBox(new RawBox("damr", createAmrSpecificData(wideband)));
+        } else if (TrackFormat.MIMETYPE_AUDIO_MPEG.equals(mimeType)) {
+            defaultSampleDuration = 1152;
+            audioSampleEntry = new AudioSampleEntry("mp4a");
+            audioSampleEntry.addBox(createEsds(format, getMpegAudioObjectType(sampleRate), null));
+        } else if (TrackFormat.MIMETYPE_AUDIO_AAC.equals(mimeType)) {
+            defaultSampleDuration = 1024;
+            audioSampleEntry = new AudioSampleEntry("mp4a");
+            // 有csd-0时原样写入，保留HE-AAC等扩展配置
+            byte[] config = format.containsKey("csd-0")
+                    ? getBytes(format.getByteBuffer("csd-0"))
+                    : createAudioSpecificConfig(2, sampleRate, channelCount);
+            audioSampleEntry.addBox(createEsds(format, 0x40, new RawAudioSpecificConfig(config)));
+        } else {
+            throw new IllegalArgumentException("unsupported audio format: " + mimeType);
+        }
+        audioSampleEntry.setChannelCount(channelCount);
+        audioSampleEntry.setSampleRate(sampleRate);
+        audioSampleEntry.setDataReferenceIndex(1);
+        audioSampleEntry.setSampleSize(16);
+        return audioSampleEntry;
+    }
+
+    private ESDescriptorBox createEsds(TrackFormat format, int objectType, AudioSpecificConfig audioSpecificConfig) {
+        ESDescriptorBox esds = new ESDescriptorBox();
+        ESDescriptor descriptor = new ESDescriptor();
+        descriptor.setEsId(0);
+
+        SLConfigDescriptor slConfigDescriptor = new SLConfigDescriptor();
+        slConfigDescriptor.setPredefined(2);
+        descriptor.setSlConfigDescriptor(slConfigDescriptor);
+
+        DecoderConfigDescriptor decoderConfigDescriptor = new DecoderConfigDescriptor();
+        decoderConfigDescriptor.setObjectTypeIndication(objectType);
+        decoderConfigDescriptor.setStreamType(5);
+        decoderConfigDescriptor.setBufferSizeDB(1536);
+        // 重新编码的音频使用实际码率
+        int bitrate = format.containsKey(TrackFormat.KEY_BIT_RATE) ? format.getInteger(TrackFormat.KEY_BIT_RATE) : 96000;
+        decoderConfigDescriptor.setMaxBitRate(bitrate);
+        decoderConfigDescriptor.setAvgBitRate(bitrate);
+        if (audioSpecificConfig != null) {
+            decoderConfigDescriptor.setAudioSpecificInfo(audioSpecificConfig);
+        }
+
+        descriptor.setDecoderConfigDescriptor(decoderConfigDescriptor);
+
+        ByteBuffer data = descriptor.serialize();
+        esds.setEsDescriptor(descriptor);
+        esds.setData(data);
+        return esds;
+    }
+
+    /**
+     * 没有csd-0时按采样率和声道数生成AudioSpecificConfig，不在索引表中的采样率直接写入24位的数值
+     */
+    static byte[] createAudioSpecificConfig(int audioObjectType, int sampleRate, int channelCount) {
+        Integer index = samplingFrequencyIndexMap.get(sampleRate);
+        long bits = audioObjectType;
+        int bitCount = 5;
+        if (index != null) {
+            bits = (bits << 4) | index;
+            bitCount += 4;
+        } else {
+            bits = (bits << 28) | (0xfL << 24) | sampleRate;
+            bitCount += 28;
+        }
+        // 声道数，以及GASpecificConfig中的frameLengthFlag、dependsOnCoreCoder、extensionFlag均为0
+        bits = (bits << 7) | ((long) channelCount << 3);
+        bitCount += 7;
+        byte[] config = new byte[bitCount / 8];
+        for (int i = 0; i < config.length; i++) {
+            config[i] = (byte) (bits >> (bitCount - 8 * (i + 1)));
+        }
+        return config;
+    }
+
+    /**
+     * 把csd-0中的OpusHead(小端)转换为dOps的内容(大端)
+     */
+    static int getMpegAudioObjectType(int sampleRate) {
+        // MPEG-2的低采样率扩展为0x69，MPEG-1为0x6b
+        if (sampleRate == 16000 || sampleRate == 22050 || sampleRate == 24000) {
+            return 0x69;
+        }
+        return 0x6b;
+    }
+
+    static byte[] createOpusSpecificData(byte[] opusHead) {
+        // "OpusHead"之后依次为version、声道数、pre-skip、采样率、增益、声道映射
+        if (opusHead.length < 19) {
+            throw new IllegalArgumentException("invalid OpusHead");
+        }
+        ByteBuffer head = ByteBuffer.wrap(opusHead).order(ByteOrder.LITTLE_ENDIAN);
+        int channelCount = head.get(9) & 0xff;
+        int mappingFamily = head.get(18) & 0xff;
+        // 映射表包含stream数、coupled数和每个声道的映射
+        int mappingSize = mappingFamily == 0 ? 0 : Math.min(2 + channelCount, opusHead.length - 19);
+        ByteBuffer data = ByteBuffer.allocate(11 + mappingSize);
+        data.put((byte) 0);
+        data.put((byte) channelCount);
+        data.putShort(head.getShort(10));
+        data.putInt(head.getInt(12));
+        data.putShort(head.getShort(16));
+        data.put((byte) mappingFamily);
+        data.put(opusHead, 19, mappingSize);
+        return data.array();
+    }
+
+    private static byte[] createAmrSpecificData(boolean wideband) {
+        ByteBuffer data = ByteBuffer.allocate(9);
+        // vendor
+        data.put(new byte[]{' ', ' ', ' ', ' '});
+        // decoder_version
+        data.put((byte) 0);
+        // mode_set，支持所有模式
+        data.putShort((short) (wideband ? 0x83ff : 0x81ff));
+        // mode_change_period
+        data.put((byte) 0);
+        // frames_per_sample
+        data.put((byte) 1);
+        return data.array();
+    }
+
+    private static byte[] getBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private HevcDecoderConfigurationRecord createHevcConfiguration(TrackFormat format) {
+        HevcDecoderConfigurationRecord record = new HevcDecoderConfigurationRecord();
+        record.setConfigurationVersion(1);
+        record.setLengthSizeMinusOne(3);
+
+        // csd-0中依次包含VPS、SPS、PPS
+        ByteBuffer csd = format.getByteBuffer("csd-0");
+        if (csd == null) {
+            return record;
+        }
+        List<HevcDecoderConfigurationRecord.Array> arrays = new ArrayList<>();
+        for (byte[] nal : NalUnitUtils.getNalUnits(csd.duplicate())) {
+            int type = NalUnitUtils.getHevcNalType(nal[0]);
+            if (type != NalUnitUtils.HEVC_NAL_TYPE_VPS
+                    && type != NalUnitUtils.HEVC_NAL_TYPE_SPS
+                    && type != NalUnitUtils.HEVC_NAL_TYPE_PPS) {
+                continue;
+            }
+            if (type == NalUnitUtils.HEVC_NAL_TYPE_SPS) {
+                SpsInfo sps = SpsParser.parseHevc(nal);
+                record.setGeneral_profile_space(sps.profileSpace);
+                record.setGeneral_tier_flag(sps.tierFlag);
+                record.setGeneral_profile_idc(sps.profileIdc);
+                record.setGeneral_profile_compatibility_flags(sps.profileCompatibilityFlags);
+                record.setGeneral_constraint_indicator_flags(sps.constraintIndicatorFlags);
+                record.setGeneral_level_idc(sps.levelIdc);
+                record.setChromaFormat(sps.chromaFormat);
+                record.setBitDepthLumaMinus8(sps.bitDepthLumaMinus8);
+                record.setBitDepthChromaMinus8(sps.bitDepthChromaMinus8);
+                record.setNumTemporalLayers(sps.maxSubLayers);
+                record.setTemporalIdNested(sps.temporalIdNested);
+            }
+            HevcDecoderConfigurationRecord.Array array = null;
+            for (HevcDecoderConfigurationRecord.Array item : arrays) {
+                if (item.nal_unit_type == type) {
+                    array = item;
+                }
+            }
+            if (array == null) {
+                array = new HevcDecoderConfigurationRecord.Array();
+                array.array_completeness = true;
+                array.nal_unit_type = type;
+                array.nalUnits = new ArrayList<>();
+                arrays.add(array);
+            }
+            array.nalUnits.add(nal);
+        }
+        record.setArrays(arrays);
+        return record;
+    }
+
+    public long getTrackId() {
+        return trackId;
+    }
+
+    public void addSample(long offset, long size, CodecBufferInfo bufferInfo) {
+        boolean isSyncFrame = !isAudio && (bufferInfo.flags & CodecBufferInfo.BUFFER_FLAG_KEY_FRAME) != 0;
+        samples.add(new Sample(offset, size));
+        if (syncSamples != null && isSyncFrame) {
+            syncSamples.add(samples.size());
+        }
+
+        presentationTimes.add((bufferInfo.presentationTimeUs * timeScale + 500000L) / 1000000L);
+        timesChanged = true;
+    }
+
+    /**
+     * 根据显示时间计算解码时间：解码时间取排序后的显示时间，
+     * 存在帧重排时整体前移，保证每一帧的显示时间不早于解码时间
+     */
+    private void computeTimes() {
+        if (!timesChanged && !sampleDurations.isEmpty()) {
+            return;
+        }
+        timesChanged = false;
+        sampleDurations.clear();
+        compositionOffsets = null;
+        compositionDelay = 0;
+        int count = presentationTimes.size();
+        if (count == 0) {
+            sampleDurations.add(defaultSampleDuration);
+            duration = defaultSampleDuration;
+            return;
+        }
+
+        long[] decodeTimes = new long[count];
+        for (int i = 0; i < count; i++) {
+            decodeTimes[i] = presentationTimes.get(i);
+        }
+        Arrays.sort(decodeTimes);
+        for (int i = 0; i < count; i++) {
+            compositionDelay = Math.max(compositionDelay, decodeTimes[i] - presentationTimes.get(i));
+        }
+
+        // 最后一帧没有下一帧作参考，使用默认时长
+        duration = 0;
+        for (int i = 0; i < count; i++) {
+            long delta = i < count - 1 ? decodeTimes[i + 1] - decodeTimes[i] : defaultSampleDuration;
+            sampleDurations.add(delta);
+            duration += delta;
+        }
+
+        if (compositionDelay > 0) {
+            compositionOffsets = new long[count];
+            for (int i = 0; i < count; i++) {
+                compositionOffsets[i] = presentationTimes.get(i) - decodeTimes[i] + compositionDelay;
+            }
+        }
+    }
+
+    public ArrayList<Sample> getSamples() {
+        return samples;
+    }
+
+    public long getDuration() {
+        computeTimes();
+        return duration;
+    }
+
+    public String getHandler() {
+        return handler;
+    }
+
+    public AbstractMediaHeaderBox getMediaHeaderBox() {
+        return headerBox;
+    }
+
+    public SampleDescriptionBox getSampleDescriptionBox() {
+        return sampleDescriptionBox;
+    }
+
+    public long[] getSyncSamples() {
+        if (syncSamples == null || syncSamples.isEmpty()) {
+            return null;
+        }
+        long[] returns = new long[syncSamples.size()];
+        for (int i = 0; i < syncSamples.size(); i++) {
+            returns[i] = syncSamples.get(i);
+        }
+        return returns;
+    }
+
+    public int getTimeScale() {
+        return timeScale;
+    }
+
+    public Date getCreationTime() {
+        return creationTime;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public float getVolume() {
+        return volume;
+    }
+
+    public ArrayList<Long> getSampleDurations() {
+        computeTimes();
+        return sampleDurations;
+    }
+
+    /**
+     * @return 每一帧的显示时间相对解码时间的偏移，没有帧重排时返回null
+     */
+    public long[] getCompositionOffsets() {
+        computeTimes();
+        return compositionOffsets;
+    }
+
+    /**
+     * @return 第一帧的显示时间相对解码时间的延迟，写入编辑列表使播放从第一帧显示开始
+     */
+    public long getCompositionDelay() {
+        computeTimes();
+        return compositionDelay;
+    }
+
+    public boolean isAudio() {
+        return isAudio;
+    }
+
+    public boolean isNalFormat() {
+        return isNalFormat;
+    }
+}
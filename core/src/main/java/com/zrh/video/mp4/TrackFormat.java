@@ -0,0 +1,137 @@
+package com.zrh.video.mp4;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 轨道格式，键和取值与android.media.MediaFormat一致，只包含写入MP4需要的部分
+ */
+public class TrackFormat {
+    public static final String KEY_MIME = "mime";
+    public static final String KEY_WIDTH = "width";
+    public static final String KEY_HEIGHT = "height";
+    public static final String KEY_SAMPLE_RATE = "sample-rate";
+    public static final String KEY_CHANNEL_COUNT = "channel-count";
+    public static final String KEY_BIT_RATE = "bitrate";
+    // 编解码器的配置数据，如AVC的SPS/PPS、AAC的AudioSpecificConfig
+    public static final String[] KEY_CSD = {"csd-0", "csd-1", "csd-2"};
+
+    public static final String MIMETYPE_VIDEO_AVC = "video/avc";
+    public static final String MIMETYPE_VIDEO_HEVC = "video/hevc";
+    public static final String MIMETYPE_AUDIO_AAC = "audio/mp4a-latm";
+    public static final String MIMETYPE_AUDIO_MPEG = "audio/mpeg";
+    public static final String MIMETYPE_AUDIO_AMR_NB = "audio/3gpp";
+    public static final String MIMETYPE_AUDIO_AMR_WB = "audio/amr-wb";
+    public static final String MIMETYPE_AUDIO_OPUS = "audio/opus";
+
+    private static final int VALUE_INT = 0;
+    private static final int VALUE_STRING = 1;
+    private static final int VALUE_BYTES = 2;
+
+    private final Map<String, Object> values = new HashMap<>();
+
+    public static TrackFormat createVideoFormat(String mime, int width, int height) {
+        TrackFormat format = new TrackFormat();
+        format.setString(KEY_MIME, mime);
+        format.setInteger(KEY_WIDTH, width);
+        format.setInteger(KEY_HEIGHT, height);
+        return format;
+    }
+
+    public static TrackFormat createAudioFormat(String mime, int sampleRate, int channelCount) {
+        TrackFormat format = new TrackFormat();
+        format.setString(KEY_MIME, mime);
+        format.setInteger(KEY_SAMPLE_RATE, sampleRate);
+        format.setInteger(KEY_CHANNEL_COUNT, channelCount);
+        return format;
+    }
+
+    public boolean containsKey(String name) {
+        return values.containsKey(name);
+    }
+
+    public Set<String> getKeys() {
+        return values.keySet();
+    }
+
+    /**
+     * 与MediaFormat一样，不存在时抛出异常
+     */
+    public int getInteger(String name) {
+        return (Integer) values.get(name);
+    }
+
+    public String getString(String name) {
+        return (String) values.get(name);
+    }
+
+    public ByteBuffer getByteBuffer(String name) {
+        return (ByteBuffer) values.get(name);
+    }
+
+    public void setInteger(String name, int value) {
+        values.put(name, value);
+    }
+
+    public void setString(String name, String value) {
+        values.put(name, value);
+    }
+
+    public void setByteBuffer(String name, ByteBuffer bytes) {
+        values.put(name, bytes);
+    }
+
+    /**
+     * 写入所有键值，用于样本记录和日志文件
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeShort(values.size());
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            out.writeUTF(entry.getKey());
+            Object value = entry.getValue();
+            if (value instanceof Integer) {
+                out.writeByte(VALUE_INT);
+                out.writeInt((Integer) value);
+            } else if (value instanceof ByteBuffer) {
+                ByteBuffer bytes = ((ByteBuffer) value).duplicate();
+                out.writeByte(VALUE_BYTES);
+                out.writeInt(bytes.remaining());
+                byte[] array = new byte[bytes.remaining()];
+                bytes.get(array);
+                out.write(array);
+            } else {
+                out.writeByte(VALUE_STRING);
+                out.writeUTF(String.valueOf(value));
+            }
+        }
+    }
+
+    static TrackFormat read(DataInput in) throws IOException {
+        TrackFormat format = new TrackFormat();
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            String key = in.readUTF();
+            int valueType = in.readUnsignedByte();
+            if (valueType == VALUE_INT) {
+                format.setInteger(key, in.readInt());
+            } else if (valueType == VALUE_BYTES) {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                format.setByteBuffer(key, ByteBuffer.wrap(bytes));
+            } else {
+                format.setString(key, in.readUTF());
+            }
+        }
+        return format;
+    }
+
+    @Override
+    public String toString() {
+        return values.toString();
+    }
+}
@@ -0,0 +1,111 @@
+package com.zrh.video
+
+import org.junit.Assert.*
+import org.junit.Test
+import java.nio.ByteOrder
+import kotlin.concurrent.thread
+
+class DirectBufferPoolTest {
+
+    @Test
+    fun roundsUpToQuarterPowerOfTwoClasses() {
+        assertEquals(16, DirectBufferPool.getCapacity(1))
+        assertEquals(16, DirectBufferPool.getCapacity(16))
+        assertEquals(20, DirectBufferPool.getCapacity(17))
+        assertEquals(40, DirectBufferPool.getCapacity(33))
+        assertEquals(81920, DirectBufferPool.getCapacity(65537))
+        // 1080p RGBA
+        assertEquals(8 shl 20, DirectBufferPool.getCapacity(1920 * 1080 * 4))
+        assertEquals(1 shl 30, DirectBufferPool.getCapacity(1 shl 30))
+    }
+
+    @Test
+    fun reusesReleasedBuffers() {
+        val pool = DirectBufferPool(1024)
+        val first = pool.acquire(100)
+        assertTrue(first.isDirect)
+        assertEquals(0, first.position())
+        assertEquals(100, first.limit())
+        first.order(ByteOrder.LITTLE_ENDIAN).putInt(1)
+        pool.release(first)
+
+        val second = pool.acquire(97)
+        assertSame(first, second)
+        assertEquals(0, second.position())
+        assertEquals(97, second.limit())
+        assertEquals(ByteOrder.BIG_ENDIAN, second.order())
+        assertEquals(2, pool.acquireCount)
+        assertEquals(1, pool.reuseCount)
+        assertEquals(112, pool.allocatedBytes)
+        assertEquals(112, pool.inUseBytes)
+    }
+
+    @Test
+    fun failsFastWhenBudgetExhausted() {
+        val pool = DirectBufferPool(256)
+        pool.waitTimeoutMs = 0
+        val held = pool.acquire(200)
+        try {
+            pool.acquire(100)
+            fail()
+        } catch (expected: IllegalStateException) {
+        }
+        try {
+            pool.acquire(1000)
+            fail()
+        } catch (expected: IllegalStateException) {
+        }
+        assertEquals(2, pool.failCount)
+        pool.release(held)
+        assertNotNull(pool.acquire(100))
+    }
+
+    @Test
+    fun evictsIdleBuffersOfOtherClasses() {
+        val pool = DirectBufferPool(256)
+        pool.waitTimeoutMs = 0
+        pool.release(pool.acquire(200))
+        assertEquals(224, pool.idleBytes)
+
+        val buffer = pool.acquire(100)
+        assertEquals(112, buffer.capacity())
+        assertEquals(0, pool.idleBytes)
+        assertEquals(112, pool.allocatedBytes)
+        assertEquals(224, pool.peakBytes)
+    }
+
+    @Test
+    fun waitsForRelease() {
+        val pool = DirectBufferPool(256)
+        pool.waitTimeoutMs = 5000
+        val held = pool.acquire(200)
+        val releaser = thread {
+            Thread.sleep(50)
+            pool.release(held)
+        }
+        val buffer = pool.acquire(200)
+        releaser.join()
+        assertSame(held, buffer)
+        assertEquals(1, pool.waitCount)
+        assertEquals(0, pool.failCount)
+    }
+
+    @Test
+    fun shrinkingBudgetDropsBuffersOnRelease() {
+        val pool = DirectBufferPool(1024)
+        val held = pool.acquire(200)
+        pool.release(pool.acquire(100))
+        pool.budget = 128
+        assertEquals(224, pool.allocatedBytes)
+        pool.release(held)
+        assertEquals(0, pool.allocatedBytes)
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun rejectsDoubleRelease() {
+        val pool = DirectBufferPool(1024)
+        val buffer = pool.acquire(16)
+        pool.release(buffer)
+        pool.release(buffer)
+    }
+}
@@ -0,0 +1,44 @@
+package com.zrh.video
+
+import org.junit.Assert.*
+import org.junit.Test
+
+class TargetSizeStrategyTest {
+
+    private fun origin(bitrate: Int, audioBitrate: Int, durationMs: Long): VideoQuality {
+        val quality = VideoQuality(1920, 1080, bitrate)
+        quality.audioBitrate = audioBitrate
+        quality.durationMs = durationMs
+        return quality
+    }
+
+    @Test
+    fun acceptsWhenSourceExceedsTarget() {
+        // 10秒8Mbps约10MB
+        val origin = origin(8_000_000, 128_000, 10_000)
+        assertTrue(TargetSizeStrategy(5L * 1000 * 1000).accept(origin))
+        assertFalse(TargetSizeStrategy(11L * 1000 * 1000).accept(origin))
+    }
+
+    @Test
+    fun audioNotCountedTwice() {
+        // 总码率1Mbps、其中音频320kbps，10秒共1.25MB，已经小于1.3MB的目标
+        val origin = origin(1_000_000, 320_000, 10_000)
+        assertFalse(TargetSizeStrategy(1_300_000).accept(origin))
+        assertTrue(TargetSizeStrategy(1_200_000).accept(origin))
+    }
+
+    @Test
+    fun unknownDurationNotAccepted() {
+        assertFalse(TargetSizeStrategy(1000).accept(origin(8_000_000, 128_000, 0)))
+    }
+
+    @Test
+    fun videoBitrateLeavesRoomForAudio() {
+        val origin = origin(8_000_000, 128_000, 10_000)
+        val quality = TargetSizeStrategy(5L * 1000 * 1000).calculate(origin)
+        // 5MB*8*0.97/10s - 128kbps
+        assertEquals(3_752_000, quality.bitrate)
+        assertEquals(128_000, quality.audioBitrate)
+    }
+}
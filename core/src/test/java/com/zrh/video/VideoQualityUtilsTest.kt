@@ -0,0 +1,47 @@
+package com.zrh.video
+
+import org.junit.Assert.*
+import org.junit.Test
+
+class VideoQualityUtilsTest {
+
+    @Test
+    fun avcProfileKeptForAvc() {
+        assertEquals(VideoQuality.PROFILE_AVC_HIGH, VideoQualityUtils.getProfile("video/avc", VideoQuality.PROFILE_AVC_HIGH))
+        assertEquals(0x1000, VideoQualityUtils.getLevel("video/avc", 0x1000))
+    }
+
+    @Test
+    fun avcProfileMapsToHevcMain() {
+        for (profile in intArrayOf(VideoQuality.PROFILE_AVC_BASELINE, VideoQuality.PROFILE_AVC_MAIN, VideoQuality.PROFILE_AVC_HIGH)) {
+            assertEquals(VideoQuality.PROFILE_HEVC_MAIN, VideoQualityUtils.getProfile("video/hevc", profile))
+        }
+    }
+
+    @Test
+    fun avcLevelMapsToHevcLevel() {
+        // AVC 3.1 -> HEVC 3.1，AVC 4.1 -> HEVC 4.1，AVC 5.1 -> HEVC 5.1
+        assertEquals(0x100, VideoQualityUtils.getLevel("video/hevc", 0x200))
+        assertEquals(0x1000, VideoQualityUtils.getLevel("video/hevc", 0x1000))
+        assertEquals(0x10000, VideoQualityUtils.getLevel("video/hevc", 0x8000))
+        assertEquals(0x1000000, VideoQualityUtils.getLevel("video/hevc", 0x80000))
+    }
+
+    @Test
+    fun defaultsStayUnset() {
+        assertEquals(0, VideoQualityUtils.getProfile("video/hevc", 0))
+        assertEquals(0, VideoQualityUtils.getLevel("video/hevc", 0))
+        assertEquals(0, VideoQualityUtils.getProfile("video/x-vnd.on2.vp9", VideoQuality.PROFILE_AVC_HIGH))
+        assertEquals(0, VideoQualityUtils.getLevel("video/hevc", 0x3))
+    }
+
+    @Test
+    fun strategiesMapToHevc() {
+        val origin = VideoQuality(1920, 1080, 16_000_000)
+        origin.durationMs = 10_000
+        for (strategy in listOf(LowQualityStrategy(), TargetSizeStrategy(5L * 1024 * 1024))) {
+            val quality = strategy.calculate(origin)
+            assertEquals(VideoQuality.PROFILE_HEVC_MAIN, VideoQualityUtils.getProfile("video/hevc", quality.profile))
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.zrh.video.mp4
+
+import com.coremedia.iso.IsoFile
+import com.coremedia.iso.boxes.CompositionTimeToSample
+import com.coremedia.iso.boxes.EditListBox
+import com.coremedia.iso.boxes.SampleSizeBox
+import com.coremedia.iso.boxes.SyncSampleBox
+import com.coremedia.iso.boxes.TimeToSampleBox
+import com.coremedia.iso.boxes.TrackBox
+import com.googlecode.mp4parser.util.Path
+import com.mp4parser.iso14496.part15.AvcConfigurationBox
+import com.zrh.video.codec.CodecBufferInfo
+import org.junit.After
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+import java.nio.ByteBuffer
+
+class MP4BuilderTest {
+    private val sps = bytes(
+        0x00, 0x00, 0x00, 0x01, 0x67, 0x64, 0x00, 0x1F, 0xAC, 0xD9, 0x40, 0x50, 0x05, 0xBB, 0x01, 0x10,
+        0x00, 0x00, 0x03, 0x00, 0x10, 0x00, 0x00, 0x03, 0x03, 0xC0, 0xF1, 0x83, 0x19, 0x60
+    )
+    private val pps = bytes(0x00, 0x00, 0x00, 0x01, 0x68, 0xEB, 0xE3, 0xCB, 0x22, 0xC0)
+
+    private lateinit var file: File
+
+    @Before
+    fun setUp() {
+        file = File.createTempFile("movie", ".mp4")
+    }
+
+    @After
+    fun tearDown() {
+        file.delete()
+    }
+
+    @Test
+    fun writesVideoAndAudioTracks() {
+        val movie = Mp4Movie()
+        movie.cacheFile = file
+        val builder = MP4Builder().createMovie(movie)
+
+        val videoFormat = TrackFormat.createVideoFormat(TrackFormat.MIMETYPE_VIDEO_AVC, 1280, 720)
+        videoFormat.setByteBuffer("csd-0", ByteBuffer.wrap(sps))
+        videoFormat.setByteBuffer("csd-1", ByteBuffer.wrap(pps))
+        val audioFormat = TrackFormat.createAudioFormat(TrackFormat.MIMETYPE_AUDIO_AAC, 44100, 2)
+        audioFormat.setByteBuffer("csd-0", ByteBuffer.wrap(bytes(0x12, 0x10)))
+        val videoTrack = builder.addTrack(videoFormat, false)
+        val audioTrack = builder.addTrack(audioFormat, true)
+
+        val info = CodecBufferInfo()
+        // 30帧视频，每10帧一个关键帧
+        val frame = bytes(0x00, 0x00, 0x00, 0x01, 0x65, 0x88, 0x84, 0x00, 0x33, 0xFF)
+        for (i in 0 until 30) {
+            val flags = if (i % 10 == 0) CodecBufferInfo.BUFFER_FLAG_KEY_FRAME else 0
+            info.set(0, frame.size, i * 33_333L, flags)
+            builder.writeSampleData(videoTrack, ByteBuffer.wrap(frame), info, false)
+        }
+        // 43帧AAC，每帧1024个采样
+        val aac = ByteArray(200)
+        for (i in 0 until 43) {
+            info.set(0, aac.size, i * 1024 * 1_000_000L / 44100, CodecBufferInfo.BUFFER_FLAG_KEY_FRAME)
+            builder.writeSampleData(audioTrack, ByteBuffer.wrap(aac), info, true)
+        }
+        builder.finishMovie(false)
+
+        IsoFile(file.path).use { isoFile ->
+            val tracks = Path.getPaths<TrackBox>(isoFile, "moov/trak")
+            assertEquals(2, tracks.size)
+            val video = tracks.first { it.mediaBox.handlerBox.handlerType == "vide" }
+            val audio = tracks.first { it.mediaBox.handlerBox.handlerType == "soun" }
+
+            val videoSizes = Path.getPath<SampleSizeBox>(video, "mdia/minf/stbl/stsz")
+            assertEquals(30, videoSizes.sampleCount)
+            // 起始码替换为4字节长度前缀，大小不变
+            assertEquals(frame.size.toLong(), videoSizes.getSampleSizeAtIndex(0))
+            val syncSamples = Path.getPath<SyncSampleBox>(video, "mdia/minf/stbl/stss")
+            assertArrayEquals(longArrayOf(1, 11, 21), syncSamples.sampleNumber)
+            val avcC = Path.getPath<AvcConfigurationBox>(video, "mdia/minf/stbl/stsd/avc1/avcC")
+            assertEquals(100, avcC.avcProfileIndication)
+            assertEquals(31, avcC.avcLevelIndication)
+
+            assertEquals(43, Path.getPath<SampleSizeBox>(audio, "mdia/minf/stbl/stsz").sampleCount)
+            assertEquals(44100, audio.mediaBox.mediaHeaderBox.timescale)
+        }
+    }
+
+    @Test
+    fun reorderedFramesGetCompositionOffsets() {
+        val track = Track(1, createVideoFormat(), false)
+        addReorderedFrames(track)
+        // 解码时间为排序后的显示时间，每帧3000，最后一帧使用默认时长
+        assertEquals(listOf(3000L, 3000L, 3000L, 3000L, 3000L, 3000L, 3015L), track.sampleDurations)
+        // B帧的显示时间最多比解码时间早一帧，整体后移一帧
+        assertEquals(3000L, track.compositionDelay)
+        assertArrayEquals(longArrayOf(3000, 9000, 0, 0, 9000, 0, 0), track.compositionOffsets)
+    }
+
+    @Test
+    fun framesInOrderHaveNoCompositionOffsets() {
+        val track = Track(1, createVideoFormat(), false)
+        val info = CodecBufferInfo()
+        for (i in 0 until 5) {
+            info.set(0, 10, i * FRAME_US, 0)
+            track.addSample(0, 10, info)
+        }
+        assertEquals(0L, track.compositionDelay)
+        assertNull(track.compositionOffsets)
+    }
+
+    @Test
+    fun writesCttsAndEditList() {
+        val movie = Mp4Movie()
+        movie.cacheFile = file
+        val builder = MP4Builder().createMovie(movie)
+        val videoTrack = builder.addTrack(createVideoFormat(), false)
+        val frame = bytes(0x00, 0x00, 0x00, 0x01, 0x01, 0x9E, 0x42, 0x45, 0x11, 0x2C)
+        val info = CodecBufferInfo()
+        for ((i, pts) in REORDERED_PTS.withIndex()) {
+            info.set(0, frame.size, pts * FRAME_US, if (i == 0) CodecBufferInfo.BUFFER_FLAG_KEY_FRAME else 0)
+            builder.writeSampleData(videoTrack, ByteBuffer.wrap(frame), info, false)
+        }
+        builder.finishMovie(false)
+
+        IsoFile(file.path).use { isoFile ->
+            val video = Path.getPath<TrackBox>(isoFile, "moov/trak")
+            val stts = Path.getPath<TimeToSampleBox>(video, "mdia/minf/stbl/stts")
+            assertEquals(listOf(6L to 3000L, 1L to 3015L), stts.entries.map { it.count to it.delta })
+            val ctts = Path.getPath<CompositionTimeToSample>(video, "mdia/minf/stbl/ctts")
+            assertEquals(
+                listOf(3000, 9000, 0, 0, 9000, 0, 0),
+                ctts.entries.flatMap { entry -> List(entry.count) { entry.offset } }
+            )
+            // 编辑列表跳过一帧的延迟，播放从第一帧的显示时间开始
+            val elst = Path.getPath<EditListBox>(video, "edts/elst")
+            assertEquals(1, elst.entries.size)
+            assertEquals(3000L, elst.entries[0].mediaTime)
+            assertEquals(1.0, elst.entries[0].mediaRate, 0.0)
+        }
+    }
+
+    private fun createVideoFormat(): TrackFormat {
+        val format = TrackFormat.createVideoFormat(TrackFormat.MIMETYPE_VIDEO_AVC, 1280, 720)
+        format.setByteBuffer("csd-0", ByteBuffer.wrap(sps))
+        format.setByteBuffer("csd-1", ByteBuffer.wrap(pps))
+        return format
+    }
+
+    private fun addReorderedFrames(track: Track) {
+        val info = CodecBufferInfo()
+        for (pts in REORDERED_PTS) {
+            info.set(0, 10, pts * FRAME_US, 0)
+            track.addSample(0, 10, info)
+        }
+    }
+
+    private fun bytes(vararg values: Int): ByteArray {
+        return ByteArray(values.size) { values[it].toByte() }
+    }
+
+    companion object {
+        // 30fps，timescale 90000下每帧3000
+        private const val FRAME_US = 1_000_000L / 30
+        // I P B B P B B按解码顺序的显示帧序号
+        private val REORDERED_PTS = longArrayOf(0, 3, 1, 2, 6, 4, 5)
+    }
+}
@@ -0,0 +1,100 @@
+package com.zrh.video.mp4
+
+import org.junit.After
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+
+class NalSampleWriterTest {
+    private val sei = bytes(0x06, 0x05, 0x11, 0xDC, 0x45, 0xE9, 0x80)
+    private val slice1 = bytes(0x65, 0x88, 0x84, 0x00, 0x33, 0xFF)
+    private val slice2 = bytes(0x65, 0x00, 0x00, 0x03, 0x01, 0xB8)
+
+    private lateinit var file: File
+    private lateinit var channel: FileChannel
+
+    @Before
+    fun setUp() {
+        file = File.createTempFile("sample", ".bin")
+        channel = RandomAccessFile(file, "rw").channel
+    }
+
+    @After
+    fun tearDown() {
+        channel.close()
+        file.delete()
+    }
+
+    @Test
+    fun convertMultipleNalUnits() {
+        val data = bytes(0, 0, 0, 1) + sei + bytes(0, 0, 1) + slice1 + bytes(0, 0, 0, 1) + slice2
+        val buffer = ByteBuffer.allocateDirect(data.size + 2)
+        buffer.position(2)
+        buffer.put(data)
+
+        val writer = NalSampleWriter()
+        val size = writer.prepare(buffer, 2, data.size)
+        val expected = avcc(sei) + avcc(slice1) + avcc(slice2)
+        assertEquals(expected.size.toLong(), size)
+
+        writer.write(channel, buffer)
+        assertArrayEquals(expected, file.readBytes())
+        // 不修改原缓冲区
+        assertEquals(data.size + 2, buffer.position())
+    }
+
+    @Test
+    fun convertSingleNalUnit() {
+        val data = bytes(0, 0, 0, 1) + slice1
+        val writer = NalSampleWriter()
+        assertEquals(data.size.toLong(), writer.prepare(ByteBuffer.wrap(data), 0, data.size))
+        writer.write(channel, ByteBuffer.wrap(data))
+        assertArrayEquals(avcc(slice1), file.readBytes())
+    }
+
+    @Test
+    fun reuseForManyNalUnits() {
+        val writer = NalSampleWriter()
+        var expected = ByteArray(0)
+        for (count in intArrayOf(1, 40, 3)) {
+            var data = ByteArray(0)
+            for (i in 0 until count) {
+                val nal = bytes(0x41, i + 1, 0x80)
+                data += bytes(0, 0, 1) + nal
+                expected += avcc(nal)
+            }
+            val buffer = ByteBuffer.wrap(data)
+            assertEquals(count * 7L, writer.prepare(buffer, 0, data.size))
+            writer.write(channel, buffer)
+        }
+        assertArrayEquals(expected, file.readBytes())
+    }
+
+    @Test
+    fun skipSampleWithoutStartCode() {
+        assertEquals(-1L, NalSampleWriter().prepare(ByteBuffer.wrap(slice1), 0, slice1.size))
+    }
+
+    @Test
+    fun threeByteStartCodeIsNotTakenForLength() {
+        // 00 00 01开头的数据也可以解读为长度为1的AVCC单元，按轨道格式始终作为起始码处理
+        val data = bytes(0, 0, 1) + slice1 + bytes(0, 0, 1) + slice2
+        val writer = NalSampleWriter()
+        val expected = avcc(slice1) + avcc(slice2)
+        assertEquals(expected.size.toLong(), writer.prepare(ByteBuffer.wrap(data), 0, data.size))
+        writer.write(channel, ByteBuffer.wrap(data))
+        assertArrayEquals(expected, file.readBytes())
+    }
+
+    private fun avcc(nal: ByteArray): ByteArray {
+        return ByteBuffer.allocate(4).putInt(nal.size).array() + nal
+    }
+
+    private fun bytes(vararg values: Int): ByteArray {
+        return ByteArray(values.size) { values[it].toByte() }
+    }
+}
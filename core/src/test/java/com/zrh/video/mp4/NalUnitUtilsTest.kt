@@ -0,0 +1,149 @@
+package com.zrh.video.mp4
+
+import org.junit.Assert.*
+import org.junit.Test
+import java.nio.ByteBuffer
+
+/**
+ * 样本数据按H.264规范手工构造，只包含NAL头和slice header的前几个字节，不是实际编码的码流
+ */
+class NalUnitUtilsTest {
+    private val aud = bytes(0x09, 0xF0)
+    private val sei = bytes(0x06, 0x05, 0x11, 0xDC, 0x45, 0xE9, 0x80)
+    private val idrSlice = bytes(0x65, 0x88, 0x84, 0x00, 0x33, 0xFF)
+    private val refPSlice = bytes(0x41, 0x9A, 0x21, 0x6C, 0x42, 0xBF)
+    private val refBSlice = bytes(0x21, 0x9E, 0x42, 0x45, 0x11, 0x2C)
+    private val nonRefBSlice = bytes(0x01, 0x9E, 0x42, 0x45, 0x11, 0x2C)
+    private val nonRefPSlice = bytes(0x01, 0x9A, 0x21, 0x6C, 0x42, 0xBF)
+
+    // first_mb_in_slice的编码中包含防竞争字节，slice_type为B
+    private val emulatedBSlice = bytes(0x01, 0x00, 0x00, 0x03, 0x01, 0x00, 0x00, 0x03, 0x00, 0xB0)
+
+    @Test
+    fun parseNalHeader() {
+        assertEquals(NalUnitUtils.NAL_TYPE_IDR, NalUnitUtils.getNalType(idrSlice[0]))
+        assertEquals(3, NalUnitUtils.getNalRefIdc(idrSlice[0]))
+        assertEquals(NalUnitUtils.NAL_TYPE_SLICE, NalUnitUtils.getNalType(nonRefBSlice[0]))
+        assertEquals(0, NalUnitUtils.getNalRefIdc(nonRefBSlice[0]))
+    }
+
+    @Test
+    fun parseSliceType() {
+        assertEquals(NalUnitUtils.SLICE_TYPE_I, sliceType(idrSlice))
+        assertEquals(NalUnitUtils.SLICE_TYPE_P, sliceType(refPSlice))
+        assertEquals(NalUnitUtils.SLICE_TYPE_B, sliceType(nonRefBSlice))
+        assertEquals(NalUnitUtils.SLICE_TYPE_B, sliceType(emulatedBSlice))
+    }
+
+    @Test
+    fun findStartCode() {
+        val data = ByteBuffer.wrap(annexB(4, aud) + annexB(3, idrSlice))
+        assertEquals(1, NalUnitUtils.findStartCode(data, 0, data.limit()))
+        assertEquals(6, NalUnitUtils.findStartCode(data, 4, data.limit()))
+        assertEquals(-1, NalUnitUtils.findStartCode(data, 9, data.limit()))
+        // 防竞争字节不是起始码
+        val emulated = ByteBuffer.wrap(emulatedBSlice)
+        assertEquals(-1, NalUnitUtils.findStartCode(emulated, 0, emulated.limit()))
+    }
+
+    @Test
+    fun detectFormat() {
+        assertTrue(isAnnexB(annexB(4, idrSlice)))
+        assertTrue(isAnnexB(annexB(3, idrSlice)))
+        assertFalse(isAnnexB(avcc(idrSlice)))
+    }
+
+    @Test
+    fun findNalUnits() {
+        // 三字节和四字节起始码混合，结尾带填充的0
+        val data = bytes(0xFF) + annexB(4, sei) + annexB(3, idrSlice) + bytes(0, 0) + annexB(4, refPSlice)
+        val buffer = ByteBuffer.wrap(data)
+        val ranges = IntArray(6)
+        assertEquals(3, NalUnitUtils.findNalUnits(buffer, 1, data.size - 1, ranges))
+        assertArrayEquals(sei, data.copyOfRange(ranges[0], ranges[1]))
+        assertArrayEquals(idrSlice, data.copyOfRange(ranges[2], ranges[3]))
+        assertArrayEquals(refPSlice, data.copyOfRange(ranges[4], ranges[5]))
+        assertEquals(0, buffer.position())
+
+        // 容量不足时仍然返回完整的数量
+        val small = IntArray(2)
+        assertEquals(3, NalUnitUtils.findNalUnits(buffer, 1, data.size - 1, small))
+        assertArrayEquals(sei, data.copyOfRange(small[0], small[1]))
+    }
+
+    @Test
+    fun getNalUnits() {
+        val nals = (0 until 10).map { bytes(0x06, it + 1, 0x80) }
+        val data = nals.foldIndexed(ByteArray(0)) { i, acc, nal -> acc + annexB(if (i % 2 == 0) 4 else 3, nal) }
+        val result = NalUnitUtils.getNalUnits(ByteBuffer.wrap(data))
+        assertEquals(nals.size, result.size)
+        nals.forEachIndexed { i, nal -> assertArrayEquals(nal, result[i]) }
+    }
+
+    @Test
+    fun disposableAnnexB() {
+        assertTrue(isDisposable(annexB(4, aud) + annexB(4, nonRefBSlice)))
+        assertTrue(isDisposable(annexB(3, sei) + annexB(3, nonRefPSlice)))
+        assertTrue(isDisposable(annexB(4, emulatedBSlice)))
+        assertFalse(isDisposable(annexB(4, aud) + annexB(4, sei) + annexB(3, idrSlice)))
+        assertFalse(isDisposable(annexB(4, refPSlice)))
+        assertFalse(isDisposable(annexB(4, refBSlice)))
+        // 一帧中只要有一个参考slice就必须解码
+        assertFalse(isDisposable(annexB(4, nonRefBSlice) + annexB(3, refBSlice)))
+        // 没有slice的数据不能丢弃
+        assertFalse(isDisposable(annexB(4, aud) + annexB(4, sei)))
+    }
+
+    @Test
+    fun disposableAvcc() {
+        assertTrue(isDisposable(avcc(sei) + avcc(nonRefBSlice), false))
+        assertFalse(isDisposable(avcc(idrSlice), false))
+        assertFalse(isDisposable(avcc(refPSlice), false))
+    }
+
+    @Test
+    fun disposableAvccLookingLikeStartCode() {
+        // 长度300的前缀为00 00 01 2C，与三字节起始码相同
+        val refSlice = refPSlice + ByteArray(300 - refPSlice.size) { 0x55 }
+        val nonRefSlice = nonRefBSlice + ByteArray(300 - nonRefBSlice.size) { 0x55 }
+        assertFalse(isDisposable(avcc(refSlice), false))
+        assertTrue(isDisposable(avcc(nonRefSlice), false))
+        assertFalse(isDisposable(avcc(nonRefSlice) + avcc(refSlice), false))
+        // 长度为1的NAL单元前缀为00 00 00 01
+        assertFalse(isDisposable(avcc(bytes(0x09)) + avcc(refSlice), false))
+    }
+
+    @Test
+    fun disposableWithOffset() {
+        val data = bytes(0xFF, 0xFF) + annexB(4, nonRefBSlice) + annexB(4, idrSlice)
+        val buffer = ByteBuffer.wrap(data)
+        assertTrue(NalUnitUtils.isDisposable(buffer, 2, 4 + nonRefBSlice.size, true))
+        assertFalse(NalUnitUtils.isDisposable(buffer, 2, data.size - 2, true))
+        assertEquals(0, buffer.position())
+    }
+
+    private fun sliceType(nal: ByteArray): Int {
+        return NalUnitUtils.getSliceType(ByteBuffer.wrap(nal), 0, nal.size)
+    }
+
+    private fun isAnnexB(data: ByteArray): Boolean {
+        return NalUnitUtils.isAnnexB(ByteBuffer.wrap(data), 0, data.size)
+    }
+
+    private fun isDisposable(data: ByteArray, annexB: Boolean = true): Boolean {
+        return NalUnitUtils.isDisposable(ByteBuffer.wrap(data), 0, data.size, annexB)
+    }
+
+    private fun annexB(startCodeSize: Int, nal: ByteArray): ByteArray {
+        val startCode = if (startCodeSize == 4) bytes(0, 0, 0, 1) else bytes(0, 0, 1)
+        return startCode + nal
+    }
+
+    private fun avcc(nal: ByteArray): ByteArray {
+        return ByteBuffer.allocate(4).putInt(nal.size).array() + nal
+    }
+
+    private fun bytes(vararg values: Int): ByteArray {
+        return ByteArray(values.size) { values[it].toByte() }
+    }
+}
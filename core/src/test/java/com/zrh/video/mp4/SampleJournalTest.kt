@@ -0,0 +1,170 @@
+package com.zrh.video.mp4
+
+import com.coremedia.iso.IsoFile
+import com.coremedia.iso.boxes.SampleSizeBox
+import com.coremedia.iso.boxes.TrackBox
+import com.googlecode.mp4parser.authoring.Mp4TrackImpl
+import com.googlecode.mp4parser.util.Path
+import com.zrh.video.codec.CodecBufferInfo
+import org.junit.After
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+import java.io.FileOutputStream
+import java.nio.ByteBuffer
+
+class SampleJournalTest {
+    private val sps = bytes(
+        0x00, 0x00, 0x00, 0x01, 0x67, 0x64, 0x00, 0x1F, 0xAC, 0xD9, 0x40, 0x50, 0x05, 0xBB, 0x01, 0x10,
+        0x00, 0x00, 0x03, 0x00, 0x10, 0x00, 0x00, 0x03, 0x03, 0xC0, 0xF1, 0x83, 0x19, 0x60
+    )
+    private val pps = bytes(0x00, 0x00, 0x00, 0x01, 0x68, 0xEB, 0xE3, 0xCB, 0x22, 0xC0)
+    private val info = CodecBufferInfo()
+
+    private lateinit var output: File
+    private lateinit var journalFile: File
+
+    @Before
+    fun setUp() {
+        output = File.createTempFile("movie", ".mp4")
+        journalFile = File.createTempFile("movie", ".journal")
+    }
+
+    @After
+    fun tearDown() {
+        output.delete()
+        journalFile.delete()
+    }
+
+    @Test
+    fun resumesFromLastCheckpoint() {
+        val journal = SampleJournal(journalFile)
+        journal.setIntervalUs(1_000_000)
+        val builder = MP4Builder().createMovie(movie(), journal)
+        assertEquals(0, builder.addTrack(videoFormat(), false))
+        // 每15帧一个关键帧，在1秒和2秒处的关键帧记录检查点，写到第70帧时进程被杀死
+        for (i in 0 until 70) {
+            writeVideo(builder, i)
+        }
+        // 写了一半的记录
+        FileOutputStream(journalFile, true).use { it.write(byteArrayOf(2, 0, 1)) }
+
+        val checkpoint = SampleJournal.readCheckpoint(journalFile)!!
+        assertEquals(2_000_000L, checkpoint.resumeTimeUs)
+        assertTrue(output.length() > checkpoint.dataOffset)
+
+        val resumed = MP4Builder().resumeMovie(movie(), SampleJournal(journalFile), checkpoint)
+        // 新的编码器再次输出格式时沿用恢复的轨道
+        assertEquals(0, resumed.addTrack(videoFormat(), false))
+        for (i in 60 until 90) {
+            writeVideo(resumed, i)
+        }
+        val audioTrack = resumed.addTrack(audioFormat(), true)
+        assertEquals(1, audioTrack)
+        writeAudio(resumed, audioTrack, 43)
+        resumed.finishMovie(false)
+
+        IsoFile(output.path).use { isoFile ->
+            val tracks = Path.getPaths<TrackBox>(isoFile, "moov/trak")
+            val video = tracks.first { it.mediaBox.handlerBox.handlerType == "vide" }
+            val audio = tracks.first { it.mediaBox.handlerBox.handlerType == "soun" }
+            assertEquals(90, Path.getPath<SampleSizeBox>(video, "mdia/minf/stbl/stsz").sampleCount)
+            assertEquals(43, Path.getPath<SampleSizeBox>(audio, "mdia/minf/stbl/stsz").sampleCount)
+
+            val videoTrack = Mp4TrackImpl("video", video)
+            assertArrayEquals(longArrayOf(1, 16, 31, 46, 61, 76), videoTrack.syncSamples)
+            // 样本偏移指向正确的数据：长度前缀 + NAL头 + 帧序号
+            val samples = videoTrack.samples
+            for (i in 0 until 90) {
+                assertEquals(i.toByte(), samples[i].asByteBuffer().get(5))
+            }
+        }
+    }
+
+    @Test
+    fun resumesAudioAfterVideoDone() {
+        val journal = SampleJournal(journalFile)
+        val builder = MP4Builder().createMovie(movie(), journal)
+        builder.addTrack(videoFormat(), false)
+        for (i in 0 until 30) {
+            writeVideo(builder, i)
+        }
+        builder.checkpoint(SampleJournal.RESUME_VIDEO_DONE)
+        writeAudio(builder, builder.addTrack(audioFormat(), true), 20)
+
+        val checkpoint = SampleJournal.readCheckpoint(journalFile)!!
+        assertEquals(SampleJournal.RESUME_VIDEO_DONE, checkpoint.resumeTimeUs)
+
+        val resumed = MP4Builder().resumeMovie(movie(), SampleJournal(journalFile), checkpoint)
+        // 音频轨不在检查点中，重新添加
+        val audioTrack = resumed.addTrack(audioFormat(), true)
+        assertEquals(1, audioTrack)
+        writeAudio(resumed, audioTrack, 43)
+        resumed.finishMovie(false)
+
+        IsoFile(output.path).use { isoFile ->
+            val tracks = Path.getPaths<TrackBox>(isoFile, "moov/trak")
+            assertEquals(2, tracks.size)
+            val counts = tracks.map { Path.getPath<SampleSizeBox>(it, "mdia/minf/stbl/stsz").sampleCount }
+            assertEquals(listOf(30L, 43L), counts)
+        }
+    }
+
+    @Test
+    fun noCheckpointBeforeFirstInterval() {
+        val journal = SampleJournal(journalFile)
+        val builder = MP4Builder().createMovie(movie(), journal)
+        builder.addTrack(videoFormat(), false)
+        for (i in 0 until 30) {
+            writeVideo(builder, i)
+        }
+        assertNull(SampleJournal.readCheckpoint(journalFile))
+
+        journalFile.writeBytes(bytes(0x00, 0x01, 0x02))
+        assertNull(SampleJournal.readCheckpoint(journalFile))
+        assertNull(SampleJournal.readCheckpoint(File(journalFile.path + ".missing")))
+    }
+
+    private fun movie(): Mp4Movie {
+        val movie = Mp4Movie()
+        movie.cacheFile = output
+        return movie
+    }
+
+    private fun videoFormat(): TrackFormat {
+        val format = TrackFormat.createVideoFormat(TrackFormat.MIMETYPE_VIDEO_AVC, 1280, 720)
+        format.setByteBuffer("csd-0", ByteBuffer.wrap(sps))
+        format.setByteBuffer("csd-1", ByteBuffer.wrap(pps))
+        return format
+    }
+
+    private fun audioFormat(): TrackFormat {
+        val format = TrackFormat.createAudioFormat(TrackFormat.MIMETYPE_AUDIO_AAC, 44100, 2)
+        format.setByteBuffer("csd-0", ByteBuffer.wrap(bytes(0x12, 0x10)))
+        return format
+    }
+
+    private fun writeVideo(builder: MP4Builder, index: Int) {
+        val key = index % 15 == 0
+        // 帧数据较大，检查点之间会经过多次mdat刷新
+        val frame = ByteArray(4000) { if (it < 3) 0 else 0x55 }
+        frame[3] = 1
+        frame[4] = if (key) 0x65 else 0x41
+        frame[5] = index.toByte()
+        info.set(0, frame.size, index * 1_000_000L / 30, if (key) CodecBufferInfo.BUFFER_FLAG_KEY_FRAME else 0)
+        builder.writeSampleData(0, ByteBuffer.wrap(frame), info, false)
+    }
+
+    private fun writeAudio(builder: MP4Builder, track: Int, count: Int) {
+        val aac = ByteArray(200)
+        for (i in 0 until count) {
+            info.set(0, aac.size, i * 1024 * 1_000_000L / 44100, CodecBufferInfo.BUFFER_FLAG_KEY_FRAME)
+            builder.writeSampleData(track, ByteBuffer.wrap(aac), info, true)
+        }
+    }
+
+    private fun bytes(vararg values: Int): ByteArray {
+        return ByteArray(values.size) { values[it].toByte() }
+    }
+}
@@ -0,0 +1,139 @@
+package com.zrh.video.mp4
+
+import com.coremedia.iso.IsoFile
+import com.coremedia.iso.boxes.SampleSizeBox
+import com.coremedia.iso.boxes.SyncSampleBox
+import com.coremedia.iso.boxes.TrackBox
+import com.googlecode.mp4parser.util.Path
+import com.zrh.video.codec.CodecBufferInfo
+import org.junit.After
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+
+class SampleTraceTest {
+    private val sps = bytes(
+        0x00, 0x00, 0x00, 0x01, 0x67, 0x64, 0x00, 0x1F, 0xAC, 0xD9, 0x40, 0x50, 0x05, 0xBB, 0x01, 0x10,
+        0x00, 0x00, 0x03, 0x00, 0x10, 0x00, 0x00, 0x03, 0x03, 0xC0, 0xF1, 0x83, 0x19, 0x60
+    )
+    private val pps = bytes(0x00, 0x00, 0x00, 0x01, 0x68, 0xEB, 0xE3, 0xCB, 0x22, 0xC0)
+    private val frame = bytes(0x00, 0x00, 0x00, 0x01, 0x65, 0x88, 0x84, 0x00, 0x33, 0xFF)
+
+    private lateinit var trace: File
+    private lateinit var output: File
+
+    @Before
+    fun setUp() {
+        trace = File.createTempFile("capture", ".trace")
+        output = File.createTempFile("replay", ".mp4")
+    }
+
+    @After
+    fun tearDown() {
+        trace.delete()
+        output.delete()
+    }
+
+    @Test
+    fun readsBackTracksAndSamples() {
+        writeTrace(10, 5)
+
+        SampleTraceReader(trace).use { reader ->
+            assertEquals(90, reader.rotation)
+            assertEquals(SampleTraceReader.RECORD_TRACK, reader.next())
+            assertEquals(0, reader.trackIndex)
+            assertFalse(reader.isAudio)
+            val format = reader.trackFormat
+            assertEquals(TrackFormat.MIMETYPE_VIDEO_AVC, format.getString(TrackFormat.KEY_MIME))
+            assertEquals(1280, format.getInteger(TrackFormat.KEY_WIDTH))
+            assertEquals(ByteBuffer.wrap(sps), format.getByteBuffer("csd-0"))
+            assertEquals(ByteBuffer.wrap(pps), format.getByteBuffer("csd-1"))
+            assertEquals(SampleTraceReader.RECORD_TRACK, reader.next())
+            assertTrue(reader.isAudio)
+
+            assertEquals(SampleTraceReader.RECORD_SAMPLE, reader.next())
+            assertEquals(0, reader.trackIndex)
+            assertEquals(CodecBufferInfo.BUFFER_FLAG_KEY_FRAME, reader.bufferInfo.flags)
+            assertEquals(0L, reader.bufferInfo.presentationTimeUs)
+            // 只记录offset之后size个字节
+            assertEquals(ByteBuffer.wrap(frame), reader.sample)
+
+            var samples = 1
+            while (reader.next() != SampleTraceReader.RECORD_END) {
+                samples++
+            }
+            assertEquals(15, samples)
+            assertFalse(reader.isTruncated)
+        }
+    }
+
+    @Test
+    fun replaysIntoMp4() {
+        writeTrace(30, 43)
+
+        assertEquals(73, SampleTraceReplayer.replay(trace, output))
+
+        IsoFile(output.path).use { isoFile ->
+            val tracks = Path.getPaths<TrackBox>(isoFile, "moov/trak")
+            val video = tracks.first { it.mediaBox.handlerBox.handlerType == "vide" }
+            val audio = tracks.first { it.mediaBox.handlerBox.handlerType == "soun" }
+            assertEquals(30, Path.getPath<SampleSizeBox>(video, "mdia/minf/stbl/stsz").sampleCount)
+            assertArrayEquals(longArrayOf(1, 11, 21), Path.getPath<SyncSampleBox>(video, "mdia/minf/stbl/stss").sampleNumber)
+            assertEquals(43, Path.getPath<SampleSizeBox>(audio, "mdia/minf/stbl/stsz").sampleCount)
+        }
+    }
+
+    @Test
+    fun stopsAtTruncatedRecord() {
+        writeTrace(10, 0)
+        RandomAccessFile(trace, "rw").use { it.setLength(it.length() - 3) }
+
+        SampleTraceReader(trace).use { reader ->
+            var samples = 0
+            var type = reader.next()
+            while (type != SampleTraceReader.RECORD_END) {
+                if (type == SampleTraceReader.RECORD_SAMPLE) samples++
+                type = reader.next()
+            }
+            assertEquals(9, samples)
+            assertTrue(reader.isTruncated)
+        }
+    }
+
+    private fun writeTrace(videoCount: Int, audioCount: Int) {
+        SampleTraceWriter(trace, 90).use { writer ->
+            val videoFormat = TrackFormat.createVideoFormat(TrackFormat.MIMETYPE_VIDEO_AVC, 1280, 720)
+            videoFormat.setByteBuffer("csd-0", ByteBuffer.wrap(sps))
+            videoFormat.setByteBuffer("csd-1", ByteBuffer.wrap(pps))
+            val audioFormat = TrackFormat.createAudioFormat(TrackFormat.MIMETYPE_AUDIO_AAC, 44100, 2)
+            audioFormat.setByteBuffer("csd-0", ByteBuffer.wrap(bytes(0x12, 0x10)))
+            writer.addTrack(0, videoFormat, false)
+            writer.addTrack(1, audioFormat, true)
+
+            val info = CodecBufferInfo()
+            // 帧数据前后有其他内容，与编码器输出缓冲区一样带offset
+            val buffer = ByteBuffer.allocateDirect(frame.size + 8)
+            buffer.position(4)
+            buffer.put(frame)
+            buffer.clear()
+            for (i in 0 until videoCount) {
+                val flags = if (i % 10 == 0) CodecBufferInfo.BUFFER_FLAG_KEY_FRAME else 0
+                info.set(4, frame.size, i * 33_333L, flags)
+                writer.writeSample(0, buffer, info)
+                assertEquals(0, buffer.position())
+            }
+            val aac = ByteBuffer.wrap(ByteArray(200))
+            for (i in 0 until audioCount) {
+                info.set(0, 200, i * 1024 * 1_000_000L / 44100, CodecBufferInfo.BUFFER_FLAG_KEY_FRAME)
+                writer.writeSample(1, aac, info)
+            }
+        }
+    }
+
+    private fun bytes(vararg values: Int): ByteArray {
+        return ByteArray(values.size) { values[it].toByte() }
+    }
+}
@@ -0,0 +1,63 @@
+package com.zrh.video.mp4
+
+import org.junit.Assert.*
+import org.junit.Test
+
+class SpsParserTest {
+    // x264 High profile 1280x720 Level 3.1
+    private val avcHighSps = bytes(
+        0x67, 0x64, 0x00, 0x1F, 0xAC, 0xD9, 0x40, 0x50, 0x05, 0xBB, 0x01, 0x10,
+        0x00, 0x00, 0x03, 0x00, 0x10, 0x00, 0x00, 0x03, 0x03, 0xC0, 0xF1, 0x83, 0x19, 0x60
+    )
+
+    // Baseline profile没有色度和位深字段
+    private val avcBaselineSps = bytes(0x67, 0x42, 0xC0, 0x1E, 0xDA, 0x02, 0x80, 0xBF, 0xE5)
+
+    // x265 Main profile 1920x1080 Level 4
+    private val hevcMainSps = bytes(
+        0x42, 0x01, 0x01, 0x01, 0x60, 0x00, 0x00, 0x03, 0x00, 0x90, 0x00, 0x00,
+        0x03, 0x00, 0x00, 0x03, 0x00, 0x78, 0xA0, 0x03, 0xC0, 0x80, 0x10, 0xE5,
+        0x96, 0x56, 0x69, 0x24, 0xCA, 0xF0, 0x10, 0x10, 0x00, 0x00, 0x03, 0x00,
+        0x10, 0x00, 0x00, 0x03, 0x01, 0xE0, 0x80
+    )
+
+    @Test
+    fun parseAvcHighProfile() {
+        val sps = SpsParser.parseAvc(avcHighSps)
+        assertEquals(100, sps.profileIdc)
+        assertEquals(31, sps.levelIdc)
+        assertEquals(0L, sps.profileCompatibilityFlags)
+        assertEquals(1, sps.chromaFormat)
+        assertEquals(0, sps.bitDepthLumaMinus8)
+        assertEquals(0, sps.bitDepthChromaMinus8)
+    }
+
+    @Test
+    fun parseAvcBaselineProfile() {
+        val sps = SpsParser.parseAvc(avcBaselineSps)
+        assertEquals(66, sps.profileIdc)
+        assertEquals(30, sps.levelIdc)
+        assertEquals(0xC0L, sps.profileCompatibilityFlags)
+        assertEquals(1, sps.chromaFormat)
+    }
+
+    @Test
+    fun parseHevcMainProfile() {
+        val sps = SpsParser.parseHevc(hevcMainSps)
+        assertEquals(0, sps.profileSpace)
+        assertFalse(sps.tierFlag)
+        assertEquals(1, sps.profileIdc)
+        assertEquals(120, sps.levelIdc)
+        assertEquals(0x60000000L, sps.profileCompatibilityFlags)
+        assertEquals(0x900000000000L, sps.constraintIndicatorFlags)
+        assertEquals(1, sps.maxSubLayers)
+        assertTrue(sps.temporalIdNested)
+        assertEquals(1, sps.chromaFormat)
+        assertEquals(0, sps.bitDepthLumaMinus8)
+        assertEquals(0, sps.bitDepthChromaMinus8)
+    }
+
+    private fun bytes(vararg values: Int): ByteArray {
+        return ByteArray(values.size) { values[it].toByte() }
+    }
+}
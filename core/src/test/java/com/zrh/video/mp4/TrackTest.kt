@@ -0,0 +1,55 @@
+package com.zrh.video.mp4
+
+import org.junit.Assert.*
+import org.junit.Test
+
+class TrackTest {
+
+    @Test
+    fun audioSpecificConfigWithIndexedRate() {
+        // AAC-LC 44100Hz 双声道
+        assertArrayEquals(bytes(0x12, 0x10), Track.createAudioSpecificConfig(2, 44100, 2))
+        // 7350Hz的索引为12
+        assertArrayEquals(bytes(0x16, 0x10), Track.createAudioSpecificConfig(2, 7350, 2))
+    }
+
+    @Test
+    fun audioSpecificConfigWithExplicitRate() {
+        // 索引15后跟24位采样率
+        assertArrayEquals(bytes(0x17, 0x80, 0x01, 0xF4, 0x08), Track.createAudioSpecificConfig(2, 1000, 1))
+    }
+
+    @Test
+    fun rawAudioSpecificConfigKeepsBytes() {
+        val config = RawAudioSpecificConfig(bytes(0x13, 0x10, 0x56, 0xE5, 0x98))
+        val buffer = config.serialize()
+        assertEquals(7, config.serializedSize())
+        val serialized = ByteArray(buffer.remaining())
+        buffer.get(serialized)
+        assertArrayEquals(bytes(0x05, 0x05, 0x13, 0x10, 0x56, 0xE5, 0x98), serialized)
+    }
+
+    @Test
+    fun mpegAudioObjectTypeFollowsSampleRate() {
+        for (rate in intArrayOf(32000, 44100, 48000)) {
+            assertEquals(0x6b, Track.getMpegAudioObjectType(rate))
+        }
+        for (rate in intArrayOf(16000, 22050, 24000)) {
+            assertEquals(0x69, Track.getMpegAudioObjectType(rate))
+        }
+    }
+
+    @Test
+    fun opusHeadToDops() {
+        val opusHead = "OpusHead".toByteArray() + bytes(
+            0x01, 0x02, 0x38, 0x01, 0x80, 0xBB, 0x00, 0x00, 0x00, 0x00, 0x00
+        )
+        val dops = Track.createOpusSpecificData(opusHead)
+        // version 0，声道数2，pre-skip 312，采样率48000，增益0，映射0，均为大端
+        assertArrayEquals(bytes(0x00, 0x02, 0x01, 0x38, 0x00, 0x00, 0xBB, 0x80, 0x00, 0x00, 0x00), dops)
+    }
+
+    private fun bytes(vararg values: Int): ByteArray {
+        return ByteArray(values.size) { values[it].toByte() }
+    }
+}
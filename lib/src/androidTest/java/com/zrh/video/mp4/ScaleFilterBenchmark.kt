@@ -0,0 +1,106 @@
+package com.zrh.video.mp4
+
+import android.graphics.Color
+import android.graphics.Paint
+import android.graphics.SurfaceTexture
+import android.opengl.EGLSurface
+import android.opengl.GLES20
+import android.os.Bundle
+import android.os.Handler
+import android.os.HandlerThread
+import android.util.Log
+import android.view.Surface
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import org.junit.After
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+/**
+ * 测量4K缩小到480P时各个缩放滤镜每帧的GPU耗时，结果输出到logcat和instrumentation状态。
+ * 尚未在设备上运行验证，仓库中没有记录的测量结果
+ */
+@RunWith(AndroidJUnit4::class)
+class ScaleFilterBenchmark {
+    private val sourceWidth = 3840
+    private val sourceHeight = 2160
+    private val outputWidth = 854
+    private val outputHeight = 480
+    private val frames = 120
+
+    private lateinit var eglCore: EglCore
+    private lateinit var eglSurface: EGLSurface
+    private lateinit var renderer: TextureRenderer
+    private lateinit var surfaceTexture: SurfaceTexture
+    private lateinit var callbackThread: HandlerThread
+
+    @Before
+    fun setUp() {
+        eglCore = EglCore(EglCore.FLAG_PBUFFER)
+        eglSurface = eglCore.createPbufferSurface(outputWidth, outputHeight)
+        eglCore.makeCurrent(eglSurface)
+        GLES20.glViewport(0, 0, outputWidth, outputHeight)
+        renderer = TextureRenderer(0)
+        renderer.surfaceCreated()
+        renderer.setSourceSize(sourceWidth, sourceHeight)
+
+        // 用Canvas画一帧细密的条纹作为解码画面，缩小时最容易出现混叠
+        callbackThread = HandlerThread("frame-available").apply { start() }
+        val frameAvailable = CountDownLatch(1)
+        surfaceTexture = SurfaceTexture(renderer.textureId)
+        surfaceTexture.setDefaultBufferSize(sourceWidth, sourceHeight)
+        surfaceTexture.setOnFrameAvailableListener({ frameAvailable.countDown() }, Handler(callbackThread.looper))
+        val surface = Surface(surfaceTexture)
+        val canvas = surface.lockCanvas(null)
+        canvas.drawColor(Color.BLACK)
+        val paint = Paint().apply { color = Color.WHITE }
+        for (x in 0 until sourceWidth step 3) {
+            canvas.drawRect(x.toFloat(), 0f, x + 1f, sourceHeight.toFloat(), paint)
+        }
+        surface.unlockCanvasAndPost(canvas)
+        assertTrue(frameAvailable.await(5, TimeUnit.SECONDS))
+        surfaceTexture.updateTexImage()
+        surface.release()
+    }
+
+    @After
+    fun tearDown() {
+        renderer.release()
+        surfaceTexture.release()
+        eglCore.releaseSurface(eglSurface)
+        eglCore.release()
+        callbackThread.quitSafely()
+    }
+
+    @Test
+    fun measureFilters() {
+        val results = Bundle()
+        for ((name, filter) in listOf(
+            "nearest" to TextureRenderer.FILTER_NEAREST,
+            "bilinear" to TextureRenderer.FILTER_BILINEAR,
+            "bicubic" to TextureRenderer.FILTER_BICUBIC,
+            "lanczos" to TextureRenderer.FILTER_LANCZOS
+        )) {
+            renderer.setScaleFilter(filter)
+            // 预热，编译着色器和创建中间纹理
+            renderer.drawFrame(surfaceTexture, false)
+            GLES20.glFinish()
+
+            val start = System.nanoTime()
+            for (i in 0 until frames) {
+                renderer.drawFrame(surfaceTexture, false)
+                // 每帧等待GPU完成，得到单帧耗时
+                GLES20.glFinish()
+            }
+            val perFrameUs = (System.nanoTime() - start) / frames / 1000
+            assertEquals(GLES20.GL_NO_ERROR, GLES20.glGetError())
+            Log.i("ScaleFilterBenchmark", "$name: ${perFrameUs}us/frame")
+            results.putLong(name, perFrameUs)
+        }
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, results)
+    }
+}
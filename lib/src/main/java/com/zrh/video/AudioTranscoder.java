@@ -0,0 +1,323 @@
+package com.zrh.video;
+
+import android.media.AudioFormat;
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.os.Build;
+
+import com.zrh.video.codec.CodecBufferInfo;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.List;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * 音频重新编码：解码 -> PCM混音/重采样 -> AAC-LC编码，逐块处理，PCM缓冲区复用
+ */
+class AudioTranscoder {
+    private static final long MEDIACODEC_TIMEOUT_US = 100L;
+    // AAC编码器支持的采样率
+    private static final int[] SAMPLE_RATES = {8000, 11025, 12000, 16000, 22050, 24000, 32000, 44100, 48000};
+
+    private final MediaExtractor extractor;
+    private final int trackIndex;
+    private final long startTimeUs;
+    private final long endTimeUs;
+    private final int outputSampleRate;
+    private final int outputChannels;
+    private final int bitrate;
+    private final MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+    // 写入时使用的样本信息
+    private final CodecBufferInfo sampleInfo = new CodecBufferInfo();
+    private MediaCodec decoder;
+    private MediaCodec encoder;
+    private PcmConverter converter;
+    private int decoderChannels;
+    // 解码输出的声道掩码，未知时为0
+    private int decoderChannelMask;
+    private int decoderSampleRate;
+    // 转换后等待送入编码器的PCM
+    private ShortBuffer pcmBuffer;
+    // 第一个送入编码器的采样相对起始时间的时间戳，之后按采样数推算
+    private long firstTimeUs = -1;
+    private long encodedFrames = 0;
+    // 写入所有输出的字节数
+    private long bytesWritten = 0;
+    private boolean extractorDone = false;
+    private boolean decoderDone = false;
+    private boolean encoderInputDone = false;
+    private boolean done = false;
+
+    /**
+     * @param maxChannels 输出的最大声道数，1或2
+     */
+    AudioTranscoder(MediaExtractor extractor, int trackIndex, MediaFormat inputFormat,
+                    int bitrate, int maxChannels, long startTimeUs, long endTimeUs) {
+        this.extractor = extractor;
+        this.trackIndex = trackIndex;
+        this.bitrate = bitrate;
+        this.startTimeUs = startTimeUs;
+        this.endTimeUs = endTimeUs;
+        this.outputSampleRate = getOutputSampleRate(inputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE));
+        this.outputChannels = Math.min(inputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT), getMaxChannels(maxChannels));
+        decoderChannels = inputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+        decoderChannelMask = getChannelMask(inputFormat);
+        decoderSampleRate = inputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+    }
+
+    /**
+     * 是否需要重新编码：非AAC、声道数或采样率超出范围、原码率明显高于目标码率时
+     *
+     * @param sourceBitrate 原音频码率，未知时为0
+     */
+    static boolean shouldTranscode(MediaFormat format, int sourceBitrate, int bitrate, int maxChannels) {
+        if (!MediaFormat.MIMETYPE_AUDIO_AAC.equals(format.getString(MediaFormat.KEY_MIME))) {
+            return true;
+        }
+        if (format.getInteger(MediaFormat.KEY_CHANNEL_COUNT) > getMaxChannels(maxChannels)
+                || format.getInteger(MediaFormat.KEY_SAMPLE_RATE) != getOutputSampleRate(format.getInteger(MediaFormat.KEY_SAMPLE_RATE))) {
+            return true;
+        }
+        return sourceBitrate <= 0 || sourceBitrate > bitrate * 1.25f;
+    }
+
+    /**
+     * 是否有可用的解码器和AAC编码器
+     */
+    static boolean isSupported(MediaFormat format) {
+        MediaCodecList codecList = new MediaCodecList(MediaCodecList.REGULAR_CODECS);
+        MediaFormat encoderFormat = MediaFormat.createAudioFormat(MediaFormat.MIMETYPE_AUDIO_AAC,
+                getOutputSampleRate(format.getInteger(MediaFormat.KEY_SAMPLE_RATE)),
+                Math.min(format.getInteger(MediaFormat.KEY_CHANNEL_COUNT), 2));
+        return codecList.findDecoderForFormat(format) != null
+                && codecList.findEncoderForFormat(encoderFormat) != null;
+    }
+
+    private static int getMaxChannels(int maxChannels) {
+        return Math.max(1, Math.min(maxChannels, 2));
+    }
+
+    static int getOutputSampleRate(int sampleRate) {
+        for (int rate : SAMPLE_RATES) {
+            if (rate == sampleRate) {
+                return rate;
+            }
+        }
+        return sampleRate > 48000 ? 48000 : 44100;
+    }
+
+    void prepare(MediaFormat inputFormat) throws Exception {
+        try {
+            MediaFormat decoderFormat = new MediaFormat(inputFormat);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+                decoderFormat.setInteger(MediaFormat.KEY_PCM_ENCODING, AudioFormat.ENCODING_PCM_16BIT);
+            }
+            decoder = MediaCodec.createDecoderByType(inputFormat.getString(MediaFormat.KEY_MIME));
+            decoder.configure(decoderFormat, null, null, 0);
+
+            MediaFormat outputFormat = MediaFormat.createAudioFormat(MediaFormat.MIMETYPE_AUDIO_AAC, outputSampleRate, outputChannels);
+            outputFormat.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC);
+            outputFormat.setInteger(MediaFormat.KEY_BIT_RATE, bitrate);
+            encoder = MediaCodec.createEncoderByType(MediaFormat.MIMETYPE_AUDIO_AAC);
+            encoder.configure(outputFormat, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+
+            decoder.start();
+            encoder.start();
+        } catch (Exception e) {
+            release();
+            throw e;
+        }
+    }
+
+    boolean isDone() {
+        return done;
+    }
+
+    /**
+     * 推进一步：先取编码输出，再把待编码的PCM送入编码器，最后处理解码
+     */
+    void step(List<VideoRendition> renditions) throws Exception {
+        while (drainEncoder(renditions)) {
+            if (done) {
+                return;
+            }
+        }
+        if (!feedEncoder()) {
+            return;
+        }
+        drainDecoder();
+        feedDecoder();
+    }
+
+    private void feedDecoder() {
+        if (extractorDone) {
+            return;
+        }
+        int index = decoder.dequeueInputBuffer(MEDIACODEC_TIMEOUT_US);
+        if (index < 0) {
+            return;
+        }
+        int sampleIndex = extractor.getSampleTrackIndex();
+        long sampleTime = extractor.getSampleTime();
+        int size = sampleIndex == trackIndex && sampleTime <= endTimeUs
+                ? extractor.readSampleData(decoder.getInputBuffer(index), 0) : -1;
+        if (size < 0) {
+            decoder.queueInputBuffer(index, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+            extractorDone = true;
+        } else {
+            decoder.queueInputBuffer(index, 0, size, sampleTime, 0);
+            extractor.advance();
+        }
+    }
+
+    private void drainDecoder() {
+        if (decoderDone) {
+            return;
+        }
+        int index = decoder.dequeueOutputBuffer(bufferInfo, MEDIACODEC_TIMEOUT_US);
+        if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+            // HE-AAC等格式解码后的采样率和声道数可能与轨道信息不同
+            MediaFormat format = decoder.getOutputFormat();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N && format.containsKey(MediaFormat.KEY_PCM_ENCODING)
+                    && format.getInteger(MediaFormat.KEY_PCM_ENCODING) != AudioFormat.ENCODING_PCM_16BIT) {
+                throw new IllegalStateException("unsupported pcm encoding");
+            }
+            decoderChannels = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+            decoderChannelMask = getChannelMask(format);
+            decoderSampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+            converter = null;
+            return;
+        }
+        if (index < 0) {
+            return;
+        }
+        if (converter == null) {
+            converter = new PcmConverter(decoderChannels, decoderChannelMask, decoderSampleRate, outputChannels, outputSampleRate);
+        }
+        ByteBuffer output = decoder.getOutputBuffer(index);
+        if (bufferInfo.size > 0 && output != null && bufferInfo.presentationTimeUs <= endTimeUs) {
+            output.position(bufferInfo.offset);
+            output.limit(bufferInfo.offset + bufferInfo.size);
+            ShortBuffer samples = output.order(ByteOrder.nativeOrder()).asShortBuffer();
+            // 起始时间之前的采样只解码不编码
+            long skipFrames = (startTimeUs - bufferInfo.presentationTimeUs) * decoderSampleRate / 1000_000L;
+            if (skipFrames > 0) {
+                samples.position((int) Math.min(skipFrames * decoderChannels, samples.limit()));
+            }
+            if (samples.hasRemaining()) {
+                if (firstTimeUs < 0) {
+                    firstTimeUs = Math.max(bufferInfo.presentationTimeUs - startTimeUs, 0);
+                }
+                int capacity = converter.getMaxOutputSamples(samples.remaining());
+                if (pcmBuffer == null || pcmBuffer.capacity() < capacity) {
+                    pcmBuffer = ByteBuffer.allocateDirect(capacity * 2).order(ByteOrder.nativeOrder()).asShortBuffer();
+                }
+                pcmBuffer.clear();
+                converter.convert(samples, pcmBuffer);
+                pcmBuffer.flip();
+            }
+        }
+        if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+            decoderDone = true;
+        }
+        decoder.releaseOutputBuffer(index, false);
+    }
+
+    /**
+     * @return 待编码的PCM是否已全部送入编码器
+     */
+    private boolean feedEncoder() {
+        boolean hasPcm = pcmBuffer != null && pcmBuffer.hasRemaining();
+        if (encoderInputDone || (!hasPcm && !decoderDone)) {
+            return true;
+        }
+        int index = encoder.dequeueInputBuffer(MEDIACODEC_TIMEOUT_US);
+        if (index < 0) {
+            return false;
+        }
+        long timeUs = firstTimeUs + encodedFrames * 1000_000L / outputSampleRate;
+        if (!hasPcm) {
+            encoder.queueInputBuffer(index, 0, 0, Math.max(timeUs, 0), MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+            encoderInputDone = true;
+            return true;
+        }
+        ByteBuffer input = encoder.getInputBuffer(index);
+        input.clear();
+        // 按整帧写入
+        int frameSize = outputChannels * 2;
+        int samples = Math.min(pcmBuffer.remaining(), input.remaining() / frameSize * outputChannels);
+        ShortBuffer inputSamples = input.order(ByteOrder.nativeOrder()).asShortBuffer();
+        int limit = pcmBuffer.limit();
+        pcmBuffer.limit(pcmBuffer.position() + samples);
+        inputSamples.put(pcmBuffer);
+        pcmBuffer.limit(limit);
+        encoder.queueInputBuffer(index, 0, samples * 2, timeUs, 0);
+        encodedFrames += samples / outputChannels;
+        return !pcmBuffer.hasRemaining();
+    }
+
+    /**
+     * @return 编码器是否有输出
+     */
+    private boolean drainEncoder(List<VideoRendition> renditions) throws Exception {
+        int index = encoder.dequeueOutputBuffer(bufferInfo, MEDIACODEC_TIMEOUT_US);
+        if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+            MediaFormat format = encoder.getOutputFormat();
+            // 写入esds的码率
+            if (!format.containsKey(MediaFormat.KEY_BIT_RATE)) {
+                format.setInteger(MediaFormat.KEY_BIT_RATE, bitrate);
+            }
+            for (VideoRendition rendition : renditions) {
+                rendition.audioTrackIndex = rendition.sink.addTrack(format, true);
+            }
+            return true;
+        }
+        if (index < 0) {
+            // 按索引获取输出缓冲，缓冲区变化时不需要处理
+            return false;
+        }
+        ByteBuffer output = encoder.getOutputBuffer(index);
+        if (bufferInfo.size > 0 && (bufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) == 0) {
+            sampleInfo.set(bufferInfo.offset, bufferInfo.size, bufferInfo.presentationTimeUs, bufferInfo.flags);
+            for (VideoRendition rendition : renditions) {
+                rendition.sink.writeSampleData(rendition.audioTrackIndex, output, sampleInfo, true);
+                bytesWritten += bufferInfo.size;
+            }
+        }
+        done = (bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+        encoder.releaseOutputBuffer(index, false);
+        return true;
+    }
+
+    private static int getChannelMask(MediaFormat format) {
+        return format.containsKey(MediaFormat.KEY_CHANNEL_MASK) ? format.getInteger(MediaFormat.KEY_CHANNEL_MASK) : 0;
+    }
+
+    long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    void release() {
+        if (decoder != null) {
+            try {
+                decoder.stop();
+            } catch (Exception ignored) {}
+            decoder.release();
+            decoder = null;
+        }
+        if (encoder != null) {
+            try {
+                encoder.stop();
+            } catch (Exception ignored) {}
+            encoder.release();
+            encoder = null;
+        }
+    }
+}
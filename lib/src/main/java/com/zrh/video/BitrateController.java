@@ -0,0 +1,69 @@
+package com.zrh.video;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * 根据编码器实际输出的码率闭环调整编码码率，使视频大小落在目标范围内
+ */
+class BitrateController {
+    // 每编码1秒的视频调整一次
+    private static final long ADJUST_INTERVAL_US = 1000_000L;
+    private static final float MIN_SCALE = 0.25f;
+    private static final float MAX_SCALE = 2f;
+
+    private final int targetBitrate;
+    private final long durationUs;
+    private final float tolerance;
+    private int currentBitrate;
+    private long writtenBytes;
+    private long windowBytes;
+    private long windowStartUs = -1;
+
+    BitrateController(int targetBitrate, long durationUs, float tolerance) {
+        this.targetBitrate = targetBitrate;
+        this.durationUs = durationUs;
+        this.tolerance = tolerance;
+        this.currentBitrate = targetBitrate;
+    }
+
+    /**
+     * 从检查点恢复时计入之前已写入的字节数
+     */
+    void restore(long writtenBytes) {
+        this.writtenBytes = writtenBytes;
+    }
+
+    /**
+     * @return 需要设置给编码器的新码率，无需调整时返回-1
+     */
+    int onSampleWritten(int size, long presentationTimeUs) {
+        writtenBytes += size;
+        windowBytes += size;
+        if (windowStartUs < 0) {
+            windowStartUs = presentationTimeUs;
+            return -1;
+        }
+        long windowUs = presentationTimeUs - windowStartUs;
+        long remainingUs = durationUs - presentationTimeUs;
+        if (windowUs < ADJUST_INTERVAL_US || remainingUs < ADJUST_INTERVAL_US || windowBytes == 0) {
+            return -1;
+        }
+
+        // 剩余预算需要的码率与最近一段时间的实际码率之比即为修正系数
+        long remainingBytes = (long) targetBitrate * durationUs / 8000_000L - writtenBytes;
+        double neededBitrate = Math.max(remainingBytes, 0) * 8000_000.0 / remainingUs;
+        double actualBitrate = windowBytes * 8000_000.0 / windowUs;
+        windowBytes = 0;
+        windowStartUs = presentationTimeUs;
+
+        double bitrate = currentBitrate * neededBitrate / actualBitrate;
+        bitrate = Math.max(bitrate, targetBitrate * MIN_SCALE);
+        bitrate = Math.min(bitrate, targetBitrate * MAX_SCALE);
+        if (Math.abs(bitrate - currentBitrate) < currentBitrate * tolerance) {
+            return -1;
+        }
+        currentBitrate = (int) bitrate;
+        return currentBitrate;
+    }
+}
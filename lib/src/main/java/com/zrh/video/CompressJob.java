@@ -0,0 +1,75 @@
+package com.zrh.video;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * 持久化的压缩任务，记录源、输出、压缩参数和状态，进程被杀死后通过
+ * {@link VideoCompressUtils#resume}继续未完成的任务
+ */
+public class CompressJob {
+    public static final int STATE_RUNNING = 0;
+    public static final int STATE_COMPLETED = 1;
+    public static final int STATE_FAILED = 2;
+    public static final int STATE_CANCELED = 3;
+
+    private final String id;
+    // 文件的绝对路径或Uri
+    private final String source;
+    private final String output;
+    private int state = STATE_RUNNING;
+    // 压缩策略计算出的视频质量，开始编码前为空
+    private VideoQuality quality;
+    private long updateTime;
+
+    public CompressJob(String id, String source, String output) {
+        this.id = id;
+        this.source = source;
+        this.output = output;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    public int getState() {
+        return state;
+    }
+
+    public void setState(int state) {
+        this.state = state;
+    }
+
+    public VideoQuality getQuality() {
+        return quality;
+    }
+
+    public void setQuality(VideoQuality quality) {
+        this.quality = quality;
+    }
+
+    public long getUpdateTime() {
+        return updateTime;
+    }
+
+    public void setUpdateTime(long updateTime) {
+        this.updateTime = updateTime;
+    }
+
+    boolean isUnfinished() {
+        return state == STATE_RUNNING;
+    }
+
+    @Override
+    public String toString() {
+        return "CompressJob{id=" + id + ", source=" + source + ", output=" + output + ", state=" + state + '}';
+    }
+}
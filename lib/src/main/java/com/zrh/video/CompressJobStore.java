@@ -0,0 +1,146 @@
+package com.zrh.video;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * 把压缩任务保存到目录中，每个任务一个属性文件，样本表日志也保存在同一目录。
+ * 写入时先写临时文件再重命名，进程在写入过程中被杀死也不会损坏已有的记录
+ */
+public class CompressJobStore {
+    private static final String JOB_SUFFIX = ".job";
+    private static final String JOURNAL_SUFFIX = ".journal";
+
+    private final File dir;
+
+    public CompressJobStore(File dir) {
+        this.dir = dir;
+    }
+
+    public synchronized void save(CompressJob job) throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("cannot create " + dir);
+        }
+        Properties properties = new Properties();
+        properties.setProperty("id", job.getId());
+        properties.setProperty("source", job.getSource());
+        properties.setProperty("output", job.getOutput());
+        properties.setProperty("state", String.valueOf(job.getState()));
+        job.setUpdateTime(System.currentTimeMillis());
+        properties.setProperty("updateTime", String.valueOf(job.getUpdateTime()));
+        VideoQuality quality = job.getQuality();
+        if (quality != null) {
+            properties.setProperty("width", String.valueOf(quality.getWidth()));
+            properties.setProperty("height", String.valueOf(quality.getHeight()));
+            properties.setProperty("bitrate", String.valueOf(quality.getBitrate()));
+            properties.setProperty("durationMs", String.valueOf(quality.getDurationMs()));
+            properties.setProperty("audioBitrate", String.valueOf(quality.getAudioBitrate()));
+            properties.setProperty("bitrateMode", String.valueOf(quality.getBitrateMode()));
+            properties.setProperty("profile", String.valueOf(quality.getProfile()));
+            properties.setProperty("level", String.valueOf(quality.getLevel()));
+            properties.setProperty("iFrameInterval", String.valueOf(quality.getIFrameInterval()));
+        }
+        File temp = new File(dir, job.getId() + JOB_SUFFIX + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            properties.store(out, null);
+        }
+        if (!temp.renameTo(getJobFile(job.getId()))) {
+            temp.delete();
+            throw new IOException("cannot save job " + job.getId());
+        }
+    }
+
+    /**
+     * @return 不存在或无法读取时返回null
+     */
+    public synchronized CompressJob get(String id) {
+        File file = getJobFile(id);
+        if (!file.exists()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+            CompressJob job = new CompressJob(properties.getProperty("id"),
+                    properties.getProperty("source"), properties.getProperty("output"));
+            job.setState(Integer.parseInt(properties.getProperty("state")));
+            job.setUpdateTime(Long.parseLong(properties.getProperty("updateTime", "0")));
+            if (properties.containsKey("width")) {
+                VideoQuality quality = new VideoQuality(getInt(properties, "width"), getInt(properties, "height"),
+                        getInt(properties, "bitrate"));
+                quality.setDurationMs(Long.parseLong(properties.getProperty("durationMs")));
+                quality.setAudioBitrate(getInt(properties, "audioBitrate"));
+                quality.setBitrateMode(getInt(properties, "bitrateMode"));
+                quality.setProfile(getInt(properties, "profile"));
+                quality.setLevel(getInt(properties, "level"));
+                quality.setIFrameInterval(getInt(properties, "iFrameInterval"));
+                job.setQuality(quality);
+            }
+            return job;
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    public synchronized List<CompressJob> getJobs() {
+        List<CompressJob> jobs = new ArrayList<>();
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return jobs;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(JOB_SUFFIX)) {
+                CompressJob job = get(name.substring(0, name.length() - JOB_SUFFIX.length()));
+                if (job != null) {
+                    jobs.add(job);
+                }
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * @return 进程被杀死前还在压缩的任务，应用启动时调用
+     */
+    public synchronized List<CompressJob> getUnfinishedJobs() {
+        List<CompressJob> jobs = new ArrayList<>();
+        for (CompressJob job : getJobs()) {
+            if (job.isUnfinished()) {
+                jobs.add(job);
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * 删除任务记录和样本表日志，不删除输出文件
+     */
+    public synchronized void remove(String id) {
+        getJobFile(id).delete();
+        getJournalFile(id).delete();
+    }
+
+    public File getJournalFile(String id) {
+        return new File(dir, id + JOURNAL_SUFFIX);
+    }
+
+    private File getJobFile(String id) {
+        return new File(dir, id + JOB_SUFFIX);
+    }
+
+    private static int getInt(Properties properties, String key) {
+        return Integer.parseInt(properties.getProperty(key));
+    }
+}
@@ -0,0 +1,240 @@
+package com.zrh.video;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * 压缩任务各阶段的耗时和计数，由压缩线程更新，回调时传出的是快照
+ */
+public class CompressMetrics {
+    // 从解封装器读取样本
+    public static final int STAGE_EXTRACT = 0;
+    // 解码器的输入输出排队
+    public static final int STAGE_DECODE = 1;
+    // 等待画面并绘制到每一路输出
+    public static final int STAGE_RENDER = 2;
+    // 编码器的输出排队
+    public static final int STAGE_ENCODE = 3;
+    // 写入MP4
+    public static final int STAGE_MUX = 4;
+    // 音频复制或重新编码的总耗时
+    public static final int STAGE_AUDIO = 5;
+    public static final int STAGE_COUNT = 6;
+
+    private static final String[] STAGE_NAMES = {"extract", "decode", "render", "encode", "mux", "audio"};
+
+    private final StageHistogram[] stages = new StageHistogram[STAGE_COUNT];
+    private long startTimeNs = 0;
+    private long elapsedNs = 0;
+    private long durationUs = 0;
+    private long framesIn = 0;
+    private long framesDecoded = 0;
+    private long framesDropped = 0;
+    private long framesRendered = 0;
+    private long framesEncoded = 0;
+    private long decoderInputStalls = 0;
+    private long decoderOutputStalls = 0;
+    private long encoderOutputStalls = 0;
+    private long bytesWritten = 0;
+    private String decoderName = null;
+    private final List<String> encoderNames = new ArrayList<>();
+
+    CompressMetrics() {
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            stages[i] = new StageHistogram();
+        }
+    }
+
+    void start() {
+        startTimeNs = System.nanoTime();
+    }
+
+    void updateElapsed() {
+        elapsedNs = System.nanoTime() - startTimeNs;
+    }
+
+    void record(int stage, long durationNs) {
+        stages[stage].record(durationNs);
+    }
+
+    void setDurationUs(long durationUs) {
+        this.durationUs = durationUs;
+    }
+
+    void onFrameIn() {
+        framesIn++;
+    }
+
+    void onFrameDecoded(boolean rendered) {
+        framesDecoded++;
+        if (!rendered) {
+            framesDropped++;
+        }
+    }
+
+    void onFrameRendered() {
+        framesRendered++;
+    }
+
+    void onFrameEncoded(int size) {
+        framesEncoded++;
+        bytesWritten += size;
+    }
+
+    void onBytesWritten(long size) {
+        bytesWritten += size;
+    }
+
+    void onDecoderInputStall() {
+        decoderInputStalls++;
+    }
+
+    void onDecoderOutputStall() {
+        decoderOutputStalls++;
+    }
+
+    void onEncoderOutputStall() {
+        encoderOutputStalls++;
+    }
+
+    void setDecoderName(String decoderName) {
+        this.decoderName = decoderName;
+    }
+
+    void addEncoderName(String encoderName) {
+        encoderNames.add(encoderName);
+    }
+
+    public StageHistogram getStage(int stage) {
+        return stages[stage];
+    }
+
+    public static String getStageName(int stage) {
+        return STAGE_NAMES[stage];
+    }
+
+    /**
+     * @return 任务开始到当前快照的耗时，单位纳秒
+     */
+    public long getElapsedNs() {
+        return elapsedNs;
+    }
+
+    /**
+     * @return 需要处理的视频时长，单位微秒
+     */
+    public long getDurationUs() {
+        return durationUs;
+    }
+
+    /**
+     * @return 送入解码器的帧数
+     */
+    public long getFramesIn() {
+        return framesIn;
+    }
+
+    public long getFramesDecoded() {
+        return framesDecoded;
+    }
+
+    /**
+     * @return 解码后未绘制的帧数，包括截取范围外、降帧率丢弃的帧
+     */
+    public long getFramesDropped() {
+        return framesDropped;
+    }
+
+    public long getFramesRendered() {
+        return framesRendered;
+    }
+
+    /**
+     * @return 所有输出写入的视频帧数
+     */
+    public long getFramesEncoded() {
+        return framesEncoded;
+    }
+
+    public long getDecoderInputStalls() {
+        return decoderInputStalls;
+    }
+
+    public long getDecoderOutputStalls() {
+        return decoderOutputStalls;
+    }
+
+    public long getEncoderOutputStalls() {
+        return encoderOutputStalls;
+    }
+
+    /**
+     * @return 写入所有输出的音视频样本字节数，不含MP4的头部
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public String getDecoderName() {
+        return decoderName;
+    }
+
+    public List<String> getEncoderNames() {
+        return Collections.unmodifiableList(encoderNames);
+    }
+
+    /**
+     * @return 每秒绘制的帧数
+     */
+    public float getFps() {
+        return elapsedNs <= 0 ? 0 : framesRendered * 1e9f / elapsedNs;
+    }
+
+    CompressMetrics copy() {
+        CompressMetrics metrics = new CompressMetrics();
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            metrics.stages[i] = stages[i].copy();
+        }
+        metrics.startTimeNs = startTimeNs;
+        metrics.elapsedNs = elapsedNs;
+        metrics.durationUs = durationUs;
+        metrics.framesIn = framesIn;
+        metrics.framesDecoded = framesDecoded;
+        metrics.framesDropped = framesDropped;
+        metrics.framesRendered = framesRendered;
+        metrics.framesEncoded = framesEncoded;
+        metrics.decoderInputStalls = decoderInputStalls;
+        metrics.decoderOutputStalls = decoderOutputStalls;
+        metrics.encoderOutputStalls = encoderOutputStalls;
+        metrics.bytesWritten = bytesWritten;
+        metrics.decoderName = decoderName;
+        metrics.encoderNames.addAll(encoderNames);
+        return metrics;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("elapsed=").append(elapsedNs / 1000000).append("ms")
+                .append(", fps=").append(getFps())
+                .append(", frames in/decoded/dropped/rendered/encoded=")
+                .append(framesIn).append('/').append(framesDecoded).append('/').append(framesDropped)
+                .append('/').append(framesRendered).append('/').append(framesEncoded)
+                .append(", stalls decoderIn/decoderOut/encoderOut=")
+                .append(decoderInputStalls).append('/').append(decoderOutputStalls).append('/').append(encoderOutputStalls)
+                .append(", bytes=").append(bytesWritten)
+                .append(", decoder=").append(decoderName)
+                .append(", encoders=").append(encoderNames);
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            builder.append("\n  ").append(STAGE_NAMES[i]).append(": ").append(stages[i]);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,17 @@
+package com.zrh.video;
+
+import androidx.annotation.NonNull;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * 压缩任务的性能指标回调，在压缩线程中调用，不要执行耗时操作
+ */
+public interface CompressMetricsListener {
+    /**
+     * @param metrics  当前指标的快照，可以在其他线程中读取
+     * @param finished 任务是否已结束，完成或出错时都会回调一次，取消时不回调
+     */
+    void onMetrics(@NonNull CompressMetrics metrics, boolean finished);
+}
@@ -0,0 +1,155 @@
+package com.zrh.video;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * 记录压缩过程中每一帧各步骤的起止时间，写入预分配的环形缓冲区，满了之后覆盖最早的记录，
+ * 任务结束后可导出为Chrome trace格式的JSON，在chrome://tracing或Perfetto中查看
+ */
+public class CompressTracer {
+    public static final int EVENT_EXTRACT = 0;
+    public static final int EVENT_QUEUE = 1;
+    public static final int EVENT_DECODE = 2;
+    public static final int EVENT_AWAIT_IMAGE = 3;
+    public static final int EVENT_DRAW = 4;
+    public static final int EVENT_SWAP = 5;
+    public static final int EVENT_ENCODE_DRAIN = 6;
+    public static final int EVENT_WRITE = 7;
+    public static final int EVENT_AUDIO_EXTRACT = 8;
+    public static final int EVENT_AUDIO_WRITE = 9;
+    public static final int EVENT_AUDIO_TRANSCODE = 10;
+    public static final int EVENT_FINISH_MOVIE = 11;
+
+    private static final String[] EVENT_NAMES = {
+            "extract", "queue", "decode", "awaitNewImage", "draw", "swap",
+            "encodeDrain", "write", "audioExtract", "audioWrite", "audioTranscode", "finishMovie"
+    };
+    private static final String[] EVENT_CATEGORIES = {
+            "video", "video", "video", "render", "render", "render",
+            "video", "mux", "audio", "mux", "audio", "mux"
+    };
+
+    private final int capacity;
+    private final int[] events;
+    private final long[] beginNs;
+    private final long[] endNs;
+    private final long[] threadIds;
+    // 帧的时间戳，单位微秒，<0表示没有
+    private final long[] timestamps;
+    private final long originNs;
+    // 已记录的总数，超过容量后覆盖最早的记录
+    private long count = 0;
+
+    /**
+     * @param capacity 最多保留的记录数，每条约40字节
+     */
+    public CompressTracer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.events = new int[capacity];
+        this.beginNs = new long[capacity];
+        this.endNs = new long[capacity];
+        this.threadIds = new long[capacity];
+        this.timestamps = new long[capacity];
+        this.originNs = System.nanoTime();
+    }
+
+    /**
+     * 记录一段耗时，时间为{@link System#nanoTime()}
+     *
+     * @param timestampUs 所处理帧的时间戳，没有时传-1
+     */
+    public synchronized void record(int event, long beginNs, long endNs, long timestampUs) {
+        int index = (int) (count % capacity);
+        events[index] = event;
+        this.beginNs[index] = beginNs;
+        this.endNs[index] = endNs;
+        threadIds[index] = Thread.currentThread().getId();
+        timestamps[index] = timestampUs;
+        count++;
+    }
+
+    /**
+     * @return 当前保留的记录数
+     */
+    public synchronized int size() {
+        return (int) Math.min(count, capacity);
+    }
+
+    /**
+     * @return 被覆盖的记录数
+     */
+    public synchronized long getDroppedCount() {
+        return Math.max(0, count - capacity);
+    }
+
+    public synchronized void clear() {
+        count = 0;
+    }
+
+    public void writeJson(File file) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            writeJson(writer);
+        }
+    }
+
+    /**
+     * 按记录顺序输出Chrome trace的JSON对象格式，时间单位为微秒
+     */
+    public synchronized void writeJson(Writer writer) throws IOException {
+        writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        int size = size();
+        long first = count - size;
+        for (int i = 0; i < size; i++) {
+            int index = (int) ((first + i) % capacity);
+            if (i > 0) {
+                writer.write(',');
+            }
+            int event = events[index];
+            writer.write("{\"name\":\"");
+            writer.write(EVENT_NAMES[event]);
+            writer.write("\",\"cat\":\"");
+            writer.write(EVENT_CATEGORIES[event]);
+            writer.write("\",\"ph\":\"X\",\"pid\":1,\"tid\":");
+            writer.write(Long.toString(threadIds[index]));
+            writer.write(",\"ts\":");
+            writer.write(toMicros(beginNs[index] - originNs));
+            writer.write(",\"dur\":");
+            writer.write(toMicros(Math.max(0, endNs[index] - beginNs[index])));
+            if (timestamps[index] >= 0) {
+                writer.write(",\"args\":{\"pts\":");
+                writer.write(Long.toString(timestamps[index]));
+                writer.write('}');
+            }
+            writer.write('}');
+        }
+        writer.write("]}");
+        writer.flush();
+    }
+
+    public static String getEventName(int event) {
+        return EVENT_NAMES[event];
+    }
+
+    private static String toMicros(long ns) {
+        // 保留到纳秒，避免短事件的时长变为0
+        long us = ns / 1000;
+        long remainder = Math.abs(ns % 1000);
+        if (remainder == 0) {
+            return Long.toString(us);
+        }
+        String fraction = Long.toString(remainder + 1000).substring(1);
+        return (ns < 0 && us == 0 ? "-" : "") + us + "." + fraction;
+    }
+}
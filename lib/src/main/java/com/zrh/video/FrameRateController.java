@@ -0,0 +1,50 @@
+package com.zrh.video;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * 按目标帧率抽帧：用时间戳累加器决定每一帧是否需要编码
+ */
+class FrameRateController {
+    private final long frameIntervalUs;
+    // 原视频的帧间隔，未知时为0
+    private final long sourceFrameIntervalUs;
+    // 允许时间戳有少量抖动
+    private final long toleranceUs;
+    private long nextFrameUs = -1;
+
+    FrameRateController(int frameRate, int sourceFrameRate) {
+        frameIntervalUs = 1000_000L / frameRate;
+        sourceFrameIntervalUs = sourceFrameRate > frameRate ? 1000_000L / sourceFrameRate : 0;
+        toleranceUs = frameIntervalUs / 10;
+    }
+
+    /**
+     * @return 该帧是否保留，按显示顺序调用
+     */
+    boolean shouldRender(long presentationTimeUs) {
+        if (nextFrameUs >= 0 && presentationTimeUs + toleranceUs < nextFrameUs) {
+            return false;
+        }
+        if (nextFrameUs < 0 || presentationTimeUs - nextFrameUs >= frameIntervalUs) {
+            // 第一帧或时间戳跳变时重新对齐
+            nextFrameUs = presentationTimeUs;
+        }
+        nextFrameUs += frameIntervalUs;
+        return true;
+    }
+
+    /**
+     * 在解码前预测该帧是否会被丢弃，可以按解码顺序调用：
+     * 与前一帧(按原视频帧率推算)落在同一个输出帧间隔内的帧会被丢弃
+     */
+    boolean isPredictedDrop(long presentationTimeUs) {
+        if (sourceFrameIntervalUs <= 0 || presentationTimeUs < sourceFrameIntervalUs) {
+            return false;
+        }
+        long slot = (presentationTimeUs + toleranceUs) / frameIntervalUs;
+        long previousSlot = (presentationTimeUs - sourceFrameIntervalUs + toleranceUs) / frameIntervalUs;
+        return slot == previousSlot;
+    }
+}
@@ -0,0 +1,277 @@
+package com.zrh.video;
+
+import android.media.AudioFormat;
+
+import java.nio.ShortBuffer;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * 16位交错PCM的声道混合和重采样，按块流式处理，块之间保留插值和滤波所需的历史帧，不分配额外内存。
+ * 降采样时先经过低通滤波，避免高于新奈奎斯特频率的成分混叠
+ */
+class PcmConverter {
+    // 中置和环绕声道混入左右声道的比例(-3dB)
+    private static final float MIX_LEVEL = 0.7071f;
+    // 抗混叠低通滤波器的阶数，延迟为(FILTER_TAPS - 1) / 2个输入帧
+    private static final int FILTER_TAPS = 63;
+    // 截止频率相对新奈奎斯特频率的比例，留出过渡带
+    private static final double FILTER_CUTOFF = 0.85;
+
+    private final int inputChannels;
+    private final int outputChannels;
+    // 每个输入声道混入左右声道的比例
+    private final float[] leftGains;
+    private final float[] rightGains;
+    // 每个输出帧对应的输入帧数
+    private final double step;
+    private final float[] previous;
+    private final float[] current;
+    private boolean hasPrevious = false;
+    // 下一个输出帧相对previous的位置，[0, 1)之间时在previous和current之间插值
+    private double position = 0;
+    // 只在降采样时使用，history为每个声道最近FILTER_TAPS帧的环形缓冲
+    private final float[] taps;
+    private final float[][] history;
+    private int historyIndex = 0;
+
+    PcmConverter(int inputChannels, int inputSampleRate, int outputChannels, int outputSampleRate) {
+        this(inputChannels, 0, inputSampleRate, outputChannels, outputSampleRate);
+    }
+
+    /**
+     * @param inputChannelMask 解码输出的AudioFormat.CHANNEL_OUT_*声道掩码，未知或与声道数不符时按声道数推断
+     */
+    PcmConverter(int inputChannels, int inputChannelMask, int inputSampleRate, int outputChannels, int outputSampleRate) {
+        if (inputChannels <= 0 || outputChannels <= 0 || outputChannels > 2
+                || inputSampleRate <= 0 || outputSampleRate <= 0) {
+            throw new IllegalArgumentException("unsupported pcm format");
+        }
+        this.inputChannels = inputChannels;
+        this.outputChannels = outputChannels;
+        this.step = (double) inputSampleRate / outputSampleRate;
+        this.previous = new float[outputChannels];
+        this.current = new float[outputChannels];
+        this.leftGains = new float[inputChannels];
+        this.rightGains = new float[inputChannels];
+        setupGains(getChannelMask(inputChannels, inputChannelMask));
+        if (step > 1) {
+            taps = createLowPass(FILTER_CUTOFF * 0.5 / step);
+            history = new float[outputChannels][FILTER_TAPS];
+        } else {
+            taps = null;
+            history = null;
+        }
+    }
+
+    /**
+     * 声道数对应的默认声道掩码，与Android解码器的声道顺序一致
+     */
+    static int getChannelMask(int channels, int channelMask) {
+        if (channelMask > 0 && Integer.bitCount(channelMask) == channels) {
+            return channelMask;
+        }
+        switch (channels) {
+            case 1:
+                return AudioFormat.CHANNEL_OUT_MONO;
+            case 2:
+                return AudioFormat.CHANNEL_OUT_STEREO;
+            case 3:
+                // AAC的3声道配置为中置加左右，没有低音声道
+                return AudioFormat.CHANNEL_OUT_STEREO | AudioFormat.CHANNEL_OUT_FRONT_CENTER;
+            case 4:
+                return AudioFormat.CHANNEL_OUT_QUAD;
+            case 5:
+                return AudioFormat.CHANNEL_OUT_QUAD | AudioFormat.CHANNEL_OUT_FRONT_CENTER;
+            case 6:
+                return AudioFormat.CHANNEL_OUT_5POINT1;
+            case 7:
+                return AudioFormat.CHANNEL_OUT_5POINT1 | AudioFormat.CHANNEL_OUT_BACK_CENTER;
+            default:
+                // 超出8声道的部分不混入
+                return AudioFormat.CHANNEL_OUT_7POINT1_SURROUND;
+        }
+    }
+
+    /**
+     * 交错数据中的声道按掩码中的位从低到高排列
+     */
+    private void setupGains(int channelMask) {
+        int channel = 0;
+        for (int bit = 0; bit < 32 && channel < inputChannels; bit++) {
+            int position = 1 << bit;
+            if ((channelMask & position) == 0) {
+                continue;
+            }
+            switch (position) {
+                case AudioFormat.CHANNEL_OUT_FRONT_LEFT:
+                case AudioFormat.CHANNEL_OUT_FRONT_LEFT_OF_CENTER:
+                case AudioFormat.CHANNEL_OUT_FRONT_WIDE_LEFT:
+                    leftGains[channel] = 1;
+                    break;
+                case AudioFormat.CHANNEL_OUT_FRONT_RIGHT:
+                case AudioFormat.CHANNEL_OUT_FRONT_RIGHT_OF_CENTER:
+                case AudioFormat.CHANNEL_OUT_FRONT_WIDE_RIGHT:
+                    rightGains[channel] = 1;
+                    break;
+                case AudioFormat.CHANNEL_OUT_BACK_LEFT:
+                case AudioFormat.CHANNEL_OUT_SIDE_LEFT:
+                case AudioFormat.CHANNEL_OUT_TOP_FRONT_LEFT:
+                case AudioFormat.CHANNEL_OUT_TOP_BACK_LEFT:
+                case AudioFormat.CHANNEL_OUT_TOP_SIDE_LEFT:
+                case AudioFormat.CHANNEL_OUT_BOTTOM_FRONT_LEFT:
+                    leftGains[channel] = MIX_LEVEL;
+                    break;
+                case AudioFormat.CHANNEL_OUT_BACK_RIGHT:
+                case AudioFormat.CHANNEL_OUT_SIDE_RIGHT:
+                case AudioFormat.CHANNEL_OUT_TOP_FRONT_RIGHT:
+                case AudioFormat.CHANNEL_OUT_TOP_BACK_RIGHT:
+                case AudioFormat.CHANNEL_OUT_TOP_SIDE_RIGHT:
+                case AudioFormat.CHANNEL_OUT_BOTTOM_FRONT_RIGHT:
+                    rightGains[channel] = MIX_LEVEL;
+                    break;
+                case AudioFormat.CHANNEL_OUT_LOW_FREQUENCY:
+                case AudioFormat.CHANNEL_OUT_LOW_FREQUENCY_2:
+                    // 不混入低音声道
+                    break;
+                default:
+                    // 中置类声道平均分到左右
+                    leftGains[channel] = MIX_LEVEL;
+                    rightGains[channel] = MIX_LEVEL;
+                    break;
+            }
+            channel++;
+        }
+        // 按最大增益归一化，避免削波
+        float leftSum = 0;
+        float rightSum = 0;
+        for (int c = 0; c < inputChannels; c++) {
+            leftSum += leftGains[c];
+            rightSum += rightGains[c];
+        }
+        float scale = Math.max(leftSum, rightSum);
+        if (scale > 1) {
+            for (int c = 0; c < inputChannels; c++) {
+                leftGains[c] /= scale;
+                rightGains[c] /= scale;
+            }
+        }
+    }
+
+    /**
+     * Blackman窗的sinc低通滤波器，直流增益为1
+     *
+     * @param cutoff 截止频率，相对输入采样率
+     */
+    private static float[] createLowPass(double cutoff) {
+        float[] taps = new float[FILTER_TAPS];
+        int center = (FILTER_TAPS - 1) / 2;
+        double sum = 0;
+        double[] values = new double[FILTER_TAPS];
+        for (int i = 0; i < FILTER_TAPS; i++) {
+            int n = i - center;
+            double sinc = n == 0 ? 2 * cutoff : Math.sin(2 * Math.PI * cutoff * n) / (Math.PI * n);
+            double window = 0.42 - 0.5 * Math.cos(2 * Math.PI * i / (FILTER_TAPS - 1))
+                    + 0.08 * Math.cos(4 * Math.PI * i / (FILTER_TAPS - 1));
+            values[i] = sinc * window;
+            sum += values[i];
+        }
+        for (int i = 0; i < FILTER_TAPS; i++) {
+            taps[i] = (float) (values[i] / sum);
+        }
+        return taps;
+    }
+
+    /**
+     * @return 转换inputSamples个采样最多输出的采样数，用于分配输出缓冲区
+     */
+    int getMaxOutputSamples(int inputSamples) {
+        int frames = inputSamples / inputChannels;
+        return ((int) Math.ceil(frames / step) + 1) * outputChannels;
+    }
+
+    /**
+     * 转换input中剩余的完整帧，写入output的当前位置
+     *
+     * @return 写入的采样数
+     */
+    int convert(ShortBuffer input, ShortBuffer output) {
+        int start = output.position();
+        while (input.remaining() >= inputChannels) {
+            downmix(input, current);
+            if (taps != null) {
+                lowPass(current);
+            }
+            if (!hasPrevious) {
+                System.arraycopy(current, 0, previous, 0, outputChannels);
+                hasPrevious = true;
+                continue;
+            }
+            while (position < 1) {
+                if (output.remaining() < outputChannels) {
+                    throw new IllegalStateException("output buffer too small");
+                }
+                float t = (float) position;
+                for (int c = 0; c < outputChannels; c++) {
+                    output.put(clip(previous[c] + (current[c] - previous[c]) * t));
+                }
+                position += step;
+            }
+            position -= 1;
+            System.arraycopy(current, 0, previous, 0, outputChannels);
+        }
+        return output.position() - start;
+    }
+
+    /**
+     * 读取一帧并混合为输出的声道数
+     */
+    private void downmix(ShortBuffer input, float[] frame) {
+        if (inputChannels == 1) {
+            float value = input.get();
+            for (int c = 0; c < outputChannels; c++) {
+                frame[c] = value;
+            }
+            return;
+        }
+        float left = 0;
+        float right = 0;
+        for (int c = 0; c < inputChannels; c++) {
+            float value = input.get();
+            left += value * leftGains[c];
+            right += value * rightGains[c];
+        }
+        if (outputChannels == 1) {
+            frame[0] = (left + right) / 2;
+        } else {
+            frame[0] = left;
+            frame[1] = right;
+        }
+    }
+
+    private void lowPass(float[] frame) {
+        for (int c = 0; c < outputChannels; c++) {
+            float[] samples = history[c];
+            samples[historyIndex] = frame[c];
+            float sum = 0;
+            int index = historyIndex;
+            for (float tap : taps) {
+                sum += tap * samples[index];
+                index = index == 0 ? FILTER_TAPS - 1 : index - 1;
+            }
+            frame[c] = sum;
+        }
+        historyIndex = historyIndex + 1 == FILTER_TAPS ? 0 : historyIndex + 1;
+    }
+
+    private static short clip(float value) {
+        if (value > Short.MAX_VALUE) {
+            return Short.MAX_VALUE;
+        }
+        if (value < Short.MIN_VALUE) {
+            return Short.MIN_VALUE;
+        }
+        return (short) Math.round(value);
+    }
+}
@@ -0,0 +1,94 @@
+package com.zrh.video;
+
+import androidx.annotation.NonNull;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * 单个处理阶段的耗时分布，按微秒取2的幂分桶，记录时不分配内存
+ */
+public class StageHistogram {
+    // 第i个桶记录耗时在[2^(i-1), 2^i)微秒之间的次数，最后一个桶记录更长的耗时
+    public static final int BUCKET_COUNT = 32;
+
+    private final long[] buckets = new long[BUCKET_COUNT];
+    private long count = 0;
+    private long totalNs = 0;
+    private long maxNs = 0;
+
+    void record(long durationNs) {
+        if (durationNs < 0) {
+            durationNs = 0;
+        }
+        count++;
+        totalNs += durationNs;
+        if (durationNs > maxNs) {
+            maxNs = durationNs;
+        }
+        buckets[getBucket(durationNs)]++;
+    }
+
+    static int getBucket(long durationNs) {
+        long us = durationNs / 1000;
+        return Math.min(64 - Long.numberOfLeadingZeros(us), BUCKET_COUNT - 1);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotalNs() {
+        return totalNs;
+    }
+
+    public long getMaxNs() {
+        return maxNs;
+    }
+
+    public long getAverageNs() {
+        return count == 0 ? 0 : totalNs / count;
+    }
+
+    /**
+     * @param percent 0到100
+     * @return 百分位所在桶的上限，单位纳秒，不超过最大耗时
+     */
+    public long getPercentileNs(float percent) {
+        if (count == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(count * Math.max(0f, Math.min(percent, 100f)) / 100);
+        long sum = 0;
+        for (int i = 0; i < BUCKET_COUNT - 1; i++) {
+            sum += buckets[i];
+            if (sum >= Math.max(target, 1)) {
+                return Math.min((1L << i) * 1000, maxNs);
+            }
+        }
+        return maxNs;
+    }
+
+    public long getBucketCount(int bucket) {
+        return buckets[bucket];
+    }
+
+    StageHistogram copy() {
+        StageHistogram histogram = new StageHistogram();
+        System.arraycopy(buckets, 0, histogram.buckets, 0, BUCKET_COUNT);
+        histogram.count = count;
+        histogram.totalNs = totalNs;
+        histogram.maxNs = maxNs;
+        return histogram;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "count=" + count
+                + ", avg=" + getAverageNs() / 1000 + "us"
+                + ", p50=" + getPercentileNs(50) / 1000 + "us"
+                + ", p95=" + getPercentileNs(95) / 1000 + "us"
+                + ", max=" + maxNs / 1000 + "us";
+    }
+}
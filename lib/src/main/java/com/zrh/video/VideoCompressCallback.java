@@ -3,6 +3,7 @@ package com.zrh.video;
 import androidx.annotation.NonNull;
 
 import java.io.File;
+import java.util.List;
 
 /**
  * @author zrh
@@ -11,6 +12,13 @@ import java.io.File;
 public interface VideoCompressCallback {
     void onComplete(@NonNull File output);
 
+    /**
+     * 多路输出完成时回调，顺序与{@link VideoCompressConfig#setRenditions(List)}一致
+     */
+    default void onComplete(@NonNull List<File> outputs) {
+        onComplete(outputs.get(0));
+    }
+
     void onProgress(float percent);
 
     void onError(int code, @NonNull String msg);
@@ -0,0 +1,257 @@
+package com.zrh.video;
+
+import android.media.MediaFormat;
+
+import com.zrh.video.filter.VideoFilterChain;
+import com.zrh.video.mp4.TextureRenderer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * 压缩任务的可选配置
+ */
+public class VideoCompressConfig {
+    public static final int SCALE_FILTER_NEAREST = TextureRenderer.FILTER_NEAREST;
+    public static final int SCALE_FILTER_BILINEAR = TextureRenderer.FILTER_BILINEAR;
+    public static final int SCALE_FILTER_BICUBIC = TextureRenderer.FILTER_BICUBIC;
+    public static final int SCALE_FILTER_LANCZOS = TextureRenderer.FILTER_LANCZOS;
+
+    // 预估输出大小超过源文件大小的比例时放弃压缩，<=0表示不检查
+    private float maxOutputRatio = 1f;
+    // 目标文件大小，单位字节，<=0表示不限制
+    private long targetSize = 0;
+    // 目标文件大小允许的误差比例
+    private float targetSizeTolerance = 0.05f;
+    // 多路输出的视频质量，为空时只输出一路
+    private List<VideoQuality> renditions = new ArrayList<>();
+    // 截取的起止时间，单位毫秒，结束时间<=0表示到视频结尾
+    private long startTimeMs = 0;
+    private long endTimeMs = 0;
+    // 输出的最大帧率，<=0表示与原视频一致
+    private int frameRate = 0;
+    // 输出的视频编码格式
+    private String videoMimeType = MediaFormat.MIMETYPE_VIDEO_AVC;
+    // 缩放滤镜
+    private int scaleFilter = SCALE_FILTER_BILINEAR;
+    // 裁剪、旋转、水印等滤镜，为空时不处理
+    private VideoFilterChain filterChain = null;
+    // 是否重新编码音频，关闭时直接复制原音频
+    private boolean audioTranscode = false;
+    // 重新编码时输出的最大声道数，1或2
+    private int audioChannelCount = 2;
+    // 性能指标回调，为空时不回调
+    private CompressMetricsListener metricsListener = null;
+    // 性能指标的回调间隔，单位毫秒，<=0表示只在任务结束时回调
+    private long metricsIntervalMs = 0;
+    // 记录每一帧处理过程的时间线，为空时不记录
+    private CompressTracer tracer = null;
+    // 记录写入muxer的样本的目录，为空时不记录
+    private File captureDir = null;
+    // 保存任务和检查点，为空时进程被杀死后只能重新压缩
+    private CompressJobStore jobStore = null;
+    // 任务id，为空时自动生成
+    private String jobId = null;
+    // 检查点的最小间隔，单位毫秒
+    private long checkpointIntervalMs = 2000;
+
+    public float getMaxOutputRatio() {
+        return maxOutputRatio;
+    }
+
+    public void setMaxOutputRatio(float maxOutputRatio) {
+        this.maxOutputRatio = maxOutputRatio;
+    }
+
+    public long getTargetSize() {
+        return targetSize;
+    }
+
+    /**
+     * 设置后使用{@link TargetSizeStrategy}计算压缩参数，并在编码过程中动态修正码率
+     */
+    public void setTargetSize(long targetSize) {
+        this.targetSize = targetSize;
+    }
+
+    public float getTargetSizeTolerance() {
+        return targetSizeTolerance;
+    }
+
+    public void setTargetSizeTolerance(float targetSizeTolerance) {
+        this.targetSizeTolerance = targetSizeTolerance;
+    }
+
+    public List<VideoQuality> getRenditions() {
+        return renditions;
+    }
+
+    /**
+     * 只解码一次，按每个视频质量的分辨率和码率分别输出一个文件，
+     * 文件名为 原文件名_短边p.扩展名，完成时回调{@link VideoCompressCallback#onComplete(List)}
+     */
+    public void setRenditions(List<VideoQuality> renditions) {
+        this.renditions = renditions == null ? new ArrayList<>() : renditions;
+    }
+
+    public long getStartTimeMs() {
+        return startTimeMs;
+    }
+
+    public long getEndTimeMs() {
+        return endTimeMs;
+    }
+
+    /**
+     * 只压缩[startTimeMs, endTimeMs]范围内的视频，endTimeMs<=0表示到视频结尾
+     */
+    public void setTimeRange(long startTimeMs, long endTimeMs) {
+        this.startTimeMs = startTimeMs;
+        this.endTimeMs = endTimeMs;
+    }
+
+    public int getFrameRate() {
+        return frameRate;
+    }
+
+    /**
+     * 原视频帧率高于该值时丢弃多余的帧，例如60fps的视频按30fps输出
+     */
+    public void setFrameRate(int frameRate) {
+        this.frameRate = frameRate;
+    }
+
+    public String getVideoMimeType() {
+        return videoMimeType;
+    }
+
+    /**
+     * 设置输出的视频编码格式，例如{@link MediaFormat#MIMETYPE_VIDEO_HEVC}，设备不支持时使用AVC
+     */
+    public void setVideoMimeType(String videoMimeType) {
+        this.videoMimeType = videoMimeType;
+    }
+
+    boolean isTrimmed() {
+        return startTimeMs > 0 || endTimeMs > 0;
+    }
+
+    public int getScaleFilter() {
+        return scaleFilter;
+    }
+
+    /**
+     * 缩小分辨率时使用的滤镜，缩小倍数越大，高质量滤镜带来的画质提升越明显
+     */
+    public void setScaleFilter(int scaleFilter) {
+        this.scaleFilter = scaleFilter;
+    }
+
+    public VideoFilterChain getFilterChain() {
+        return filterChain;
+    }
+
+    /**
+     * 滤镜和缩放在同一次绘制中完成，输出宽高按裁剪和旋转后的画面计算
+     */
+    public void setFilterChain(VideoFilterChain filterChain) {
+        this.filterChain = filterChain;
+    }
+
+    public boolean isAudioTranscode() {
+        return audioTranscode;
+    }
+
+    /**
+     * 开启后码率过高、多声道或非AAC的音频会重新编码为AAC-LC，码率由压缩策略决定
+     */
+    public void setAudioTranscode(boolean audioTranscode) {
+        this.audioTranscode = audioTranscode;
+    }
+
+    public int getAudioChannelCount() {
+        return audioChannelCount;
+    }
+
+    public void setAudioChannelCount(int audioChannelCount) {
+        this.audioChannelCount = audioChannelCount;
+    }
+
+    public CompressMetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    /**
+     * 任务结束时回调各阶段的耗时、帧数和写入字节数，用于定位压缩的瓶颈
+     */
+    public void setMetricsListener(CompressMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    public long getMetricsIntervalMs() {
+        return metricsIntervalMs;
+    }
+
+    public void setMetricsIntervalMs(long metricsIntervalMs) {
+        this.metricsIntervalMs = metricsIntervalMs;
+    }
+
+    public CompressTracer getTracer() {
+        return tracer;
+    }
+
+    /**
+     * 记录每一帧解封装、解码、绘制、编码和写入的起止时间，任务结束后通过{@link CompressTracer#writeJson(java.io.File)}导出
+     */
+    public void setTracer(CompressTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    public File getCaptureDir() {
+        return captureDir;
+    }
+
+    /**
+     * 每一路输出把轨道格式和编码后的样本记录到该目录下的"输出文件名.trace"，
+     * 可以通过{@link com.zrh.video.mp4.SampleTraceReplayer}在电脑上重新封装
+     */
+    public void setCaptureDir(File captureDir) {
+        this.captureDir = captureDir;
+    }
+
+    public CompressJobStore getJobStore() {
+        return jobStore;
+    }
+
+    /**
+     * 设置后任务状态保存到jobStore，单路输出时在视频关键帧处记录检查点，
+     * 进程被杀死后通过{@link VideoCompressUtils#resume}从最后一个检查点继续压缩
+     */
+    public void setJobStore(CompressJobStore jobStore) {
+        this.jobStore = jobStore;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(String jobId) {
+        this.jobId = jobId;
+    }
+
+    public long getCheckpointIntervalMs() {
+        return checkpointIntervalMs;
+    }
+
+    public void setCheckpointIntervalMs(long checkpointIntervalMs) {
+        this.checkpointIntervalMs = checkpointIntervalMs;
+    }
+
+    boolean hasFilters() {
+        return filterChain != null && !filterChain.isEmpty();
+    }
+}
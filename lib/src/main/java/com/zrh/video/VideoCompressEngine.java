@@ -3,6 +3,7 @@ package com.zrh.video;
 import static android.media.MediaCodecList.REGULAR_CODECS;
 
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
 import android.media.MediaCodec;
 import android.media.MediaCodecInfo;
 import android.media.MediaCodecList;
@@ -15,10 +16,21 @@ import android.os.Looper;
 
 import androidx.annotation.NonNull;
 
+import com.zrh.video.codec.CaptureSampleSink;
+import com.zrh.video.codec.CodecBufferInfo;
+import com.zrh.video.codec.ExtractorSource;
+import com.zrh.video.codec.MediaCodecAdapter;
+import com.zrh.video.codec.MuxerSink;
+import com.zrh.video.codec.SampleSink;
+import com.zrh.video.mp4.EglCore;
 import com.zrh.video.mp4.InputSurface;
 import com.zrh.video.mp4.MP4Builder;
 import com.zrh.video.mp4.Mp4Movie;
 import com.zrh.video.mp4.OutputSurface;
+import com.zrh.video.mp4.SampleJournal;
+import com.zrh.video.mp4.SampleTraceWriter;
+import com.zrh.video.mp4.TextureRenderer;
+import com.zrh.video.mp4.Track;
 
 import java.io.Closeable;
 import java.io.File;
@@ -28,8 +40,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 
 import kotlin.jvm.Volatile;
@@ -39,19 +55,44 @@ import kotlin.jvm.Volatile;
  * @date 2023/7/6
  */
 class VideoCompressEngine implements Runnable {
-    private static final String MIME_TYPE = MediaFormat.MIMETYPE_VIDEO_AVC;
-    private static final long MEDIACODEC_TIMEOUT_US = 100L;
+    // 找不到指定编码器时使用AVC
+    private static final String DEFAULT_MIME_TYPE = MediaFormat.MIMETYPE_VIDEO_AVC;
+    // 压缩进度达到该比例后才开始预估输出大小
+    private static final float OVERSIZE_CHECK_MIN_PROGRESS = 0.1f;
 
     private final ExecutorService executorService;
     private final Handler mainHandler = new Handler(Looper.getMainLooper());
     private VideoQualityStrategy strategy;
+    private VideoCompressConfig config;
     private final File outputDir;
     private final String fileName;
     private File output;
+    private final List<File> outputs = new ArrayList<>();
     private final Source source;
     private final MediaExtractor extractor;
+    private long sourceLength;
+    // 截取范围，单位微秒
+    private long startTimeUs = 0;
+    private long endTimeUs = Long.MAX_VALUE;
     @Volatile
     private boolean isRunning = false;
+    private boolean isOversize = false;
+    // HDR视频需要色调映射为SDR后编码
+    private boolean isHdr = false;
+    // 音频无法直接写入MP4，需要重新编码为AAC
+    private boolean forceAudioTranscode = false;
+    // 预估输出大小时使用的音频码率，音频在视频之后写入
+    private int expectedAudioBitrate = 0;
+    // 各阶段的耗时和计数，只在压缩线程中更新
+    private final CompressMetrics metrics = new CompressMetrics();
+    private long lastMetricsTimeNs = 0;
+    private boolean metricsFinished = false;
+    // 为空时不记录时间线
+    private CompressTracer tracer;
+    // 持久化的任务，没有设置jobStore时为空
+    private CompressJob job;
+    // 从该检查点恢复，为空时从头压缩
+    private SampleJournal.Checkpoint checkpoint;
 
     private VideoCompressCallback mCallback;
 
@@ -63,6 +104,7 @@ class VideoCompressEngine implements Runnable {
     ) {
         this.executorService = executorService;
         this.strategy = new LowQualityStrategy();
+        this.config = new VideoCompressConfig();
         this.outputDir = outputDir;
         this.fileName = fileName;
         this.source = source;
@@ -73,6 +115,10 @@ class VideoCompressEngine implements Runnable {
         this.strategy = strategy;
     }
 
+    public void setConfig(VideoCompressConfig config) {
+        this.config = config;
+    }
+
     public void setCallback(VideoCompressCallback callback) {
         this.mCallback = callback;
     }
@@ -96,17 +142,60 @@ class VideoCompressEngine implements Runnable {
             mainHandler.post(() -> callback.onError(code, msg));
         }
         if (output.exists()) output.delete();
+        for (File file : outputs) {
+            if (file.exists()) file.delete();
+        }
+        finishJob(CompressJob.STATE_FAILED);
+        reportMetrics(true);
         VideoCompressUtils.remove(this);
     }
 
     private void notifyCompleted() {
         if (mCallback != null) {
             VideoCompressCallback callback = mCallback;
-            mainHandler.post(() -> callback.onComplete(output));
+            if (isMultiOutput()) {
+                List<File> files = new ArrayList<>(outputs);
+                mainHandler.post(() -> callback.onComplete(files));
+            } else {
+                mainHandler.post(() -> callback.onComplete(output));
+            }
         }
+        finishJob(CompressJob.STATE_COMPLETED);
+        reportMetrics(true);
         VideoCompressUtils.remove(this);
     }
 
+    /**
+     * 回调当前指标的快照，未结束时按配置的间隔回调
+     */
+    private void reportMetrics(boolean finished) {
+        CompressMetricsListener listener = config.getMetricsListener();
+        if (listener == null || metricsFinished) return;
+        long now = System.nanoTime();
+        if (!finished) {
+            long intervalMs = config.getMetricsIntervalMs();
+            if (intervalMs <= 0 || now - lastMetricsTimeNs < intervalMs * 1000000) return;
+        }
+        lastMetricsTimeNs = now;
+        metricsFinished = finished;
+        metrics.updateElapsed();
+        try {
+            listener.onMetrics(metrics.copy(), finished);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private long traceBegin() {
+        return tracer != null ? System.nanoTime() : 0;
+    }
+
+    private void traceEnd(int event, long beginNs, long timestampUs) {
+        if (tracer != null) {
+            tracer.record(event, beginNs, System.nanoTime(), timestampUs);
+        }
+    }
+
     private void notifyProgress(float percent) {
         if (mCallback != null) {
             VideoCompressCallback callback = mCallback;
@@ -116,10 +205,15 @@ class VideoCompressEngine implements Runnable {
 
     @Override
     public void run() {
+        metrics.start();
+        lastMetricsTimeNs = System.nanoTime();
+        tracer = config.getTracer();
         initOutput();
+        openJob();
         VideoMetadata metadata;
         try {
             metadata = source.getMetadata();
+            sourceLength = source.getLength();
             if (metadata.width == 0 || metadata.height == 0) {
                 notifyError(VideoErrorCode.INVALID_SOURCE, "invalid source");
                 return;
@@ -133,65 +227,279 @@ class VideoCompressEngine implements Runnable {
             }
             metadata.rotation = 0;
 
+            // 滤镜会改变画面宽高
+            if (config.hasFilters()) {
+                int[] size = config.getFilterChain().getOutputSize(metadata.width, metadata.height);
+                metadata.width = size[0];
+                metadata.height = size[1];
+            }
+
+            // 截取时只处理指定范围内的数据
+            if (config.isTrimmed()) {
+                startTimeUs = config.getStartTimeMs() * 1000;
+                if (config.getEndTimeMs() > 0) {
+                    endTimeUs = config.getEndTimeMs() * 1000;
+                }
+                if (metadata.durationMs > 0) {
+                    endTimeUs = Math.min(endTimeUs, metadata.durationMs * 1000);
+                }
+                if (startTimeUs >= endTimeUs) {
+                    notifyError(VideoErrorCode.INVALID_TIME_RANGE, "invalid time range");
+                    return;
+                }
+                metadata.durationMs = (endTimeUs - startTimeUs) / 1000;
+            }
+
+            // 设置视频源
+            source.setup(extractor);
+            Map<Integer, MediaFormat> tracks = VideoUtils.getTracks(extractor);
+            Map.Entry<Integer, MediaFormat> videoTrack = VideoUtils.getTrack(tracks, "video/");
+            isHdr = videoTrack != null && VideoUtils.isHdr(videoTrack.getValue());
+
+            // 多路输出时直接使用指定的视频质量
+            if (isMultiOutput()) {
+                compress(metadata, config.getRenditions(), tracks);
+                return;
+            }
+
+            if (checkpoint != null) {
+                // 沿用第一次压缩时计算的视频质量，保证恢复后的编码参数一致
+                VideoQuality videoQuality = job.getQuality();
+                metadata.bitrate = videoQuality.getBitrate();
+                metadata.width = videoQuality.getResolution()[0];
+                metadata.height = videoQuality.getResolution()[1];
+                compress(metadata, Collections.singletonList(videoQuality), tracks);
+                return;
+            }
+
             // 获取压缩的视频质量
             VideoQuality videoQuality = new VideoQuality(metadata.width, metadata.height, metadata.bitrate);
+            videoQuality.setDurationMs(metadata.durationMs);
+            videoQuality.setAudioBitrate(getAudioBitrate(tracks, metadata.bitrate));
+            if (config.getTargetSize() > 0) {
+                TargetSizeStrategy targetSizeStrategy = new TargetSizeStrategy(config.getTargetSize());
+                if (config.isAudioTranscode()) {
+                    // 音频重新编码时按较低的音频码率分配预算
+                    targetSizeStrategy.setMaxAudioBitrate(VideoQualityUtils.getAudioBitrate(videoQuality.getResolution(), videoQuality.getAudioBitrate()));
+                }
+                strategy = targetSizeStrategy;
+            }
 
-            // 未满足压缩条件则直接返回
+            // 未满足压缩条件则直接返回，截取、使用滤镜或HDR视频按原视频质量编码
             if (!strategy.accept(videoQuality)) {
-                copySource();
-                notifyCompleted();
-                return;
+                if (canUseSource(config, isHdr)) {
+                    extractor.release();
+                    copySource();
+                    notifyCompleted();
+                    return;
+                }
+            } else {
+                videoQuality = strategy.calculate(videoQuality);
             }
-            videoQuality = strategy.calculate(videoQuality);
             metadata.bitrate = videoQuality.getBitrate();
             metadata.width = videoQuality.getResolution()[0];
             metadata.height = videoQuality.getResolution()[1];
 
-            // 设置视频源
-            source.setup(extractor);
-            compress(metadata, videoQuality);
+            compress(metadata, Collections.singletonList(videoQuality), tracks);
         } catch (Exception e) {
             e.printStackTrace();
             notifyError(VideoErrorCode.SOURCE_NOT_FOUND, "error:" + e);
         }
     }
 
-    private void compress(VideoMetadata metadata, VideoQuality videoQuality) {
+    private void compress(VideoMetadata metadata, List<VideoQuality> qualities, Map<Integer, MediaFormat> tracks) {
+        // 在处理视频前确认音频可以写入，避免视频压缩完才失败
+        Map.Entry<Integer, MediaFormat> audioTrack = VideoUtils.getTrack(tracks, "audio/");
+        forceAudioTranscode = audioTrack != null && !Track.isAudioSupported(VideoUtils.toTrackFormat(audioTrack.getValue()));
+        if (forceAudioTranscode && !AudioTranscoder.isSupported(audioTrack.getValue())) {
+            extractor.release();
+            notifyError(VideoErrorCode.AUDIO_NOT_SUPPORTED, "audio not supported: " + audioTrack.getValue().getString(MediaFormat.KEY_MIME));
+            return;
+        }
+        metrics.setDurationUs(metadata.durationMs * 1000);
+        List<VideoRendition> renditions = new ArrayList<>();
         try {
-            Mp4Movie mp4Movie = new Mp4Movie();
-            mp4Movie.setCacheFile(output);
-            mp4Movie.setRotation(metadata.rotation);
-            MP4Builder mediaMuxer = new MP4Builder().createMovie(mp4Movie);
+            for (VideoQuality quality : qualities) {
+                File file = qualities.size() == 1 ? output : getRenditionOutput(quality);
+                outputs.add(file);
+                Mp4Movie mp4Movie = new Mp4Movie();
+                mp4Movie.setCacheFile(file);
+                mp4Movie.setRotation(metadata.rotation);
+                VideoRendition rendition = new VideoRendition(quality, file);
+                // 只有单路输出记录检查点
+                SampleJournal journal = null;
+                if (job != null && !isMultiOutput()) {
+                    job.setQuality(quality);
+                    saveJob();
+                    journal = new SampleJournal(config.getJobStore().getJournalFile(job.getId()));
+                    journal.setIntervalUs(config.getCheckpointIntervalMs() * 1000);
+                }
+                if (checkpoint != null) {
+                    rendition.muxer = new MP4Builder().resumeMovie(mp4Movie, journal, checkpoint);
+                } else {
+                    rendition.muxer = new MP4Builder().createMovie(mp4Movie, journal);
+                }
+                rendition.sink = new MuxerSink(rendition.muxer);
+                if (config.getCaptureDir() != null) {
+                    config.getCaptureDir().mkdirs();
+                    File captureFile = new File(config.getCaptureDir(), file.getName() + ".trace");
+                    rendition.capture = new SampleTraceWriter(captureFile, metadata.rotation);
+                    rendition.sink = new CaptureSampleSink(rendition.sink, rendition.capture);
+                }
+                renditions.add(rendition);
+            }
+            if (audioTrack == null) {
+                expectedAudioBitrate = 0;
+            } else if (config.isAudioTranscode() || forceAudioTranscode) {
+                expectedAudioBitrate = getAudioBitrate(renditions);
+            } else {
+                expectedAudioBitrate = getAudioBitrate(tracks, metadata.bitrate);
+            }
 
-            Map<Integer, MediaFormat> tracks = VideoUtils.getTracks(extractor);
-            boolean success = processVideo(videoQuality, metadata.durationMs, tracks, mediaMuxer);
+            boolean success = processVideo(renditions, metadata.durationMs, tracks);
+            if (isOversize) {
+                // 压缩后会比原视频更大，直接使用原视频
+                extractor.release();
+                long finishTime = traceBegin();
+                renditions.get(0).muxer.finishMovie(true);
+                traceEnd(CompressTracer.EVENT_FINISH_MOVIE, finishTime, -1);
+                closeCaptures(renditions);
+                copySource();
+                notifyCompleted();
+                return;
+            }
             if (success) {
-                success = processAudio(tracks, mediaMuxer);
+                // 视频已全部写入，之后被杀死时只需要重新处理音频
+                renditions.get(0).muxer.checkpoint(SampleJournal.RESUME_VIDEO_DONE);
+                long audioTime = System.nanoTime();
+                success = processAudio(tracks, renditions);
+                metrics.record(CompressMetrics.STAGE_AUDIO, System.nanoTime() - audioTime);
             }
 
             extractor.release();
-            mediaMuxer.finishMovie(!success);
+            for (VideoRendition rendition : renditions) {
+                long finishTime = traceBegin();
+                rendition.muxer.finishMovie(!success);
+                traceEnd(CompressTracer.EVENT_FINISH_MOVIE, finishTime, -1);
+            }
+            closeCaptures(renditions);
+            if (!isRunning) {
+                finishJob(CompressJob.STATE_CANCELED);
+            }
             if (success) {
+                // 保留较小的文件
+                if (!isMultiOutput() && canUseSource(config, isHdr) && sourceLength > 0 && output.length() > sourceLength) {
+                    copySource();
+                }
                 notifyCompleted();
             }
         } catch (Exception e) {
             e.printStackTrace();
             notifyError(VideoErrorCode.ERROR, "error: " + e);
+        } finally {
+            closeCaptures(renditions);
+        }
+    }
+
+    /**
+     * 读取或新建任务记录，记录中的源和输出与本次一致、输出文件完好并且有检查点时从检查点恢复
+     */
+    private void openJob() {
+        CompressJobStore store = config.getJobStore();
+        if (store == null) return;
+        String id = config.getJobId() != null ? config.getJobId() : UUID.randomUUID().toString();
+        CompressJob saved = store.get(id);
+        if (saved != null && saved.isUnfinished() && saved.getQuality() != null && !isMultiOutput()
+                && source.getLocation().equals(saved.getSource())
+                && output.getAbsolutePath().equals(saved.getOutput())) {
+            checkpoint = SampleJournal.readCheckpoint(store.getJournalFile(id));
+            if (checkpoint != null && output.length() >= checkpoint.getDataOffset()) {
+                job = saved;
+            } else {
+                checkpoint = null;
+            }
+        }
+        if (job == null) {
+            job = new CompressJob(id, source.getLocation(), output.getAbsolutePath());
+        }
+        job.setState(CompressJob.STATE_RUNNING);
+        saveJob();
+    }
+
+    private void saveJob() {
+        try {
+            config.getJobStore().save(job);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 任务结束后不再需要检查点
+     */
+    private void finishJob(int state) {
+        if (job == null || job.getState() != CompressJob.STATE_RUNNING) return;
+        job.setState(state);
+        saveJob();
+        config.getJobStore().getJournalFile(job.getId()).delete();
+    }
+
+    private void closeCaptures(List<VideoRendition> renditions) {
+        for (VideoRendition rendition : renditions) {
+            closeStream(rendition.capture);
+            rendition.capture = null;
         }
     }
 
-    private boolean processAudio(Map<Integer, MediaFormat> tracks, MP4Builder mediaMuxer) {
+    private boolean processAudio(Map<Integer, MediaFormat> tracks, List<VideoRendition> renditions) {
         Map.Entry<Integer, MediaFormat> audioTrack = VideoUtils.getTrack(tracks, "audio/");
         if (audioTrack == null) {
             return true;
         }
-        MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+        CodecBufferInfo bufferInfo = new CodecBufferInfo();
         int audioIndex = audioTrack.getKey();
         extractor.selectTrack(audioIndex);
+        ByteBuffer buffer = null;
 
         try {
             MediaFormat audioFormat = audioTrack.getValue();
-            int trackIndex = mediaMuxer.addTrack(audioFormat, true);
+            if (config.isAudioTranscode() || forceAudioTranscode) {
+                int bitrate = getAudioBitrate(renditions);
+                int sourceBitrate = audioFormat.containsKey(MediaFormat.KEY_BIT_RATE) ? audioFormat.getInteger(MediaFormat.KEY_BIT_RATE) : 0;
+                if (forceAudioTranscode
+                        || AudioTranscoder.shouldTranscode(audioFormat, sourceBitrate, bitrate, config.getAudioChannelCount())) {
+                    AudioTranscoder transcoder = new AudioTranscoder(extractor, audioIndex, audioFormat, bitrate,
+                            config.getAudioChannelCount(), startTimeUs, endTimeUs);
+                    try {
+                        transcoder.prepare(audioFormat);
+                    } catch (Exception e) {
+                        // 没有可用的编解码器时直接复制原音频
+                        if (forceAudioTranscode) {
+                            throw e;
+                        }
+                        e.printStackTrace();
+                        transcoder = null;
+                    }
+                    if (transcoder != null) {
+                        try {
+                            extractor.seekTo(startTimeUs, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+                            while (isRunning && !transcoder.isDone()) {
+                                long stepTime = traceBegin();
+                                transcoder.step(renditions);
+                                traceEnd(CompressTracer.EVENT_AUDIO_TRANSCODE, stepTime, -1);
+                                reportMetrics(false);
+                            }
+                        } finally {
+                            metrics.onBytesWritten(transcoder.getBytesWritten());
+                            transcoder.release();
+                        }
+                        return isRunning;
+                    }
+                }
+            }
+            for (VideoRendition rendition : renditions) {
+                rendition.audioTrackIndex = rendition.sink.addTrack(audioFormat, true);
+            }
             int maxBufferSize = audioFormat.getInteger(MediaFormat.KEY_MAX_INPUT_SIZE);
             if (maxBufferSize <= 0) {
                 maxBufferSize = 64 * 1024;
@@ -202,171 +510,188 @@ class VideoCompressEngine implements Runnable {
                     maxBufferSize = (int) (size + 1024);
                 }
             }
-            ByteBuffer buffer = ByteBuffer.allocateDirect(maxBufferSize);
+            buffer = DirectBufferPool.getDefault().acquire(maxBufferSize);
 
-            extractor.seekTo(0, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+            extractor.seekTo(startTimeUs, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
             boolean inputDone = false;
             while (isRunning && !inputDone) {
                 int index = extractor.getSampleTrackIndex();
                 if (index == audioIndex) {
-                    bufferInfo.size = extractor.readSampleData(buffer, 0);
-                    if (bufferInfo.size >= 0) {
-                        bufferInfo.presentationTimeUs = extractor.getSampleTime();
+                    long sampleTime = extractor.getSampleTime();
+                    if (sampleTime > endTimeUs) {
+                        break;
+                    }
+                    long extractTime = traceBegin();
+                    bufferInfo.size = sampleTime < startTimeUs ? 0 : extractor.readSampleData(buffer, 0);
+                    traceEnd(CompressTracer.EVENT_AUDIO_EXTRACT, extractTime, sampleTime);
+                    if (bufferInfo.size > 0) {
+                        bufferInfo.presentationTimeUs = sampleTime - startTimeUs;
                         bufferInfo.offset = 0;
-                        bufferInfo.flags = MediaCodec.BUFFER_FLAG_KEY_FRAME;
-                        mediaMuxer.writeSampleData(trackIndex, buffer, bufferInfo, true);
-                        extractor.advance();
-                    } else {
+                        bufferInfo.flags = CodecBufferInfo.BUFFER_FLAG_KEY_FRAME;
+                        // 每一路输出都复制一份音频
+                        for (VideoRendition rendition : renditions) {
+                            long writeTime = traceBegin();
+                            rendition.sink.writeSampleData(rendition.audioTrackIndex, buffer, bufferInfo, true);
+                            traceEnd(CompressTracer.EVENT_AUDIO_WRITE, writeTime, bufferInfo.presentationTimeUs);
+                            metrics.onBytesWritten(bufferInfo.size);
+                        }
+                    }
+                    if (bufferInfo.size < 0 || !extractor.advance()) {
                         inputDone = true;
                     }
                 } else if (index == -1) {
                     inputDone = true;
                 }
+                reportMetrics(false);
             }
         } catch (Exception e) {
             e.printStackTrace();
             notifyError(VideoErrorCode.ERROR, "muxer audio error");
             return false;
         } finally {
+            DirectBufferPool.getDefault().release(buffer);
             extractor.unselectTrack(audioIndex);
         }
 
         return isRunning;
     }
 
-    private boolean processVideo(VideoQuality quality,
+    /**
+     * 重新编码时的音频码率，多路输出共用一条音频，取各路中最高的码率
+     */
+    private int getAudioBitrate(List<VideoRendition> renditions) {
+        int bitrate = 0;
+        for (VideoRendition rendition : renditions) {
+            int audioBitrate = rendition.quality.getAudioBitrate();
+            if (audioBitrate <= 0) {
+                audioBitrate = VideoQualityUtils.getAudioBitrate(rendition.quality.getResolution(), 0);
+            }
+            bitrate = Math.max(bitrate, audioBitrate);
+        }
+        return bitrate;
+    }
+
+    private boolean processVideo(List<VideoRendition> renditions,
                                  long durationMs,
-                                 Map<Integer, MediaFormat> tracks,
-                                 MP4Builder mediaMuxer) {
+                                 Map<Integer, MediaFormat> tracks) {
         Map.Entry<Integer, MediaFormat> videoTrack = VideoUtils.getTrack(tracks, "video/");
         if (videoTrack == null) {
             notifyError(VideoErrorCode.VIDEO_TRACK_NOT_FOUND, "video track not found");
             return false;
         }
+        // 从检查点恢复时视频可能已经全部写入
+        long resumeTimeUs = checkpoint != null ? checkpoint.getResumeTimeUs() : 0;
+        if (resumeTimeUs == SampleJournal.RESUME_VIDEO_DONE) {
+            return true;
+        }
         // 选中视频轨
         int videoIndex = videoTrack.getKey();
         extractor.selectTrack(videoIndex);
-        extractor.seekTo(0, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
-        // 设置输出参数
+        // 从起始时间或恢复时间之前的关键帧开始解码
+        extractor.seekTo(startTimeUs + resumeTimeUs, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
         MediaFormat inputFormat = videoTrack.getValue();
-        MediaFormat outputFormat = MediaFormat.createVideoFormat(MIME_TYPE, quality.getWidth(), quality.getHeight());
-        outputFormat.setInteger(MediaFormat.KEY_BIT_RATE, quality.getBitrate());
-        outputFormat.setLong(MediaFormat.KEY_DURATION, durationMs * 1000);
-        setupOutputFormat(inputFormat, outputFormat);
-        // 初始化编码器
-        MediaCodec encoder = prepareEncoder(outputFormat);
-        if (encoder == null) {
-            notifyError(VideoErrorCode.ENCODER_NOT_FOUND, "encoder not found");
-            return false;
-        }
-        InputSurface inputSurface;
+        // 初始化编码器，解码和所有输出共用一个EGL上下文
+        EglCore eglCore;
         try {
-            inputSurface = new InputSurface(encoder.createInputSurface());
+            eglCore = new EglCore(EglCore.FLAG_RECORDABLE);
         } catch (Exception e) {
             e.printStackTrace();
-            encoder.release();
-            notifyError(VideoErrorCode.ERROR, "encode error:" + e);
+            extractor.unselectTrack(videoIndex);
+            notifyError(VideoErrorCode.ERROR, "egl error:" + e);
             return false;
         }
+        for (VideoRendition rendition : renditions) {
+            VideoQuality quality = rendition.quality;
+            // 优先使用指定的编码格式，不支持时回退到AVC
+            String mimeType = config.getVideoMimeType();
+            MediaCodec encoder = prepareEncoder(mimeType, quality, inputFormat, durationMs);
+            if (encoder == null && !DEFAULT_MIME_TYPE.equals(mimeType)) {
+                encoder = prepareEncoder(DEFAULT_MIME_TYPE, quality, inputFormat, durationMs);
+            }
+            if (encoder == null) {
+                releaseRenditions(renditions);
+                eglCore.release();
+                extractor.unselectTrack(videoIndex);
+                notifyError(VideoErrorCode.ENCODER_NOT_FOUND, "encoder not found");
+                return false;
+            }
+            rendition.encoder = new MediaCodecAdapter(encoder);
+            metrics.addEncoderName(encoder.getName());
+            try {
+                rendition.inputSurface = new InputSurface(encoder.createInputSurface(), eglCore);
+            } catch (Exception e) {
+                e.printStackTrace();
+                releaseRenditions(renditions);
+                eglCore.release();
+                extractor.unselectTrack(videoIndex);
+                notifyError(VideoErrorCode.ERROR, "encode error:" + e);
+                return false;
+            }
+            if (config.getTargetSize() > 0 && !isMultiOutput()) {
+                rendition.bitrateController = new BitrateController(quality.getBitrate(), durationMs * 1000, config.getTargetSizeTolerance());
+                if (checkpoint != null) {
+                    rendition.bitrateController.restore(checkpoint.getDataOffset());
+                }
+            }
+        }
         // 初始化解码器
         OutputSurface outputSurface = null;
         MediaCodec decoder = null;
 
         try {
-            inputSurface.makeCurrent();
-            encoder.start();
+            renditions.get(0).inputSurface.makeCurrent();
+            for (VideoRendition rendition : renditions) {
+                rendition.encoder.start();
+            }
 
             outputSurface = new OutputSurface();
+            outputSurface.setSourceSize(inputFormat.getInteger(MediaFormat.KEY_WIDTH), inputFormat.getInteger(MediaFormat.KEY_HEIGHT));
+            outputSurface.setScaleFilter(config.getScaleFilter());
+            if (config.hasFilters()) {
+                config.getFilterChain().setup(outputSurface);
+            }
+            if (isHdr) {
+                outputSurface.setToneMapping(getToneMapping(inputFormat));
+            }
             decoder = prepareDecoder(inputFormat, outputSurface);
             if (decoder == null) {
                 notifyError(VideoErrorCode.DECODER_NOT_FOUND, "decoder not found");
                 return false;
             }
+            metrics.setDecoderName(decoder.getName());
             decoder.start();
 
-            MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
-            boolean inputDone = false;
-            boolean outputDone = false;
-            int videoTrackIndex = -5;
-
-            while (!outputDone) {
-                if (!inputDone) {
-                    int sampleIndex = extractor.getSampleTrackIndex();
-                    if (sampleIndex == videoIndex) {
-                        int inputBufferIndex = decoder.dequeueInputBuffer(MEDIACODEC_TIMEOUT_US);
-                        if (inputBufferIndex >= 0) {
-                            ByteBuffer inputBuffer = decoder.getInputBuffer(inputBufferIndex);
-                            int chunkSize = extractor.readSampleData(inputBuffer, 0);
-                            if (chunkSize >= 0) {
-                                decoder.queueInputBuffer(inputBufferIndex, 0, chunkSize, extractor.getSampleTime(), 0);
-                                extractor.advance();
-                            } else {
-                                decoder.queueInputBuffer(inputBufferIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
-                                inputDone = true;
-                            }
-                        }
-                    } else if (sampleIndex == -1) {
-                        int inputBufferIndex = decoder.dequeueInputBuffer(MEDIACODEC_TIMEOUT_US);
-                        if (inputBufferIndex >= 0) {
-                            decoder.queueInputBuffer(inputBufferIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
-                            inputDone = true;
-                        }
-                    }
+            VideoPipeline pipeline = new VideoPipeline(new ExtractorSource(extractor), videoIndex,
+                    new MediaCodecAdapter(decoder), outputSurface, renditions, new VideoPipeline.Callback() {
+                @Override
+                public boolean isRunning() {
+                    return isRunning;
                 }
 
-                boolean decoderOutputAvailable = true;
-                boolean encoderOutputAvailable = true;
-                while (isRunning && (decoderOutputAvailable || encoderOutputAvailable)) {
-                    // handle encoder
-                    int encodeIndex = encoder.dequeueOutputBuffer(bufferInfo, MEDIACODEC_TIMEOUT_US);
-                    if (encodeIndex == MediaCodec.INFO_TRY_AGAIN_LATER) {
-                        encoderOutputAvailable = false;
-                    } else if (encodeIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
-                        if (videoTrackIndex == -5) {
-                            videoTrackIndex = mediaMuxer.addTrack(encoder.getOutputFormat(), false);
-                        }
-                    } else if (encodeIndex == MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED) {
-
-                    } else if (encodeIndex < 0) {
-                        throw new RuntimeException("unexpected result from encoder.dequeueOutputBuffer: " + encodeIndex);
-                    } else {
-                        ByteBuffer encodeData = encoder.getOutputBuffer(encodeIndex);
-                        if (bufferInfo.size > 1 && (bufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) == 0) {
-                            mediaMuxer.writeSampleData(videoTrackIndex, encodeData, bufferInfo, false);
-                        }
-                        outputDone = (bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
-                        encoder.releaseOutputBuffer(encodeIndex, false);
-                    }
-                    if (encodeIndex != MediaCodec.INFO_TRY_AGAIN_LATER) continue;
-
-                    // handle decoder
-                    int decodeIndex = decoder.dequeueOutputBuffer(bufferInfo, MEDIACODEC_TIMEOUT_US);
-                    if (decodeIndex == MediaCodec.INFO_TRY_AGAIN_LATER) {
-                        decoderOutputAvailable = false;
-                    } else if (decodeIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
-                    } else if (decodeIndex == MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED) {
-                    } else if (decodeIndex < 0) {
-                        throw new RuntimeException("unexpected result from decoder.dequeueOutputBuffer: " + encodeIndex);
-                    } else {
-                        boolean doRender = bufferInfo.size != 0;
-                        decoder.releaseOutputBuffer(decodeIndex, doRender);
-                        if (doRender) {
-                            try {
-                                outputSurface.awaitNewImage();
-                                outputSurface.drawImage(false);
-                                inputSurface.setPresentationTime(bufferInfo.presentationTimeUs * 1000);
-                                notifyProgress((bufferInfo.presentationTimeUs / 1000f) / durationMs * 100);
-                                inputSurface.swapBuffers();
-                            } catch (Exception ignored) {}
-                        }
-                        if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
-                            decoderOutputAvailable = false;
-                            encoder.signalEndOfInputStream();
-                        }
-                    }
+                @Override
+                public void onProgress(float percent) {
+                    notifyProgress(percent);
+                    reportMetrics(false);
                 }
-            }
 
+                @Override
+                public boolean checkOversize(VideoRendition rendition, long presentationTimeUs) {
+                    return !isMultiOutput() && VideoCompressEngine.this.checkOversize(rendition.sink, presentationTimeUs, durationMs);
+                }
+            });
+            pipeline.setTimeRange(startTimeUs, endTimeUs);
+            pipeline.setResumeTimeUs(resumeTimeUs);
+            pipeline.setDurationMs(durationMs);
+            if (config.getFrameRate() > 0) {
+                int sourceFrameRate = inputFormat.containsKey(MediaFormat.KEY_FRAME_RATE) ? inputFormat.getInteger(MediaFormat.KEY_FRAME_RATE) : 0;
+                // 降帧率时不解码会被丢弃的非参考帧
+                pipeline.setFrameRateController(new FrameRateController(config.getFrameRate(), sourceFrameRate),
+                        MediaFormat.MIMETYPE_VIDEO_AVC.equals(inputFormat.getString(MediaFormat.KEY_MIME)));
+            }
+            pipeline.setMetrics(metrics);
+            pipeline.setTracer(tracer);
+            pipeline.run();
+            isOversize = pipeline.isOversize();
         } catch (Exception e) {
             e.printStackTrace();
             notifyError(VideoErrorCode.ERROR, "encode error:" + e);
@@ -377,15 +702,83 @@ class VideoCompressEngine implements Runnable {
                 decoder.stop();
                 decoder.release();
             }
-            encoder.stop();
-            encoder.release();
-            outputSurface.release();
-            inputSurface.release();
+            if (outputSurface != null) {
+                outputSurface.release();
+            }
+            releaseRenditions(renditions);
+            eglCore.release();
         }
 
         return isRunning;
     }
 
+    private void releaseRenditions(List<VideoRendition> renditions) {
+        // 先释放共享上下文的输出，最后释放持有上下文的第一路
+        for (int i = renditions.size() - 1; i >= 0; i--) {
+            renditions.get(i).release();
+        }
+    }
+
+    private boolean isMultiOutput() {
+        return !config.getRenditions().isEmpty();
+    }
+
+    private File getRenditionOutput(VideoQuality quality) {
+        String name = fileName;
+        String extension = "";
+        int dot = fileName.lastIndexOf('.');
+        if (dot > 0) {
+            name = fileName.substring(0, dot);
+            extension = fileName.substring(dot);
+        }
+        int level = Math.min(quality.getWidth(), quality.getHeight());
+        return new File(outputDir, name + "_" + level + "p" + extension);
+    }
+
+    /**
+     * 截取、使用滤镜或HDR色调映射后的输出与原视频内容不同，不能用原视频代替
+     */
+    static boolean canUseSource(VideoCompressConfig config, boolean isHdr) {
+        return !config.isTrimmed() && !config.hasFilters() && !isHdr;
+    }
+
+    private boolean checkOversize(SampleSink sink, long presentationTimeUs, long durationMs) {
+        float ratio = config.getMaxOutputRatio();
+        if (ratio <= 0 || sourceLength <= 0 || durationMs <= 0 || !canUseSource(config, isHdr)) {
+            return false;
+        }
+        long durationUs = durationMs * 1000;
+        if (presentationTimeUs < durationUs * OVERSIZE_CHECK_MIN_PROGRESS) {
+            return false;
+        }
+        return projectSize(sink.getWrittenSize(), presentationTimeUs, durationUs, expectedAudioBitrate) > sourceLength * ratio;
+    }
+
+    /**
+     * 按已写入的视频字节数和已编码的时长预估最终大小，加上还没有写入的音频
+     */
+    static long projectSize(long writtenBytes, long presentationTimeUs, long durationUs, int audioBitrate) {
+        long videoSize = writtenBytes * durationUs / presentationTimeUs;
+        return videoSize + (long) audioBitrate * durationUs / 8_000_000L;
+    }
+
+    private int getAudioBitrate(Map<Integer, MediaFormat> tracks, int totalBitrate) {
+        Map.Entry<Integer, MediaFormat> audioTrack = VideoUtils.getTrack(tracks, "audio/");
+        if (audioTrack == null) {
+            return 0;
+        }
+        MediaFormat audioFormat = audioTrack.getValue();
+        if (audioFormat.containsKey(MediaFormat.KEY_BIT_RATE)) {
+            return audioFormat.getInteger(MediaFormat.KEY_BIT_RATE);
+        }
+        // 总码率减去视频码率估算音频码率
+        Map.Entry<Integer, MediaFormat> videoTrack = VideoUtils.getTrack(tracks, "video/");
+        if (videoTrack != null && videoTrack.getValue().containsKey(MediaFormat.KEY_BIT_RATE)) {
+            return Math.max(totalBitrate - videoTrack.getValue().getInteger(MediaFormat.KEY_BIT_RATE), 0);
+        }
+        return 0;
+    }
+
     private MediaCodec prepareDecoder(MediaFormat inputFormat, OutputSurface outputSurface) {
         MediaCodec decoder = null;
         try {
@@ -404,11 +797,24 @@ class VideoCompressEngine implements Runnable {
         return decoder;
     }
 
-    private MediaCodec prepareEncoder(MediaFormat outputFormat) {
+    private MediaCodec prepareEncoder(String mimeType, VideoQuality quality, MediaFormat inputFormat, long durationMs) {
         MediaCodec encoder = null;
         try {
+            MediaFormat outputFormat = createOutputFormat(mimeType, quality, inputFormat, durationMs);
             encoder = findCodec(true, outputFormat);
             if (encoder != null) {
+                MediaCodecInfo.CodecCapabilities capabilities = encoder.getCodecInfo().getCapabilitiesForType(mimeType);
+                if (setupEncoderOptions(capabilities, quality, outputFormat)) {
+                    try {
+                        encoder.configure(outputFormat, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+                        return encoder;
+                    } catch (Exception e) {
+                        // 部分编码器声明支持但配置失败，使用默认参数重试
+                        e.printStackTrace();
+                        encoder.reset();
+                        outputFormat = createOutputFormat(mimeType, quality, inputFormat, durationMs);
+                    }
+                }
                 encoder.configure(outputFormat, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
             }
         } catch (Exception e) {
@@ -440,17 +846,116 @@ class VideoCompressEngine implements Runnable {
         return null;
     }
 
-    private void setupOutputFormat(MediaFormat inputFormat, MediaFormat outputFormat) {
+    private MediaFormat createOutputFormat(String mimeType, VideoQuality quality, MediaFormat inputFormat, long durationMs) {
+        // 设置输出参数，策略计算的码率以AVC为基准，按编码格式换算，指定了大小或码率时不换算
+        int bitrate = quality.getBitrate();
+        if (config.getTargetSize() <= 0 && !isMultiOutput()) {
+            bitrate = Math.round(bitrate * VideoQualityUtils.getBitrateScale(mimeType));
+        }
+        MediaFormat outputFormat = MediaFormat.createVideoFormat(mimeType, quality.getWidth(), quality.getHeight());
+        outputFormat.setInteger(MediaFormat.KEY_BIT_RATE, bitrate);
+        outputFormat.setLong(MediaFormat.KEY_DURATION, durationMs * 1000);
+        setupOutputFormat(inputFormat, outputFormat, quality);
+        return outputFormat;
+    }
+
+    /**
+     * 按编码器能力设置码率模式、profile和level，不支持的参数使用编码器默认值
+     *
+     * @return 是否设置了可选参数
+     */
+    private boolean setupEncoderOptions(MediaCodecInfo.CodecCapabilities capabilities,
+                                        VideoQuality quality,
+                                        MediaFormat outputFormat) {
+        boolean changed = false;
+        int bitrateMode = quality.getBitrateMode();
+        // 指定大小时需要动态调整码率，不能使用CQ
+        if (bitrateMode == MediaCodecInfo.EncoderCapabilities.BITRATE_MODE_CQ && config.getTargetSize() > 0) {
+            bitrateMode = -1;
+        }
+        MediaCodecInfo.EncoderCapabilities encoderCapabilities = capabilities.getEncoderCapabilities();
+        if (bitrateMode >= 0 && encoderCapabilities != null && encoderCapabilities.isBitrateModeSupported(bitrateMode)) {
+            outputFormat.setInteger(MediaFormat.KEY_BITRATE_MODE, bitrateMode);
+            changed = true;
+        }
+
+        // 策略按AVC给出profile和level，换算为实际的编码格式
+        String mimeType = capabilities.getMimeType();
+        int profile = VideoQualityUtils.getProfile(mimeType, quality.getProfile());
+        int maxLevel = profile > 0 ? getMaxLevel(capabilities, profile) : 0;
+        if (maxLevel > 0) {
+            outputFormat.setInteger(MediaFormat.KEY_PROFILE, profile);
+            int level = VideoQualityUtils.getLevel(mimeType, quality.getLevel());
+            if (level > 0) {
+                outputFormat.setInteger(MediaFormat.KEY_LEVEL, Math.min(level, maxLevel));
+            } else if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+                // M以下profile需要和level一起设置
+                outputFormat.setInteger(MediaFormat.KEY_LEVEL, maxLevel);
+            }
+            // Main及以上profile允许B帧，由MP4Builder写入ctts
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && isBFrameProfile(mimeType, profile)) {
+                outputFormat.setInteger(MediaFormat.KEY_MAX_B_FRAMES, 1);
+            }
+            changed = true;
+        }
+        return changed;
+    }
+
+    private boolean isBFrameProfile(String mimeType, int profile) {
+        if (MediaFormat.MIMETYPE_VIDEO_AVC.equals(mimeType)) {
+            return profile == MediaCodecInfo.CodecProfileLevel.AVCProfileMain
+                    || profile == MediaCodecInfo.CodecProfileLevel.AVCProfileHigh;
+        }
+        return MediaFormat.MIMETYPE_VIDEO_HEVC.equals(mimeType);
+    }
+
+    /**
+     * @return 编码器在该profile下支持的最高level，不支持该profile时返回0
+     */
+    private int getMaxLevel(MediaCodecInfo.CodecCapabilities capabilities, int profile) {
+        int maxLevel = 0;
+        if (capabilities.profileLevels == null) {
+            return maxLevel;
+        }
+        for (MediaCodecInfo.CodecProfileLevel profileLevel : capabilities.profileLevels) {
+            if (profileLevel.profile == profile) {
+                maxLevel = Math.max(maxLevel, profileLevel.level);
+            }
+        }
+        return maxLevel;
+    }
+
+    private void setupOutputFormat(MediaFormat inputFormat, MediaFormat outputFormat, VideoQuality quality) {
         outputFormat.setInteger(MediaFormat.KEY_COLOR_FORMAT, MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
         setOutputInteger(inputFormat, outputFormat, MediaFormat.KEY_FRAME_RATE, 30);
-        setOutputInteger(inputFormat, outputFormat, MediaFormat.KEY_I_FRAME_INTERVAL, 1);
+        int frameRate = config.getFrameRate();
+        if (frameRate > 0 && outputFormat.getInteger(MediaFormat.KEY_FRAME_RATE) > frameRate) {
+            outputFormat.setInteger(MediaFormat.KEY_FRAME_RATE, frameRate);
+        }
+        if (quality.getIFrameInterval() > 0) {
+            outputFormat.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, quality.getIFrameInterval());
+        } else {
+            setOutputInteger(inputFormat, outputFormat, MediaFormat.KEY_I_FRAME_INTERVAL, 1);
+        }
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
-            setOutputInteger(inputFormat, outputFormat, MediaFormat.KEY_COLOR_STANDARD, null);
-            setOutputInteger(inputFormat, outputFormat, MediaFormat.KEY_COLOR_TRANSFER, null);
-            setOutputInteger(inputFormat, outputFormat, MediaFormat.KEY_COLOR_RANGE, null);
+            if (isHdr) {
+                // 色调映射后输出8位BT.709 SDR
+                outputFormat.setInteger(MediaFormat.KEY_COLOR_STANDARD, MediaFormat.COLOR_STANDARD_BT709);
+                outputFormat.setInteger(MediaFormat.KEY_COLOR_TRANSFER, MediaFormat.COLOR_TRANSFER_SDR_VIDEO);
+                outputFormat.setInteger(MediaFormat.KEY_COLOR_RANGE, MediaFormat.COLOR_RANGE_LIMITED);
+            } else {
+                setOutputInteger(inputFormat, outputFormat, MediaFormat.KEY_COLOR_STANDARD, null);
+                setOutputInteger(inputFormat, outputFormat, MediaFormat.KEY_COLOR_TRANSFER, null);
+                setOutputInteger(inputFormat, outputFormat, MediaFormat.KEY_COLOR_RANGE, null);
+            }
         }
     }
 
+    private int getToneMapping(MediaFormat inputFormat) {
+        return VideoUtils.getHdrTransfer(inputFormat) == MediaFormat.COLOR_TRANSFER_HLG
+                ? TextureRenderer.TONE_MAP_HLG : TextureRenderer.TONE_MAP_PQ;
+    }
+
     private Map<String, MediaCodecInfo.CodecCapabilities> findSupportCodec(boolean isEncoder, String type) {
         MediaCodecList mediaCodecList = new MediaCodecList(REGULAR_CODECS);
         Map<String, MediaCodecInfo.CodecCapabilities> map = new HashMap<>();
@@ -513,6 +1018,17 @@ class VideoCompressEngine implements Runnable {
         VideoMetadata getMetadata();
 
         InputStream getInputStream() throws IOException;
+
+        /**
+         * @return 源文件的字节数，未知时返回-1
+         */
+        long getLength();
+
+        /**
+         * @return 文件的绝对路径或Uri，保存在任务记录中
+         */
+        @NonNull
+        String getLocation();
     }
 
     static class FileSource implements Source {
@@ -537,6 +1053,17 @@ class VideoCompressEngine implements Runnable {
         public InputStream getInputStream() throws IOException {
             return new FileInputStream(file);
         }
+
+        @Override
+        public long getLength() {
+            return file.length();
+        }
+
+        @NonNull
+        @Override
+        public String getLocation() {
+            return file.getAbsolutePath();
+        }
     }
 
     static class UriSource implements Source {
@@ -564,5 +1091,28 @@ class VideoCompressEngine implements Runnable {
         public InputStream getInputStream() throws IOException {
             return context.getContentResolver().openInputStream(uri);
         }
+
+        @NonNull
+        @Override
+        public String getLocation() {
+            return uri.toString();
+        }
+
+        @Override
+        public long getLength() {
+            AssetFileDescriptor fd = null;
+            try {
+                fd = context.getContentResolver().openAssetFileDescriptor(uri, "r");
+                return fd == null ? -1 : fd.getLength();
+            } catch (Exception e) {
+                return -1;
+            } finally {
+                if (fd != null) {
+                    try {
+                        fd.close();
+                    } catch (IOException ignored) {}
+                }
+            }
+        }
     }
 }
@@ -28,7 +28,20 @@ public class VideoCompressUtils {
             File outputDir,
             String fileName,
             VideoCompressCallback callback) {
-        return compress(new VideoCompressEngine.UriSource(context, src), outputDir, fileName, callback);
+        return compress(context, src, outputDir, fileName, new VideoCompressConfig(), callback);
+    }
+
+    /**
+     * @return 返回压缩任务的id
+     */
+    public static int compress(
+            Context context,
+            Uri src,
+            File outputDir,
+            String fileName,
+            VideoCompressConfig config,
+            VideoCompressCallback callback) {
+        return compress(new VideoCompressEngine.UriSource(context, src), outputDir, fileName, config, callback);
     }
 
     /**
@@ -39,16 +52,52 @@ public class VideoCompressUtils {
             File outputDir,
             String fileName,
             VideoCompressCallback callback) {
-        return compress(new VideoCompressEngine.FileSource(input), outputDir, fileName, callback);
+        return compress(input, outputDir, fileName, new VideoCompressConfig(), callback);
+    }
+
+    /**
+     * @return 返回压缩任务的id
+     */
+    public static int compress(
+            File input,
+            File outputDir,
+            String fileName,
+            VideoCompressConfig config,
+            VideoCompressCallback callback) {
+        return compress(new VideoCompressEngine.FileSource(input), outputDir, fileName, config, callback);
+    }
+
+    /**
+     * 继续进程被杀死前未完成的任务，有检查点时从检查点继续，否则重新压缩。
+     * config需要与第一次压缩时一致，并设置保存该任务的jobStore
+     *
+     * @return 返回压缩任务的id
+     */
+    public static int resume(
+            Context context,
+            CompressJob job,
+            VideoCompressConfig config,
+            VideoCompressCallback callback) {
+        config.setJobId(job.getId());
+        File output = new File(job.getOutput());
+        VideoCompressEngine.Source source;
+        if (job.getSource().startsWith("/")) {
+            source = new VideoCompressEngine.FileSource(new File(job.getSource()));
+        } else {
+            source = new VideoCompressEngine.UriSource(context, Uri.parse(job.getSource()));
+        }
+        return compress(source, output.getParentFile(), output.getName(), config, callback);
     }
 
     private static int compress(
             VideoCompressEngine.Source source,
             File outputDir,
             String fileName,
+            VideoCompressConfig config,
             VideoCompressCallback callback) {
         int id = idAtomic.getAndIncrement();
         VideoCompressEngine engine = new VideoCompressEngine(executor, outputDir, fileName, source);
+        engine.setConfig(config);
         engine.setCallback(callback);
         engine.start();
         runningEngines.put(id, engine);
@@ -11,4 +11,6 @@ public class VideoErrorCode {
     public static final int VIDEO_TRACK_NOT_FOUND = 3;
     public static final int ENCODER_NOT_FOUND = 4;
     public static final int DECODER_NOT_FOUND = 5;
+    public static final int INVALID_TIME_RANGE = 6;
+    public static final int AUDIO_NOT_SUPPORTED = 7;
 }
@@ -0,0 +1,323 @@
+package com.zrh.video;
+
+import com.zrh.video.codec.CodecBufferInfo;
+import com.zrh.video.codec.FrameRenderer;
+import com.zrh.video.codec.FrameTarget;
+import com.zrh.video.codec.SampleSource;
+import com.zrh.video.codec.VideoCodec;
+import com.zrh.video.mp4.NalUnitUtils;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * 视频的解码 -> 绘制 -> 编码 -> 写入循环，只依赖codec包的接口，可以使用模拟实现在JVM中测试
+ */
+class VideoPipeline {
+    private static final long MEDIACODEC_TIMEOUT_US = 100L;
+
+    interface Callback {
+        boolean isRunning();
+
+        void onProgress(float percent);
+
+        /**
+         * @return 是否预估压缩后会超过原视频大小，需要放弃压缩
+         */
+        boolean checkOversize(VideoRendition rendition, long presentationTimeUs);
+    }
+
+    private final SampleSource source;
+    private final int trackIndex;
+    private final VideoCodec decoder;
+    private final FrameRenderer renderer;
+    private final List<VideoRendition> renditions;
+    private final Callback callback;
+    private final CodecBufferInfo bufferInfo = new CodecBufferInfo();
+    // 截取范围，单位微秒
+    private long startTimeUs = 0;
+    private long endTimeUs = Long.MAX_VALUE;
+    private long durationMs = 0;
+    // 从检查点恢复时继续编码的时间，之前的帧只解码不编码
+    private long resumeTimeUs = 0;
+    private FrameRateController frameRateController = null;
+    private boolean skipDisposable = false;
+    private CompressMetrics metrics = new CompressMetrics();
+    private CompressTracer tracer = null;
+    private boolean isOversize = false;
+
+    VideoPipeline(SampleSource source, int trackIndex, VideoCodec decoder, FrameRenderer renderer,
+                  List<VideoRendition> renditions, Callback callback) {
+        this.source = source;
+        this.trackIndex = trackIndex;
+        this.decoder = decoder;
+        this.renderer = renderer;
+        this.renditions = renditions;
+        this.callback = callback;
+    }
+
+    void setTimeRange(long startTimeUs, long endTimeUs) {
+        this.startTimeUs = startTimeUs;
+        this.endTimeUs = endTimeUs;
+    }
+
+    /**
+     * @param resumeTimeUs 输出中的时间戳，source需要seek到该时间之前的关键帧
+     */
+    void setResumeTimeUs(long resumeTimeUs) {
+        this.resumeTimeUs = resumeTimeUs;
+    }
+
+    /**
+     * @param durationMs 输出的视频时长，用于计算进度
+     */
+    void setDurationMs(long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    /**
+     * @param skipDisposable 是否不解码会被丢弃的非参考帧，只适用于AVC
+     */
+    void setFrameRateController(FrameRateController frameRateController, boolean skipDisposable) {
+        this.frameRateController = frameRateController;
+        this.skipDisposable = frameRateController != null && skipDisposable;
+    }
+
+    void setMetrics(CompressMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    void setTracer(CompressTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    boolean isOversize() {
+        return isOversize;
+    }
+
+    /**
+     * 解码器和编码器需要已经启动，source需要已经选中视频轨并seek到起始位置
+     *
+     * @return 是否处理完成，取消时返回false
+     */
+    boolean run() throws Exception {
+        boolean inputDone = false;
+        boolean outputDone = false;
+        // 已交给SurfaceTexture还未绘制的帧
+        long pendingFrameTimeUs = -1;
+
+        while (callback.isRunning() && !outputDone) {
+            if (!inputDone) {
+                inputDone = feedDecoder();
+            }
+
+            boolean decoderOutputAvailable = true;
+            boolean encoderOutputAvailable = true;
+            while (callback.isRunning() && !outputDone && (decoderOutputAvailable || encoderOutputAvailable)) {
+                // handle encoder
+                encoderOutputAvailable = false;
+                outputDone = true;
+                for (VideoRendition rendition : renditions) {
+                    if (!rendition.outputDone && drainEncoder(rendition)) {
+                        encoderOutputAvailable = true;
+                    }
+                    outputDone &= rendition.outputDone;
+                }
+                outputDone |= isOversize;
+                if (encoderOutputAvailable) continue;
+
+                // handle decoder
+                long decodeTime = System.nanoTime();
+                int decodeIndex = decoder.dequeueOutputBuffer(bufferInfo, MEDIACODEC_TIMEOUT_US);
+                if (decodeIndex == VideoCodec.INFO_TRY_AGAIN_LATER) {
+                    decoderOutputAvailable = false;
+                    metrics.onDecoderOutputStall();
+                } else if (decodeIndex == VideoCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                } else if (decodeIndex == VideoCodec.INFO_OUTPUT_BUFFERS_CHANGED) {
+                } else if (decodeIndex < 0) {
+                    throw new RuntimeException("unexpected result from decoder.dequeueOutputBuffer: " + decodeIndex);
+                } else {
+                    metrics.record(CompressMetrics.STAGE_DECODE, System.nanoTime() - decodeTime);
+                    // 起始时间或恢复时间之前的帧只解码不编码
+                    long presentationTimeUs = bufferInfo.presentationTimeUs - startTimeUs;
+                    boolean doRender = bufferInfo.size != 0
+                            && presentationTimeUs >= resumeTimeUs
+                            && bufferInfo.presentationTimeUs <= endTimeUs;
+                    // 降帧率时在绘制前丢帧
+                    if (doRender && frameRateController != null) {
+                        doRender = frameRateController.shouldRender(presentationTimeUs);
+                    }
+                    // 交出新的一帧前先绘制上一帧，上一帧在此期间已送达纹理，解码器始终领先一帧
+                    if (doRender && pendingFrameTimeUs >= 0) {
+                        drawFrame(pendingFrameTimeUs);
+                        pendingFrameTimeUs = -1;
+                    }
+                    decoder.releaseOutputBuffer(decodeIndex, doRender);
+                    if (bufferInfo.size != 0) {
+                        metrics.onFrameDecoded(doRender);
+                    }
+                    traceEnd(CompressTracer.EVENT_DECODE, decodeTime, bufferInfo.presentationTimeUs);
+                    if (doRender) {
+                        pendingFrameTimeUs = presentationTimeUs;
+                    }
+                    if ((bufferInfo.flags & VideoCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                        if (pendingFrameTimeUs >= 0) {
+                            drawFrame(pendingFrameTimeUs);
+                            pendingFrameTimeUs = -1;
+                        }
+                        decoderOutputAvailable = false;
+                        for (VideoRendition rendition : renditions) {
+                            rendition.encoder.signalEndOfInputStream();
+                        }
+                    }
+                }
+            }
+        }
+        return callback.isRunning();
+    }
+
+    /**
+     * 送入一个样本，超出截取范围或没有更多样本时送入结束标记
+     *
+     * @return 是否已结束输入
+     */
+    private boolean feedDecoder() {
+        int sampleIndex = source.getSampleTrackIndex();
+        if (sampleIndex == -1 || (sampleIndex == trackIndex && source.getSampleTime() > endTimeUs)) {
+            // 超出截取范围后不再解码
+            int inputBufferIndex = decoder.dequeueInputBuffer(MEDIACODEC_TIMEOUT_US);
+            if (inputBufferIndex >= 0) {
+                decoder.queueInputBuffer(inputBufferIndex, 0, 0, 0, VideoCodec.BUFFER_FLAG_END_OF_STREAM);
+                return true;
+            }
+        } else if (sampleIndex == trackIndex) {
+            long queueTime = traceBegin();
+            int inputBufferIndex = decoder.dequeueInputBuffer(MEDIACODEC_TIMEOUT_US);
+            if (inputBufferIndex >= 0) {
+                ByteBuffer inputBuffer = decoder.getInputBuffer(inputBufferIndex);
+                long extractTime = System.nanoTime();
+                int chunkSize = source.readSampleData(inputBuffer, 0);
+                while (skipDisposable && chunkSize >= 0 && isDisposableFrame(inputBuffer, chunkSize)) {
+                    // 会被丢弃的非参考帧不送入解码器，复用输入缓冲读取下一帧
+                    source.advance();
+                    if (source.getSampleTrackIndex() != trackIndex || source.getSampleTime() > endTimeUs) {
+                        // 超出截取范围或没有更多样本，送入结束标记
+                        chunkSize = -1;
+                        break;
+                    }
+                    chunkSize = source.readSampleData(inputBuffer, 0);
+                }
+                if (chunkSize >= 0) {
+                    long sampleTimeUs = source.getSampleTime();
+                    source.advance();
+                    metrics.record(CompressMetrics.STAGE_EXTRACT, System.nanoTime() - extractTime);
+                    traceEnd(CompressTracer.EVENT_EXTRACT, extractTime, sampleTimeUs);
+                    decoder.queueInputBuffer(inputBufferIndex, 0, chunkSize, sampleTimeUs, 0);
+                    metrics.onFrameIn();
+                    // 包含等待输入缓冲和读取样本的时间
+                    traceEnd(CompressTracer.EVENT_QUEUE, queueTime, sampleTimeUs);
+                } else {
+                    decoder.queueInputBuffer(inputBufferIndex, 0, 0, 0, VideoCodec.BUFFER_FLAG_END_OF_STREAM);
+                    return true;
+                }
+            } else {
+                // 解码器输入队列已满
+                metrics.onDecoderInputStall();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 等待解码的画面送达纹理，绘制到每一路输出
+     */
+    private void drawFrame(long presentationTimeUs) {
+        long startTime = System.nanoTime();
+        try {
+            renderer.awaitNewImage();
+            traceEnd(CompressTracer.EVENT_AWAIT_IMAGE, startTime, presentationTimeUs);
+            // 解码一次，绘制到每一路输出
+            for (VideoRendition rendition : renditions) {
+                FrameTarget inputSurface = rendition.inputSurface;
+                long drawTime = traceBegin();
+                if (renditions.size() > 1) {
+                    inputSurface.makeCurrent();
+                }
+                renderer.drawImage(false);
+                traceEnd(CompressTracer.EVENT_DRAW, drawTime, presentationTimeUs);
+                long swapTime = traceBegin();
+                inputSurface.setPresentationTime(presentationTimeUs * 1000);
+                inputSurface.swapBuffers();
+                traceEnd(CompressTracer.EVENT_SWAP, swapTime, presentationTimeUs);
+            }
+            if (durationMs > 0) {
+                callback.onProgress((presentationTimeUs / 1000f) / durationMs * 100);
+            }
+        } catch (Exception ignored) {}
+        metrics.record(CompressMetrics.STAGE_RENDER, System.nanoTime() - startTime);
+        metrics.onFrameRendered();
+    }
+
+    /**
+     * @return 编码器是否有输出
+     */
+    private boolean drainEncoder(VideoRendition rendition) throws Exception {
+        VideoCodec encoder = rendition.encoder;
+        long encodeTime = System.nanoTime();
+        int encodeIndex = encoder.dequeueOutputBuffer(bufferInfo, MEDIACODEC_TIMEOUT_US);
+        if (encodeIndex == VideoCodec.INFO_TRY_AGAIN_LATER) {
+            metrics.onEncoderOutputStall();
+            return false;
+        } else if (encodeIndex == VideoCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+            if (rendition.videoTrackIndex == -5) {
+                rendition.videoTrackIndex = rendition.sink.addTrack(encoder.getOutputFormat(), false);
+            }
+        } else if (encodeIndex == VideoCodec.INFO_OUTPUT_BUFFERS_CHANGED) {
+
+        } else if (encodeIndex < 0) {
+            throw new RuntimeException("unexpected result from encoder.dequeueOutputBuffer: " + encodeIndex);
+        } else {
+            metrics.record(CompressMetrics.STAGE_ENCODE, System.nanoTime() - encodeTime);
+            traceEnd(CompressTracer.EVENT_ENCODE_DRAIN, encodeTime, bufferInfo.presentationTimeUs);
+            ByteBuffer encodeData = encoder.getOutputBuffer(encodeIndex);
+            if (bufferInfo.size > 1 && (bufferInfo.flags & VideoCodec.BUFFER_FLAG_CODEC_CONFIG) == 0) {
+                long muxTime = System.nanoTime();
+                rendition.sink.writeSampleData(rendition.videoTrackIndex, encodeData, bufferInfo, false);
+                metrics.record(CompressMetrics.STAGE_MUX, System.nanoTime() - muxTime);
+                traceEnd(CompressTracer.EVENT_WRITE, muxTime, bufferInfo.presentationTimeUs);
+                metrics.onFrameEncoded(bufferInfo.size);
+                isOversize = callback.checkOversize(rendition, bufferInfo.presentationTimeUs);
+                if (rendition.bitrateController != null) {
+                    int bitrate = rendition.bitrateController.onSampleWritten(bufferInfo.size, bufferInfo.presentationTimeUs);
+                    if (bitrate > 0) {
+                        encoder.setVideoBitrate(bitrate);
+                    }
+                }
+            }
+            rendition.outputDone = isOversize || (bufferInfo.flags & VideoCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+            encoder.releaseOutputBuffer(encodeIndex, false);
+        }
+        return true;
+    }
+
+    private boolean isDisposableFrame(ByteBuffer sample, int size) {
+        long presentationTimeUs = source.getSampleTime() - startTimeUs;
+        return presentationTimeUs >= 0
+                && frameRateController.isPredictedDrop(presentationTimeUs)
+                // MediaExtractor读取的AVC样本使用起始码分隔
+                && NalUnitUtils.isDisposable(sample, 0, size, true);
+    }
+
+    private long traceBegin() {
+        return tracer != null ? System.nanoTime() : 0;
+    }
+
+    private void traceEnd(int event, long beginNs, long timestampUs) {
+        if (tracer != null) {
+            tracer.record(event, beginNs, System.nanoTime(), timestampUs);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.zrh.video;
+
+import com.zrh.video.codec.FrameTarget;
+import com.zrh.video.codec.SampleSink;
+import com.zrh.video.codec.VideoCodec;
+import com.zrh.video.mp4.MP4Builder;
+import com.zrh.video.mp4.SampleTraceWriter;
+
+import java.io.File;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * 一路输出：共享同一个解码器，拥有独立的编码器和MP4Builder
+ */
+class VideoRendition {
+    final VideoQuality quality;
+    final File output;
+    MP4Builder muxer;
+    // 视频写入sink，通常是对muxer的封装
+    SampleSink sink;
+    // 开启采集时记录写入sink的样本
+    SampleTraceWriter capture;
+    VideoCodec encoder;
+    FrameTarget inputSurface;
+    BitrateController bitrateController;
+    int videoTrackIndex = -5;
+    int audioTrackIndex = -1;
+    boolean outputDone = false;
+
+    VideoRendition(VideoQuality quality, File output) {
+        this.quality = quality;
+        this.output = output;
+    }
+
+    void release() {
+        if (encoder != null) {
+            try {
+                encoder.stop();
+            } catch (Exception ignored) {}
+            encoder.release();
+            encoder = null;
+        }
+        if (inputSurface != null) {
+            inputSurface.release();
+            inputSurface = null;
+        }
+    }
+}
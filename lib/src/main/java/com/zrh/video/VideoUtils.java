@@ -1,13 +1,17 @@
 package com.zrh.video;
 
 import android.content.Context;
+import android.media.MediaCodecInfo;
 import android.media.MediaExtractor;
 import android.media.MediaFormat;
 import android.media.MediaMetadataRetriever;
 import android.net.Uri;
+import android.os.Build;
 
 import androidx.annotation.WorkerThread;
 
+import com.zrh.video.mp4.TrackFormat;
+
 import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
@@ -36,6 +40,56 @@ public class VideoUtils {
         return null;
     }
 
+    /**
+     * 转换为写入MP4使用的格式，只复制{@link TrackFormat}中定义的键
+     */
+    public static TrackFormat toTrackFormat(MediaFormat format) {
+        TrackFormat trackFormat = new TrackFormat();
+        trackFormat.setString(TrackFormat.KEY_MIME, format.getString(MediaFormat.KEY_MIME));
+        String[] keys = {TrackFormat.KEY_WIDTH, TrackFormat.KEY_HEIGHT, TrackFormat.KEY_SAMPLE_RATE,
+                TrackFormat.KEY_CHANNEL_COUNT, TrackFormat.KEY_BIT_RATE};
+        for (String key : keys) {
+            if (format.containsKey(key)) {
+                trackFormat.setInteger(key, format.getInteger(key));
+            }
+        }
+        for (String key : TrackFormat.KEY_CSD) {
+            if (format.containsKey(key)) {
+                trackFormat.setByteBuffer(key, format.getByteBuffer(key));
+            }
+        }
+        return trackFormat;
+    }
+
+    /**
+     * @return HDR视频的传输特性(MediaFormat.COLOR_TRANSFER_ST2084或COLOR_TRANSFER_HLG)，SDR视频返回0
+     */
+    public static int getHdrTransfer(MediaFormat format) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            return 0;
+        }
+        if (format.containsKey(MediaFormat.KEY_COLOR_TRANSFER)) {
+            int transfer = format.getInteger(MediaFormat.KEY_COLOR_TRANSFER);
+            if (transfer == MediaFormat.COLOR_TRANSFER_ST2084 || transfer == MediaFormat.COLOR_TRANSFER_HLG) {
+                return transfer;
+            }
+        }
+        // 部分解析器不输出颜色信息，按HDR10的profile判断
+        if (format.containsKey(MediaFormat.KEY_PROFILE)
+                && MediaFormat.MIMETYPE_VIDEO_HEVC.equals(format.getString(MediaFormat.KEY_MIME))) {
+            int profile = format.getInteger(MediaFormat.KEY_PROFILE);
+            if (profile == MediaCodecInfo.CodecProfileLevel.HEVCProfileMain10HDR10
+                    || profile == MediaCodecInfo.CodecProfileLevel.HEVCProfileMain10HDR10Plus) {
+                return MediaFormat.COLOR_TRANSFER_ST2084;
+            }
+        }
+        return 0;
+    }
+
+    public static boolean isHdr(MediaFormat format) {
+        return getHdrTransfer(format) != 0;
+    }
+
     @WorkerThread
     public static VideoMetadata getMetadata(Context context,
                                             Uri uri) throws IllegalArgumentException, SecurityException {
@@ -0,0 +1,43 @@
+package com.zrh.video.codec;
+
+import android.media.MediaFormat;
+
+import com.zrh.video.VideoUtils;
+import com.zrh.video.mp4.SampleTraceWriter;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * 写入前把轨道格式和样本记录到{@link SampleTraceWriter}，用于离线重放编码器的真实输出
+ */
+public class CaptureSampleSink implements SampleSink {
+    private final SampleSink sink;
+    private final SampleTraceWriter writer;
+
+    public CaptureSampleSink(SampleSink sink, SampleTraceWriter writer) {
+        this.sink = sink;
+        this.writer = writer;
+    }
+
+    @Override
+    public int addTrack(MediaFormat format, boolean isAudio) throws Exception {
+        int trackIndex = sink.addTrack(format, isAudio);
+        writer.addTrack(trackIndex, VideoUtils.toTrackFormat(format), isAudio);
+        return trackIndex;
+    }
+
+    @Override
+    public void writeSampleData(int trackIndex, ByteBuffer buffer, CodecBufferInfo info, boolean isAudio) throws Exception {
+        // 先记录，写入muxer会改变buffer的position和limit
+        writer.writeSample(trackIndex, buffer, info);
+        sink.writeSampleData(trackIndex, buffer, info, isAudio);
+    }
+
+    @Override
+    public long getWrittenSize() {
+        return sink.getWrittenSize();
+    }
+}
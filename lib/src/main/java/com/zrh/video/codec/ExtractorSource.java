@@ -0,0 +1,39 @@
+package com.zrh.video.codec;
+
+import android.media.MediaExtractor;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * {@link MediaExtractor}的实现，选择轨道和seek仍由调用方直接操作MediaExtractor
+ */
+public class ExtractorSource implements SampleSource {
+    private final MediaExtractor extractor;
+
+    public ExtractorSource(MediaExtractor extractor) {
+        this.extractor = extractor;
+    }
+
+    @Override
+    public int getSampleTrackIndex() {
+        return extractor.getSampleTrackIndex();
+    }
+
+    @Override
+    public long getSampleTime() {
+        return extractor.getSampleTime();
+    }
+
+    @Override
+    public int readSampleData(ByteBuffer buffer, int offset) {
+        return extractor.readSampleData(buffer, offset);
+    }
+
+    @Override
+    public boolean advance() {
+        return extractor.advance();
+    }
+}
@@ -0,0 +1,18 @@
+package com.zrh.video.codec;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * 接收解码器输出的画面，并绘制到当前的{@link FrameTarget}
+ */
+public interface FrameRenderer {
+    /**
+     * 等待解码器releaseOutputBuffer(index, true)的画面送达
+     */
+    void awaitNewImage();
+
+    void drawImage(boolean invert);
+
+    void release();
+}
@@ -0,0 +1,17 @@
+package com.zrh.video.codec;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * 编码器的输入画面，swapBuffers后画面提交给编码器
+ */
+public interface FrameTarget {
+    void makeCurrent();
+
+    void setPresentationTime(long nsecs);
+
+    boolean swapBuffers();
+
+    void release();
+}
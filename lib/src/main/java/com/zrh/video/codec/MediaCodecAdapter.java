@@ -0,0 +1,95 @@
+package com.zrh.video.codec;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.os.Bundle;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * {@link MediaCodec}的实现，BufferInfo复用同一个对象
+ */
+public class MediaCodecAdapter implements VideoCodec {
+    private final MediaCodec codec;
+    private final MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+
+    public MediaCodecAdapter(MediaCodec codec) {
+        this.codec = codec;
+    }
+
+    public MediaCodec getCodec() {
+        return codec;
+    }
+
+    @Override
+    public String getName() {
+        return codec.getName();
+    }
+
+    @Override
+    public void start() {
+        codec.start();
+    }
+
+    @Override
+    public int dequeueInputBuffer(long timeoutUs) {
+        return codec.dequeueInputBuffer(timeoutUs);
+    }
+
+    @Override
+    public ByteBuffer getInputBuffer(int index) {
+        return codec.getInputBuffer(index);
+    }
+
+    @Override
+    public void queueInputBuffer(int index, int offset, int size, long presentationTimeUs, int flags) {
+        codec.queueInputBuffer(index, offset, size, presentationTimeUs, flags);
+    }
+
+    @Override
+    public int dequeueOutputBuffer(CodecBufferInfo info, long timeoutUs) {
+        int index = codec.dequeueOutputBuffer(bufferInfo, timeoutUs);
+        info.set(bufferInfo.offset, bufferInfo.size, bufferInfo.presentationTimeUs, bufferInfo.flags);
+        return index;
+    }
+
+    @Override
+    public ByteBuffer getOutputBuffer(int index) {
+        return codec.getOutputBuffer(index);
+    }
+
+    @Override
+    public MediaFormat getOutputFormat() {
+        return codec.getOutputFormat();
+    }
+
+    @Override
+    public void releaseOutputBuffer(int index, boolean render) {
+        codec.releaseOutputBuffer(index, render);
+    }
+
+    @Override
+    public void signalEndOfInputStream() {
+        codec.signalEndOfInputStream();
+    }
+
+    @Override
+    public void setVideoBitrate(int bitrate) {
+        Bundle params = new Bundle();
+        params.putInt(MediaCodec.PARAMETER_KEY_VIDEO_BITRATE, bitrate);
+        codec.setParameters(params);
+    }
+
+    @Override
+    public void stop() {
+        codec.stop();
+    }
+
+    @Override
+    public void release() {
+        codec.release();
+    }
+}
@@ -0,0 +1,37 @@
+package com.zrh.video.codec;
+
+import android.media.MediaFormat;
+
+import com.zrh.video.VideoUtils;
+import com.zrh.video.mp4.MP4Builder;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * 写入{@link MP4Builder}，轨道格式转换为{@link com.zrh.video.mp4.TrackFormat}
+ */
+public class MuxerSink implements SampleSink {
+    private final MP4Builder muxer;
+
+    public MuxerSink(MP4Builder muxer) {
+        this.muxer = muxer;
+    }
+
+    @Override
+    public int addTrack(MediaFormat format, boolean isAudio) throws Exception {
+        return muxer.addTrack(VideoUtils.toTrackFormat(format), isAudio);
+    }
+
+    @Override
+    public void writeSampleData(int trackIndex, ByteBuffer buffer, CodecBufferInfo info, boolean isAudio) throws Exception {
+        muxer.writeSampleData(trackIndex, buffer, info, isAudio);
+    }
+
+    @Override
+    public long getWrittenSize() {
+        return muxer.getWrittenSize();
+    }
+}
@@ -0,0 +1,22 @@
+package com.zrh.video.codec;
+
+import android.media.MediaFormat;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * 写入编码后的样本
+ */
+public interface SampleSink {
+    int addTrack(MediaFormat format, boolean isAudio) throws Exception;
+
+    void writeSampleData(int trackIndex, ByteBuffer buffer, CodecBufferInfo info, boolean isAudio) throws Exception;
+
+    /**
+     * @return 已写入的字节数
+     */
+    long getWrittenSize();
+}
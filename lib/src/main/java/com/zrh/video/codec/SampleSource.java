@@ -0,0 +1,25 @@
+package com.zrh.video.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * 按顺序读取已选中轨道的样本，语义与{@link android.media.MediaExtractor}一致
+ */
+public interface SampleSource {
+    /**
+     * @return 当前样本所在的轨道，没有更多样本时返回-1
+     */
+    int getSampleTrackIndex();
+
+    long getSampleTime();
+
+    /**
+     * @return 读取的字节数，没有更多样本时返回-1
+     */
+    int readSampleData(ByteBuffer buffer, int offset);
+
+    boolean advance();
+}
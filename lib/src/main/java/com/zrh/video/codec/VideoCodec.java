@@ -0,0 +1,59 @@
+package com.zrh.video.codec;
+
+import android.media.MediaFormat;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * 同步模式的编解码器，语义与{@link android.media.MediaCodec}一致，常量取值也相同
+ */
+public interface VideoCodec {
+    int INFO_TRY_AGAIN_LATER = -1;
+    int INFO_OUTPUT_FORMAT_CHANGED = -2;
+    int INFO_OUTPUT_BUFFERS_CHANGED = -3;
+
+    int BUFFER_FLAG_KEY_FRAME = CodecBufferInfo.BUFFER_FLAG_KEY_FRAME;
+    int BUFFER_FLAG_CODEC_CONFIG = CodecBufferInfo.BUFFER_FLAG_CODEC_CONFIG;
+    int BUFFER_FLAG_END_OF_STREAM = CodecBufferInfo.BUFFER_FLAG_END_OF_STREAM;
+
+    String getName();
+
+    void start();
+
+    int dequeueInputBuffer(long timeoutUs);
+
+    ByteBuffer getInputBuffer(int index);
+
+    void queueInputBuffer(int index, int offset, int size, long presentationTimeUs, int flags);
+
+    int dequeueOutputBuffer(CodecBufferInfo info, long timeoutUs);
+
+    ByteBuffer getOutputBuffer(int index);
+
+    /**
+     * @return 输出格式，在{@link #INFO_OUTPUT_FORMAT_CHANGED}之后有效
+     */
+    MediaFormat getOutputFormat();
+
+    /**
+     * @param render 解码到Surface时是否绘制该帧
+     */
+    void releaseOutputBuffer(int index, boolean render);
+
+    /**
+     * 编码器的输入来自Surface时结束输入
+     */
+    void signalEndOfInputStream();
+
+    /**
+     * 编码过程中修改码率
+     */
+    void setVideoBitrate(int bitrate);
+
+    void stop();
+
+    void release();
+}
@@ -0,0 +1,38 @@
+package com.zrh.video.filter;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * 颜色矩阵，格式与{@link android.graphics.ColorMatrix}相同：4x5按行排列，偏移量范围0-255
+ */
+public class ColorMatrixFilter implements VideoFilter {
+    private final float[] matrix;
+
+    public ColorMatrixFilter(float[] matrix) {
+        if (matrix == null || matrix.length != 20) {
+            throw new IllegalArgumentException("matrix must have 20 elements");
+        }
+        this.matrix = matrix.clone();
+    }
+
+    /**
+     * @param saturation 0为灰度，1为原图
+     */
+    public static ColorMatrixFilter saturation(float saturation) {
+        float r = 0.213f * (1 - saturation);
+        float g = 0.715f * (1 - saturation);
+        float b = 0.072f * (1 - saturation);
+        return new ColorMatrixFilter(new float[]{
+                r + saturation, g, b, 0, 0,
+                r, g + saturation, b, 0, 0,
+                r, g, b + saturation, 0, 0,
+                0, 0, 0, 1, 0
+        });
+    }
+
+    @Override
+    public void apply(FilterState state) {
+        state.applyColorMatrix(matrix);
+    }
+}
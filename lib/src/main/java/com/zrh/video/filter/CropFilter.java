@@ -0,0 +1,42 @@
+package com.zrh.video.filter;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * 裁剪，坐标为相对当前画面的比例，原点在左上角
+ */
+public class CropFilter implements VideoFilter {
+    private final float left;
+    private final float top;
+    private final float right;
+    private final float bottom;
+
+    public CropFilter(float left, float top, float right, float bottom) {
+        if (left < 0 || top < 0 || right > 1 || bottom > 1 || left >= right || top >= bottom) {
+            throw new IllegalArgumentException("invalid crop rect");
+        }
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    /**
+     * 按宽高比居中裁剪
+     */
+    public static CropFilter centerCrop(int width, int height, float aspectRatio) {
+        float ratio = (float) width / height;
+        if (ratio > aspectRatio) {
+            float scale = aspectRatio / ratio;
+            return new CropFilter((1 - scale) / 2, 0, (1 + scale) / 2, 1);
+        }
+        float scale = ratio / aspectRatio;
+        return new CropFilter(0, (1 - scale) / 2, 1, (1 + scale) / 2);
+    }
+
+    @Override
+    public void apply(FilterState state) {
+        state.crop(left, top, right, bottom);
+    }
+}
@@ -0,0 +1,181 @@
+package com.zrh.video.filter;
+
+import android.graphics.Bitmap;
+
+import com.zrh.video.mp4.OutputSurface;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * 滤镜链累积的绘制参数：裁剪和旋转合并为纹理坐标和顶点变换，颜色矩阵合并为一个矩阵，
+ * 叠加图片在同一次绘制中混合到输出上
+ */
+public class FilterState {
+    // 相对原画面的裁剪范围，原点在左上角
+    private float cropLeft = 0;
+    private float cropTop = 0;
+    private float cropRight = 1;
+    private float cropBottom = 1;
+    // 顺时针旋转角度
+    private int rotation = 0;
+    // 列优先的4x4矩阵和偏移，与GLSL的mat4一致
+    private final float[] colorMatrix = {
+            1, 0, 0, 0,
+            0, 1, 0, 0,
+            0, 0, 1, 0,
+            0, 0, 0, 1
+    };
+    private final float[] colorOffset = new float[4];
+    private boolean hasColorMatrix = false;
+    private final List<Overlay> overlays = new ArrayList<>();
+
+    /**
+     * 裁剪当前画面，坐标相对于前面的裁剪和旋转之后的画面
+     */
+    public void crop(float left, float top, float right, float bottom) {
+        float[] p1 = toSource(left, top);
+        float[] p2 = toSource(right, bottom);
+        float newLeft = Math.min(p1[0], p2[0]);
+        float newTop = Math.min(p1[1], p2[1]);
+        float newRight = Math.max(p1[0], p2[0]);
+        float newBottom = Math.max(p1[1], p2[1]);
+        cropLeft = newLeft;
+        cropTop = newTop;
+        cropRight = newRight;
+        cropBottom = newBottom;
+    }
+
+    public void rotate(int degrees) {
+        rotation = ((rotation + degrees) % 360 + 360) % 360;
+    }
+
+    /**
+     * @param matrix 4x5按行排列的颜色矩阵，作用在前面已有的颜色矩阵之后
+     */
+    public void applyColorMatrix(float[] matrix) {
+        float[] newMatrix = new float[16];
+        float[] newOffset = new float[4];
+        for (int row = 0; row < 4; row++) {
+            for (int col = 0; col < 4; col++) {
+                float sum = 0;
+                for (int k = 0; k < 4; k++) {
+                    sum += matrix[row * 5 + k] * colorMatrix[col * 4 + k];
+                }
+                newMatrix[col * 4 + row] = sum;
+            }
+            float offset = matrix[row * 5 + 4] / 255f;
+            for (int k = 0; k < 4; k++) {
+                offset += matrix[row * 5 + k] * colorOffset[k];
+            }
+            newOffset[row] = offset;
+        }
+        System.arraycopy(newMatrix, 0, colorMatrix, 0, 16);
+        System.arraycopy(newOffset, 0, colorOffset, 0, 4);
+        hasColorMatrix = true;
+    }
+
+    /**
+     * @param left 相对输出画面的位置，原点在左上角
+     */
+    public void addOverlay(Bitmap bitmap, float left, float top, float right, float bottom) {
+        overlays.add(new Overlay(bitmap, left, top, right, bottom));
+    }
+
+    /**
+     * @return 原画面经过裁剪和旋转后的宽高，保证为偶数
+     */
+    public int[] getOutputSize(int width, int height) {
+        int outputWidth = toEven(width * (cropRight - cropLeft));
+        int outputHeight = toEven(height * (cropBottom - cropTop));
+        if (rotation == 90 || rotation == 270) {
+            return new int[]{outputHeight, outputWidth};
+        }
+        return new int[]{outputWidth, outputHeight};
+    }
+
+    public float[] getCrop() {
+        return new float[]{cropLeft, cropTop, cropRight, cropBottom};
+    }
+
+    public int getRotation() {
+        return rotation;
+    }
+
+    public float[] getColorMatrix() {
+        return colorMatrix.clone();
+    }
+
+    public float[] getColorOffset() {
+        return colorOffset.clone();
+    }
+
+    /**
+     * 把参数设置到解码画面的渲染器，需要在GL线程调用
+     */
+    public void setup(OutputSurface surface) {
+        surface.setCrop(cropLeft, cropTop, cropRight, cropBottom);
+        surface.setRotation(rotation);
+        if (hasColorMatrix) {
+            surface.setColorMatrix(colorMatrix, colorOffset);
+        }
+        for (Overlay overlay : overlays) {
+            surface.addOverlay(overlay.bitmap, overlay.left, overlay.top, overlay.right, overlay.bottom);
+        }
+    }
+
+    /**
+     * 当前画面中的点对应到原画面中的位置
+     */
+    private float[] toSource(float x, float y) {
+        // 先撤销旋转
+        float u;
+        float v;
+        switch (rotation) {
+            case 90:
+                u = y;
+                v = 1 - x;
+                break;
+            case 180:
+                u = 1 - x;
+                v = 1 - y;
+                break;
+            case 270:
+                u = 1 - y;
+                v = x;
+                break;
+            default:
+                u = x;
+                v = y;
+                break;
+        }
+        // 再映射到已有的裁剪范围
+        return new float[]{
+                cropLeft + u * (cropRight - cropLeft),
+                cropTop + v * (cropBottom - cropTop)
+        };
+    }
+
+    private static int toEven(float value) {
+        return Math.max(Math.round(value / 2) * 2, 2);
+    }
+
+    private static class Overlay {
+        final Bitmap bitmap;
+        final float left;
+        final float top;
+        final float right;
+        final float bottom;
+
+        Overlay(Bitmap bitmap, float left, float top, float right, float bottom) {
+            this.bitmap = bitmap;
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.zrh.video.filter;
+
+import android.graphics.Bitmap;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * 图片叠加(水印)，位置为相对输出画面的比例，原点在左上角
+ */
+public class OverlayFilter implements VideoFilter {
+    private final Bitmap bitmap;
+    private final float left;
+    private final float top;
+    private final float right;
+    private final float bottom;
+
+    public OverlayFilter(Bitmap bitmap, float left, float top, float right, float bottom) {
+        if (bitmap == null) {
+            throw new NullPointerException();
+        }
+        this.bitmap = bitmap;
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    @Override
+    public void apply(FilterState state) {
+        state.addOverlay(bitmap, left, top, right, bottom);
+    }
+}
@@ -0,0 +1,26 @@
+package com.zrh.video.filter;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * 顺时针旋转画面，旋转直接写入像素，不依赖MP4的旋转矩阵
+ */
+public class RotateFilter implements VideoFilter {
+    private final int degrees;
+
+    /**
+     * @param degrees 0、90、180、270
+     */
+    public RotateFilter(int degrees) {
+        if (degrees % 90 != 0) {
+            throw new IllegalArgumentException("degrees must be a multiple of 90");
+        }
+        this.degrees = degrees;
+    }
+
+    @Override
+    public void apply(FilterState state) {
+        state.rotate(degrees);
+    }
+}
@@ -0,0 +1,11 @@
+package com.zrh.video.filter;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * 视频滤镜，按添加顺序把效果累积到{@link FilterState}，最终合并为一次绘制
+ */
+public interface VideoFilter {
+    void apply(FilterState state);
+}
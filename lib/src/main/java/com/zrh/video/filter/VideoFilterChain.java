@@ -0,0 +1,48 @@
+package com.zrh.video.filter;
+
+import com.zrh.video.mp4.OutputSurface;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author zrh
+ * @date 2026/10/19
+ * <p>
+ * 滤镜链，在压缩的同一次绘制中完成裁剪、旋转、水印和调色
+ */
+public class VideoFilterChain {
+    private final List<VideoFilter> filters = new ArrayList<>();
+
+    public VideoFilterChain add(VideoFilter filter) {
+        filters.add(filter);
+        return this;
+    }
+
+    public List<VideoFilter> getFilters() {
+        return filters;
+    }
+
+    public boolean isEmpty() {
+        return filters.isEmpty();
+    }
+
+    public FilterState createState() {
+        FilterState state = new FilterState();
+        for (VideoFilter filter : filters) {
+            filter.apply(state);
+        }
+        return state;
+    }
+
+    /**
+     * @return 原画面经过滤镜链后的宽高
+     */
+    public int[] getOutputSize(int width, int height) {
+        return createState().getOutputSize(width, height);
+    }
+
+    public void setup(OutputSurface surface) {
+        createState().setup(surface);
+    }
+}
@@ -0,0 +1,177 @@
+package com.zrh.video.mp4;
+
+import android.annotation.TargetApi;
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLExt;
+import android.opengl.EGLSurface;
+import android.os.Build;
+import android.view.Surface;
+
+/**
+ * 一条转码流水线共用的EGL14显示和上下文，InputSurface和OutputSurface在此之上按需创建surface。
+ * 传入其它EglCore的上下文时可以在多条流水线之间共享纹理
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+public class EglCore {
+    // 用于编码器的输入surface
+    public static final int FLAG_RECORDABLE = 0x01;
+    // 需要创建离屏的pbuffer surface
+    public static final int FLAG_PBUFFER = 0x02;
+
+    private static final int EGL_RECORDABLE_ANDROID = 0x3142;
+    private static final int EGL_OPENGL_ES2_BIT = 4;
+
+    private EGLDisplay mEGLDisplay = EGL14.EGL_NO_DISPLAY;
+    private EGLContext mEGLContext = EGL14.EGL_NO_CONTEXT;
+    private EGLConfig mEGLConfig = null;
+
+    public EglCore(int flags) {
+        this(null, flags);
+    }
+
+    /**
+     * @param sharedContext 共享纹理的上下文，为空时不共享
+     */
+    public EglCore(EGLContext sharedContext, int flags) {
+        if (sharedContext == null) {
+            sharedContext = EGL14.EGL_NO_CONTEXT;
+        }
+        mEGLDisplay = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
+        if (mEGLDisplay == EGL14.EGL_NO_DISPLAY) {
+            throw new RuntimeException("unable to get EGL14 display");
+        }
+        int[] version = new int[2];
+        if (!EGL14.eglInitialize(mEGLDisplay, version, 0, version, 1)) {
+            mEGLDisplay = EGL14.EGL_NO_DISPLAY;
+            throw new RuntimeException("unable to initialize EGL14");
+        }
+
+        int surfaceType = EGL14.EGL_WINDOW_BIT;
+        if ((flags & FLAG_PBUFFER) != 0) {
+            surfaceType |= EGL14.EGL_PBUFFER_BIT;
+        }
+        int[] attribList = {
+                EGL14.EGL_RED_SIZE, 8,
+                EGL14.EGL_GREEN_SIZE, 8,
+                EGL14.EGL_BLUE_SIZE, 8,
+                EGL14.EGL_ALPHA_SIZE, 8,
+                EGL14.EGL_SURFACE_TYPE, surfaceType,
+                EGL14.EGL_RENDERABLE_TYPE, EGL_OPENGL_ES2_BIT,
+                EGL14.EGL_NONE, 0,
+                EGL14.EGL_NONE
+        };
+        if ((flags & FLAG_RECORDABLE) != 0) {
+            attribList[attribList.length - 3] = EGL_RECORDABLE_ANDROID;
+            attribList[attribList.length - 2] = 1;
+        }
+        EGLConfig[] configs = new EGLConfig[1];
+        int[] numConfigs = new int[1];
+        if (!EGL14.eglChooseConfig(mEGLDisplay, attribList, 0, configs, 0, configs.length, numConfigs, 0)
+                || numConfigs[0] <= 0) {
+            throw new RuntimeException("unable to find RGB888 ES2 EGL config");
+        }
+        mEGLConfig = configs[0];
+
+        int[] contextAttribs = {
+                EGL14.EGL_CONTEXT_CLIENT_VERSION, 2,
+                EGL14.EGL_NONE
+        };
+        mEGLContext = EGL14.eglCreateContext(mEGLDisplay, mEGLConfig, sharedContext, contextAttribs, 0);
+        checkEglError("eglCreateContext");
+        if (mEGLContext == null || mEGLContext == EGL14.EGL_NO_CONTEXT) {
+            throw new RuntimeException("null context");
+        }
+    }
+
+    public EGLContext getContext() {
+        return mEGLContext;
+    }
+
+    public EGLSurface createWindowSurface(Surface surface) {
+        int[] surfaceAttribs = {
+                EGL14.EGL_NONE
+        };
+        EGLSurface eglSurface = EGL14.eglCreateWindowSurface(mEGLDisplay, mEGLConfig, surface, surfaceAttribs, 0);
+        checkEglError("eglCreateWindowSurface");
+        if (eglSurface == null) {
+            throw new RuntimeException("surface was null");
+        }
+        return eglSurface;
+    }
+
+    public EGLSurface createPbufferSurface(int width, int height) {
+        int[] surfaceAttribs = {
+                EGL14.EGL_WIDTH, width,
+                EGL14.EGL_HEIGHT, height,
+                EGL14.EGL_NONE
+        };
+        EGLSurface eglSurface = EGL14.eglCreatePbufferSurface(mEGLDisplay, mEGLConfig, surfaceAttribs, 0);
+        checkEglError("eglCreatePbufferSurface");
+        if (eglSurface == null) {
+            throw new RuntimeException("surface was null");
+        }
+        return eglSurface;
+    }
+
+    public int querySurface(EGLSurface eglSurface, int what) {
+        int[] value = new int[1];
+        EGL14.eglQuerySurface(mEGLDisplay, eglSurface, what, value, 0);
+        return value[0];
+    }
+
+    public void makeCurrent(EGLSurface eglSurface) {
+        if (!EGL14.eglMakeCurrent(mEGLDisplay, eglSurface, eglSurface, mEGLContext)) {
+            throw new RuntimeException("eglMakeCurrent failed");
+        }
+    }
+
+    public void makeNothingCurrent() {
+        EGL14.eglMakeCurrent(mEGLDisplay, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
+    }
+
+    public boolean isCurrent(EGLSurface eglSurface) {
+        return mEGLContext.equals(EGL14.eglGetCurrentContext())
+                && eglSurface.equals(EGL14.eglGetCurrentSurface(EGL14.EGL_DRAW));
+    }
+
+    public boolean swapBuffers(EGLSurface eglSurface) {
+        return EGL14.eglSwapBuffers(mEGLDisplay, eglSurface);
+    }
+
+    public void setPresentationTime(EGLSurface eglSurface, long nsecs) {
+        EGLExt.eglPresentationTimeANDROID(mEGLDisplay, eglSurface, nsecs);
+    }
+
+    public void releaseSurface(EGLSurface eglSurface) {
+        if (isCurrent(eglSurface)) {
+            makeNothingCurrent();
+        }
+        EGL14.eglDestroySurface(mEGLDisplay, eglSurface);
+    }
+
+    public void release() {
+        if (mEGLDisplay != EGL14.EGL_NO_DISPLAY) {
+            if (mEGLContext.equals(EGL14.eglGetCurrentContext())) {
+                makeNothingCurrent();
+            }
+            EGL14.eglDestroyContext(mEGLDisplay, mEGLContext);
+            EGL14.eglReleaseThread();
+        }
+        mEGLDisplay = EGL14.EGL_NO_DISPLAY;
+        mEGLContext = EGL14.EGL_NO_CONTEXT;
+        mEGLConfig = null;
+    }
+
+    private void checkEglError(String msg) {
+        boolean failed = false;
+        while (EGL14.eglGetError() != EGL14.EGL_SUCCESS) {
+            failed = true;
+        }
+        if (failed) {
+            throw new RuntimeException("EGL error encountered (see log): " + msg);
+        }
+    }
+}
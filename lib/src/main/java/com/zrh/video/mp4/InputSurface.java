@@ -2,101 +2,63 @@ package com.zrh.video.mp4;
 
 import android.annotation.TargetApi;
 import android.opengl.EGL14;
-import android.opengl.EGLConfig;
-import android.opengl.EGLContext;
-import android.opengl.EGLDisplay;
-import android.opengl.EGLExt;
 import android.opengl.EGLSurface;
+import android.opengl.GLES20;
 import android.os.Build;
 import android.view.Surface;
 
+import com.zrh.video.codec.FrameTarget;
+
 @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
-public class InputSurface {
-    private static final boolean VERBOSE = false;
-    private static final int EGL_RECORDABLE_ANDROID = 0x3142;
-    private static final int EGL_OPENGL_ES2_BIT = 4;
-    private EGLDisplay mEGLDisplay;
-    private EGLContext mEGLContext;
+public class InputSurface implements FrameTarget {
+    private EglCore mEglCore;
     private EGLSurface mEGLSurface;
     private Surface mSurface;
+    private boolean mOwnCore = false;
+    private int mWidth;
+    private int mHeight;
 
     public InputSurface(Surface surface) {
+        this(surface, null);
+    }
+
+    /**
+     * @param eglCore 流水线共用的EGL上下文，纹理可以在多个InputSurface之间共用，为空时自己创建
+     */
+    public InputSurface(Surface surface, EglCore eglCore) {
         if (surface == null) {
             throw new NullPointerException();
         }
         mSurface = surface;
-        eglSetup();
-    }
-
-    private void eglSetup() {
-        mEGLDisplay = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
-        if (mEGLDisplay == EGL14.EGL_NO_DISPLAY) {
-            throw new RuntimeException("unable to get EGL14 display");
-        }
-        int[] version = new int[2];
-        if (!EGL14.eglInitialize(mEGLDisplay, version, 0, version, 1)) {
-            mEGLDisplay = null;
-            throw new RuntimeException("unable to initialize EGL14");
-        }
-
-        int[] attribList = {
-                EGL14.EGL_RED_SIZE, 8,
-                EGL14.EGL_GREEN_SIZE, 8,
-                EGL14.EGL_BLUE_SIZE, 8,
-                EGL14.EGL_RENDERABLE_TYPE, EGL_OPENGL_ES2_BIT,
-                EGL_RECORDABLE_ANDROID, 1,
-                EGL14.EGL_NONE
-        };
-        EGLConfig[] configs = new EGLConfig[1];
-        int[] numConfigs = new int[1];
-        if (!EGL14.eglChooseConfig(mEGLDisplay, attribList, 0, configs, 0, configs.length,
-                numConfigs, 0)) {
-            throw new RuntimeException("unable to find RGB888+recordable ES2 EGL config");
-        }
-
-        int[] attrib_list = {
-                EGL14.EGL_CONTEXT_CLIENT_VERSION, 2,
-                EGL14.EGL_NONE
-        };
-
-        mEGLContext = EGL14.eglCreateContext(mEGLDisplay, configs[0], EGL14.EGL_NO_CONTEXT, attrib_list, 0);
-        checkEglError("eglCreateContext");
-        if (mEGLContext == null) {
-            throw new RuntimeException("null context");
-        }
-
-        int[] surfaceAttribs = {
-                EGL14.EGL_NONE
-        };
-        mEGLSurface = EGL14.eglCreateWindowSurface(mEGLDisplay, configs[0], mSurface,
-                surfaceAttribs, 0);
-        checkEglError("eglCreateWindowSurface");
-        if (mEGLSurface == null) {
-            throw new RuntimeException("surface was null");
+        if (eglCore == null) {
+            eglCore = new EglCore(EglCore.FLAG_RECORDABLE);
+            mOwnCore = true;
         }
+        mEglCore = eglCore;
+        mEGLSurface = mEglCore.createWindowSurface(surface);
+        mWidth = mEglCore.querySurface(mEGLSurface, EGL14.EGL_WIDTH);
+        mHeight = mEglCore.querySurface(mEGLSurface, EGL14.EGL_HEIGHT);
     }
 
     public void release() {
-        if (EGL14.eglGetCurrentContext().equals(mEGLContext)) {
-            EGL14.eglMakeCurrent(mEGLDisplay, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
+        mEglCore.releaseSurface(mEGLSurface);
+        if (mOwnCore) {
+            mEglCore.release();
         }
-        EGL14.eglDestroySurface(mEGLDisplay, mEGLSurface);
-        EGL14.eglDestroyContext(mEGLDisplay, mEGLContext);
         mSurface.release();
-        mEGLDisplay = null;
-        mEGLContext = null;
+        mEglCore = null;
         mEGLSurface = null;
         mSurface = null;
     }
 
     public void makeCurrent() {
-        if (!EGL14.eglMakeCurrent(mEGLDisplay, mEGLSurface, mEGLSurface, mEGLContext)) {
-            throw new RuntimeException("eglMakeCurrent failed");
-        }
+        mEglCore.makeCurrent(mEGLSurface);
+        // 多个surface共用上下文时视口不会随surface切换
+        GLES20.glViewport(0, 0, mWidth, mHeight);
     }
 
     public boolean swapBuffers() {
-        return EGL14.eglSwapBuffers(mEGLDisplay, mEGLSurface);
+        return mEglCore.swapBuffers(mEGLSurface);
     }
 
     public Surface getSurface() {
@@ -104,17 +66,6 @@ public class InputSurface {
     }
 
     public void setPresentationTime(long nsecs) {
-        EGLExt.eglPresentationTimeANDROID(mEGLDisplay, mEGLSurface, nsecs);
-    }
-
-    private void checkEglError(String msg) {
-        boolean failed = false;
-        int error;
-        while ((error = EGL14.eglGetError()) != EGL14.EGL_SUCCESS) {
-            failed = true;
-        }
-        if (failed) {
-            throw new RuntimeException("EGL error encountered (see log)");
-        }
+        mEglCore.setPresentationTime(mEGLSurface, nsecs);
     }
 }
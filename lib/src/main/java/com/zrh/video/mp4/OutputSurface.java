@@ -1,32 +1,33 @@
 package com.zrh.video.mp4;
 
 import android.annotation.TargetApi;
+import android.graphics.Bitmap;
 import android.graphics.SurfaceTexture;
+import android.opengl.EGLSurface;
 import android.opengl.GLES20;
 import android.view.Surface;
 
+import com.zrh.video.DirectBufferPool;
+import com.zrh.video.codec.FrameRenderer;
+
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-
-import javax.microedition.khronos.egl.EGL10;
-import javax.microedition.khronos.egl.EGLConfig;
-import javax.microedition.khronos.egl.EGLContext;
-import javax.microedition.khronos.egl.EGLDisplay;
-import javax.microedition.khronos.egl.EGLSurface;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 
 @TargetApi(16)
-public class OutputSurface implements SurfaceTexture.OnFrameAvailableListener {
+public class OutputSurface implements SurfaceTexture.OnFrameAvailableListener, FrameRenderer {
 
-    private static final int EGL_OPENGL_ES2_BIT = 4;
-    private static final int EGL_CONTEXT_CLIENT_VERSION = 0x3098;
-    private EGL10 mEGL;
-    private EGLDisplay mEGLDisplay = null;
-    private EGLContext mEGLContext = null;
+    private static final long FRAME_TIMEOUT_NS = TimeUnit.SECONDS.toNanos(5);
+    // 只有离屏读取画面时才创建自己的EGL上下文
+    private EglCore mEglCore = null;
     private EGLSurface mEGLSurface = null;
     private SurfaceTexture mSurfaceTexture;
     private Surface mSurface;
-    private final Object mFrameSyncObject = new Object();
-    private boolean mFrameAvailable;
+    // 帧到达的回调在其它线程，使用原子变量和park/unpark通知，不加锁
+    private final AtomicBoolean mFrameAvailable = new AtomicBoolean(false);
+    private volatile Thread mWaitingThread;
     private TextureRenderer mTextureRender;
     private int mWidth;
     private int mHeight;
@@ -40,9 +41,8 @@ public class OutputSurface implements SurfaceTexture.OnFrameAvailableListener {
         mWidth = width;
         mHeight = height;
         rotateRender = rotate;
-        mPixelBuf = ByteBuffer.allocateDirect(mWidth * mHeight * 4);
-        mPixelBuf.order(ByteOrder.LITTLE_ENDIAN);
-        eglSetup(width, height);
+        mEglCore = new EglCore(EglCore.FLAG_PBUFFER);
+        mEGLSurface = mEglCore.createPbufferSurface(width, height);
         makeCurrent();
         setup();
     }
@@ -59,105 +59,107 @@ public class OutputSurface implements SurfaceTexture.OnFrameAvailableListener {
         mSurface = new Surface(mSurfaceTexture);
     }
 
-    private void eglSetup(int width, int height) {
-        mEGL = (EGL10) EGLContext.getEGL();
-        mEGLDisplay = mEGL.eglGetDisplay(EGL10.EGL_DEFAULT_DISPLAY);
-
-        if (mEGLDisplay == EGL10.EGL_NO_DISPLAY) {
-            throw new RuntimeException("unable to get EGL10 display");
-        }
-
-        if (!mEGL.eglInitialize(mEGLDisplay, null)) {
-            mEGLDisplay = null;
-            throw new RuntimeException("unable to initialize EGL10");
-        }
-
-        int[] attribList = {
-                EGL10.EGL_RED_SIZE, 8,
-                EGL10.EGL_GREEN_SIZE, 8,
-                EGL10.EGL_BLUE_SIZE, 8,
-                EGL10.EGL_ALPHA_SIZE, 8,
-                EGL10.EGL_SURFACE_TYPE, EGL10.EGL_PBUFFER_BIT,
-                EGL10.EGL_RENDERABLE_TYPE, EGL_OPENGL_ES2_BIT,
-                EGL10.EGL_NONE
-        };
-        EGLConfig[] configs = new EGLConfig[1];
-        int[] numConfigs = new int[1];
-        if (!mEGL.eglChooseConfig(mEGLDisplay, attribList, configs, configs.length, numConfigs)) {
-            throw new RuntimeException("unable to find RGB888+pbuffer EGL config");
-        }
-        int[] attrib_list = {
-                EGL_CONTEXT_CLIENT_VERSION, 2,
-                EGL10.EGL_NONE
-        };
-        mEGLContext = mEGL.eglCreateContext(mEGLDisplay, configs[0], EGL10.EGL_NO_CONTEXT, attrib_list);
-        checkEglError("eglCreateContext");
-        if (mEGLContext == null) {
-            throw new RuntimeException("null context");
-        }
-        int[] surfaceAttribs = {
-                EGL10.EGL_WIDTH, width,
-                EGL10.EGL_HEIGHT, height,
-                EGL10.EGL_NONE
-        };
-        mEGLSurface = mEGL.eglCreatePbufferSurface(mEGLDisplay, configs[0], surfaceAttribs);
-        checkEglError("eglCreatePbufferSurface");
-        if (mEGLSurface == null) {
-            throw new RuntimeException("surface was null");
-        }
-    }
-
     public void release() {
-        if (mEGL != null) {
-            if (mEGL.eglGetCurrentContext().equals(mEGLContext)) {
-                mEGL.eglMakeCurrent(mEGLDisplay, EGL10.EGL_NO_SURFACE, EGL10.EGL_NO_SURFACE, EGL10.EGL_NO_CONTEXT);
-            }
-            mEGL.eglDestroySurface(mEGLDisplay, mEGLSurface);
-            mEGL.eglDestroyContext(mEGLDisplay, mEGLContext);
-        }
+        mTextureRender.release();
         mSurface.release();
-        mEGLDisplay = null;
-        mEGLContext = null;
+        mSurfaceTexture.release();
+        if (mEglCore != null) {
+            mEglCore.releaseSurface(mEGLSurface);
+            mEglCore.release();
+        }
+        mEglCore = null;
         mEGLSurface = null;
-        mEGL = null;
         mTextureRender = null;
         mSurface = null;
         mSurfaceTexture = null;
+        DirectBufferPool.getDefault().release(mPixelBuf);
+        mPixelBuf = null;
     }
 
     public void makeCurrent() {
-        if (mEGL == null) {
+        if (mEglCore == null) {
             throw new RuntimeException("not configured for makeCurrent");
         }
-        checkEglError("before makeCurrent");
-        if (!mEGL.eglMakeCurrent(mEGLDisplay, mEGLSurface, mEGLSurface, mEGLContext)) {
-            throw new RuntimeException("eglMakeCurrent failed");
-        }
+        mEglCore.makeCurrent(mEGLSurface);
     }
 
     public Surface getSurface() {
         return mSurface;
     }
 
+    /**
+     * @param filter TextureRenderer.FILTER_*
+     */
+    public void setScaleFilter(int filter) {
+        mTextureRender.setScaleFilter(filter);
+    }
+
+    /**
+     * 解码输出的宽高，用于计算缩放比例
+     */
+    public void setSourceSize(int width, int height) {
+        mTextureRender.setSourceSize(width, height);
+    }
+
+    /**
+     * @param toneMapping TextureRenderer.TONE_MAP_*
+     */
+    public void setToneMapping(int toneMapping) {
+        mTextureRender.setToneMapping(toneMapping);
+    }
+
+    /**
+     * 裁剪解码画面，坐标为0-1，原点在左上角
+     */
+    public void setCrop(float left, float top, float right, float bottom) {
+        mTextureRender.setCrop(left, top, right, bottom);
+    }
+
+    /**
+     * @param rotation 顺时针旋转角度，只支持90的倍数
+     */
+    public void setRotation(int rotation) {
+        mTextureRender.setRotation((360 - rotation) % 360);
+    }
+
+    /**
+     * @param matrix 列优先的4x4颜色矩阵
+     * @param offset 颜色偏移，范围0-1
+     */
+    public void setColorMatrix(float[] matrix, float[] offset) {
+        mTextureRender.setColorMatrix(matrix, offset);
+    }
+
+    /**
+     * 叠加图片，坐标相对于输出画面，需要在GL线程调用
+     */
+    public void addOverlay(Bitmap bitmap, float left, float top, float right, float bottom) {
+        mTextureRender.addOverlay(bitmap, left, top, right, bottom);
+    }
+
     public void changeFragmentShader(String fragmentShader) {
         mTextureRender.changeFragmentShader(fragmentShader);
     }
 
     public void awaitNewImage() {
-        final int TIMEOUT_MS = 5000;
-        synchronized (mFrameSyncObject) {
-            while (!mFrameAvailable) {
-                try {
-                    mFrameSyncObject.wait(TIMEOUT_MS);
-                    if (!mFrameAvailable) {
-                        throw new RuntimeException("Surface frame wait timed out");
-                    }
-                } catch (InterruptedException ie) {
-                    throw new RuntimeException(ie);
-                }
+        long deadline = System.nanoTime() + FRAME_TIMEOUT_NS;
+        while (!mFrameAvailable.compareAndSet(true, false)) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                mWaitingThread = null;
+                throw new RuntimeException("Surface frame wait timed out");
+            }
+            // 先登记等待线程再检查标志，回调一定能看到等待线程或者这里能看到标志
+            mWaitingThread = Thread.currentThread();
+            if (!mFrameAvailable.get()) {
+                LockSupport.parkNanos(this, remaining);
+            }
+            if (Thread.interrupted()) {
+                mWaitingThread = null;
+                throw new RuntimeException(new InterruptedException());
             }
-            mFrameAvailable = false;
         }
+        mWaitingThread = null;
         mTextureRender.checkGlError("before updateTexImage");
         mSurfaceTexture.updateTexImage();
     }
@@ -168,24 +170,21 @@ public class OutputSurface implements SurfaceTexture.OnFrameAvailableListener {
 
     @Override
     public void onFrameAvailable(SurfaceTexture st) {
-        synchronized (mFrameSyncObject) {
-            if (mFrameAvailable) {
-                throw new RuntimeException("mFrameAvailable already set, frame could be dropped");
-            }
-            mFrameAvailable = true;
-            mFrameSyncObject.notifyAll();
+        mFrameAvailable.set(true);
+        Thread waitingThread = mWaitingThread;
+        if (waitingThread != null) {
+            LockSupport.unpark(waitingThread);
         }
     }
 
     public ByteBuffer getFrame() {
+        // 只在需要读取画面时分配
+        if (mPixelBuf == null) {
+            mPixelBuf = DirectBufferPool.getDefault().acquire(mWidth * mHeight * 4);
+            mPixelBuf.order(ByteOrder.LITTLE_ENDIAN);
+        }
         mPixelBuf.rewind();
         GLES20.glReadPixels(0, 0, mWidth, mHeight, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, mPixelBuf);
         return mPixelBuf;
     }
-
-    private void checkEglError(String msg) {
-        if (mEGL.eglGetError() != EGL10.EGL_SUCCESS) {
-            throw new RuntimeException("EGL error encountered (see log)");
-        }
-    }
 }
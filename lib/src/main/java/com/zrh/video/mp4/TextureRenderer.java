@@ -1,17 +1,34 @@
 package com.zrh.video.mp4;
 
 import android.annotation.TargetApi;
+import android.graphics.Bitmap;
 import android.graphics.SurfaceTexture;
 import android.opengl.GLES11Ext;
 import android.opengl.GLES20;
+import android.opengl.GLUtils;
 import android.opengl.Matrix;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 @TargetApi(16)
 public class TextureRenderer {
+    // 缩放滤镜：最近邻、双线性(缩小时预模糊)、两次一维Catmull-Rom、两次一维Lanczos3
+    public static final int FILTER_NEAREST = 0;
+    public static final int FILTER_BILINEAR = 1;
+    public static final int FILTER_BICUBIC = 2;
+    public static final int FILTER_LANCZOS = 3;
+
+    // HDR转SDR的色调映射，按解码画面的传输特性选择
+    public static final int TONE_MAP_NONE = 0;
+    public static final int TONE_MAP_PQ = 1;
+    public static final int TONE_MAP_HLG = 2;
+
+    // 单侧最多的采样点数，缩小倍数更大时加大采样间隔，由双线性采样补足
+    private static final int MAX_TAPS = 8;
 
     private static final int FLOAT_SIZE_BYTES = 4;
     private static final int TRIANGLE_VERTICES_DATA_STRIDE_BYTES = 5 * FLOAT_SIZE_BYTES;
@@ -36,17 +53,150 @@ public class TextureRenderer {
             "  vTextureCoord = (uSTMatrix * aTextureCoord).xy;\n" +
             "}\n";
 
+    // 定义TONE_MAP_PQ或TONE_MAP_HLG时把BT.2020 PQ/HLG的颜色转换为BT.709 SDR，否则toneMap不做处理。
+    // 以203nit为SDR白点，HLG按1000nit显示器计算OOTF，高光按扩展Reinhard曲线压缩后使用BT.709的OETF
+    private static final String TONE_MAP_SHADER =
+            "#if defined(TONE_MAP_PQ) || defined(TONE_MAP_HLG)\n" +
+            "#ifdef GL_FRAGMENT_PRECISION_HIGH\n" +
+            "precision highp float;\n" +
+            "#endif\n" +
+            "const mat3 BT2020_TO_BT709 = mat3(1.6605, -0.1246, -0.0182, -0.5876, 1.1329, -0.1006, -0.0728, -0.0083, 1.1187);\n" +
+            "const vec3 BT2020_LUMA = vec3(0.2627, 0.6780, 0.0593);\n" +
+            "vec3 toLinear(vec3 e) {\n" +
+            "#ifdef TONE_MAP_PQ\n" +
+            "  vec3 p = pow(clamp(e, 0.0, 1.0), vec3(1.0 / 78.84375));\n" +
+            "  vec3 l = pow(max(p - 0.8359375, 0.0) / (18.8515625 - 18.6875 * p), vec3(1.0 / 0.1593017578125));\n" +
+            "  return l * (10000.0 / 203.0);\n" +
+            "#else\n" +
+            "  e = clamp(e, 0.0, 1.0);\n" +
+            "  vec3 low = e * e / 3.0;\n" +
+            "  vec3 high = (exp((e - 0.55991073) / 0.17883277) + 0.28466892) / 12.0;\n" +
+            "  vec3 l = mix(low, high, step(0.5, e));\n" +
+            "  l *= pow(max(dot(BT2020_LUMA, l), 1e-6), 0.2);\n" +
+            "  return l * (1000.0 / 203.0);\n" +
+            "#endif\n" +
+            "}\n" +
+            "vec4 toneMap(vec4 color) {\n" +
+            "  vec3 rgb = toLinear(color.rgb);\n" +
+            "  float y = dot(BT2020_LUMA, rgb);\n" +
+            "  const float peak = 1000.0 / 203.0;\n" +
+            "  float mapped = y * (1.0 + y / (peak * peak)) / (1.0 + y);\n" +
+            "  rgb *= y > 0.0 ? mapped / y : 0.0;\n" +
+            "  rgb = clamp(BT2020_TO_BT709 * rgb, 0.0, 1.0);\n" +
+            "  vec3 e = mix(4.5 * rgb, 1.099 * pow(rgb, vec3(0.45)) - 0.099, step(0.018, rgb));\n" +
+            "  return vec4(e, color.a);\n" +
+            "}\n" +
+            "#else\n" +
+            "vec4 toneMap(vec4 color) {\n" +
+            "  return color;\n" +
+            "}\n" +
+            "#endif\n";
+
     private static final String FRAGMENT_SHADER =
             "#extension GL_OES_EGL_image_external : require\n" +
             "precision mediump float;\n" +
             "varying vec2 vTextureCoord;\n" +
             "uniform samplerExternalOES sTexture;\n" +
+            "uniform mat4 uColorMatrix;\n" +
+            "uniform vec4 uColorOffset;\n" +
+            TONE_MAP_SHADER +
+            "void main() {\n" +
+            "  gl_FragColor = uColorMatrix * toneMap(texture2D(sTexture, vTextureCoord)) + uColorOffset;\n" +
+            "}\n";
+
+    private static final String SCALE_SHADER =
+            "varying vec2 vTextureCoord;\n" +
+            "uniform vec2 uStep;\n" +
+            "uniform float uTapScale;\n" +
+            "uniform int uTaps;\n" +
+            "uniform mat4 uColorMatrix;\n" +
+            "uniform vec4 uColorOffset;\n" +
+            TONE_MAP_SHADER +
+            "float kernel(float x) {\n" +
+            "  x = abs(x);\n" +
+            "#ifdef LANCZOS\n" +
+            "  if (x < 0.0001) return 1.0;\n" +
+            "  if (x >= 3.0) return 0.0;\n" +
+            "  float px = 3.14159265 * x;\n" +
+            "  return 3.0 * sin(px) * sin(px / 3.0) / (px * px);\n" +
+            "#else\n" +
+            "  if (x < 1.0) return (1.5 * x - 2.5) * x * x + 1.0;\n" +
+            "  if (x < 2.0) return ((-0.5 * x + 2.5) * x - 4.0) * x + 2.0;\n" +
+            "  return 0.0;\n" +
+            "#endif\n" +
+            "}\n" +
+            "void main() {\n" +
+            "  vec4 sum = texture2D(sTexture, vTextureCoord);\n" +
+            "  float total = 1.0;\n" +
+            "  for (int i = 1; i <= " + MAX_TAPS + "; i++) {\n" +
+            "    if (i > uTaps) break;\n" +
+            "    float w = kernel(float(i) * uTapScale);\n" +
+            "    vec2 offset = uStep * float(i);\n" +
+            "    sum += w * (texture2D(sTexture, vTextureCoord + offset) + texture2D(sTexture, vTextureCoord - offset));\n" +
+            "    total += 2.0 * w;\n" +
+            "  }\n" +
+            "  gl_FragColor = uColorMatrix * toneMap(sum / total) + uColorOffset;\n" +
+            "}\n";
+
+    // ES 2.0的片元着色器不一定支持highp，不支持时使用mediump
+    private static final String HIGH_PRECISION =
+            "#ifdef GL_FRAGMENT_PRECISION_HIGH\n" +
+            "precision highp float;\n" +
+            "#else\n" +
+            "precision mediump float;\n" +
+            "#endif\n";
+
+    // 缩小时在一个输出像素覆盖的范围内取4个双线性采样的平均值
+    private static final String BILINEAR_SHADER =
+            "#extension GL_OES_EGL_image_external : require\n" +
+            HIGH_PRECISION +
+            "varying vec2 vTextureCoord;\n" +
+            "uniform samplerExternalOES sTexture;\n" +
+            "uniform vec2 uStepX;\n" +
+            "uniform vec2 uStepY;\n" +
+            "uniform mat4 uColorMatrix;\n" +
+            "uniform vec4 uColorOffset;\n" +
+            TONE_MAP_SHADER +
+            "void main() {\n" +
+            "  vec4 color = 0.25 * (texture2D(sTexture, vTextureCoord - uStepX - uStepY)\n" +
+            "      + texture2D(sTexture, vTextureCoord + uStepX - uStepY)\n" +
+            "      + texture2D(sTexture, vTextureCoord - uStepX + uStepY)\n" +
+            "      + texture2D(sTexture, vTextureCoord + uStepX + uStepY));\n" +
+            "  gl_FragColor = uColorMatrix * toneMap(color) + uColorOffset;\n" +
+            "}\n";
+
+    private static final String OVERLAY_VERTEX_SHADER =
+            "attribute vec4 aPosition;\n" +
+            "attribute vec4 aTextureCoord;\n" +
+            "varying vec2 vTextureCoord;\n" +
+            "void main() {\n" +
+            "  gl_Position = aPosition;\n" +
+            "  vTextureCoord = aTextureCoord.xy;\n" +
+            "}\n";
+
+    private static final String OVERLAY_FRAGMENT_SHADER =
+            "precision mediump float;\n" +
+            "varying vec2 vTextureCoord;\n" +
+            "uniform sampler2D sTexture;\n" +
             "void main() {\n" +
             "  gl_FragColor = texture2D(sTexture, vTextureCoord);\n" +
             "}\n";
 
+    private static final float[] IDENTITY_MATRIX = new float[16];
+    private static final float[] ZERO_OFFSET = new float[4];
+
+    static {
+        Matrix.setIdentityM(IDENTITY_MATRIX, 0);
+    }
+
     private float[] mMVPMatrix = new float[16];
     private float[] mSTMatrix = new float[16];
+    private float[] mCropMatrix = new float[16];
+    private float[] mTexMatrix = new float[16];
+    private float[] mColorMatrix = new float[16];
+    private float[] mColorOffset = new float[4];
+    private int muColorMatrixHandle;
+    private int muColorOffsetHandle;
     private int mProgram;
     private int mTextureID = -12345;
     private int muMVPMatrixHandle;
@@ -55,17 +205,126 @@ public class TextureRenderer {
     private int maTextureHandle;
     private int rotationAngle = 0;
 
+    private int mScaleFilter = FILTER_NEAREST;
+    private int mToneMapping = TONE_MAP_NONE;
+    // 解码画面的缓冲区大小
+    private int mSourceWidth;
+    private int mSourceHeight;
+    private int[] mViewport = new int[4];
+    private ScaleProgram mBilinearProgram;
+    private ScaleProgram mHorizontalProgram;
+    private ScaleProgram mVerticalProgram;
+    private final List<FrameBuffer> mFrameBuffers = new ArrayList<>();
+    private int mOverlayProgram;
+    private int maOverlayPositionHandle;
+    private int maOverlayTextureHandle;
+    private final List<Overlay> mOverlays = new ArrayList<>();
+
     public TextureRenderer(int rotation) {
         rotationAngle = rotation;
         mTriangleVertices = ByteBuffer.allocateDirect(mTriangleVerticesData.length * FLOAT_SIZE_BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
         mTriangleVertices.put(mTriangleVerticesData).position(0);
         Matrix.setIdentityM(mSTMatrix, 0);
+        Matrix.setIdentityM(mCropMatrix, 0);
+        Matrix.setIdentityM(mColorMatrix, 0);
     }
 
     public int getTextureId() {
         return mTextureID;
     }
 
+    /**
+     * 需要在surfaceCreated之后、绘制之前调用
+     */
+    public void setScaleFilter(int filter) {
+        if (filter == mScaleFilter) {
+            return;
+        }
+        mScaleFilter = filter;
+        releaseScalePrograms();
+        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, mTextureID);
+        GLES20.glTexParameterf(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MIN_FILTER,
+                filter == FILTER_NEAREST ? GLES20.GL_NEAREST : GLES20.GL_LINEAR);
+        checkGlError("glTexParameter");
+    }
+
+    /**
+     * 解码画面为HDR时转换为SDR，需要在surfaceCreated之后、绘制之前调用
+     *
+     * @param toneMapping TONE_MAP_*
+     */
+    public void setToneMapping(int toneMapping) {
+        if (toneMapping == mToneMapping) {
+            return;
+        }
+        mToneMapping = toneMapping;
+        releaseScalePrograms();
+        GLES20.glDeleteProgram(mProgram);
+        createProgram();
+    }
+
+    private String getToneMapDefine() {
+        switch (mToneMapping) {
+            case TONE_MAP_PQ:
+                return "#define TONE_MAP_PQ\n";
+            case TONE_MAP_HLG:
+                return "#define TONE_MAP_HLG\n";
+            default:
+                return "";
+        }
+    }
+
+    /**
+     * @param left 相对画面的裁剪范围，原点在左上角
+     */
+    public void setCrop(float left, float top, float right, float bottom) {
+        Matrix.setIdentityM(mCropMatrix, 0);
+        Matrix.translateM(mCropMatrix, 0, left, 1 - bottom, 0);
+        Matrix.scaleM(mCropMatrix, 0, right - left, bottom - top, 1);
+    }
+
+    /**
+     * @param rotation 逆时针旋转角度
+     */
+    public void setRotation(int rotation) {
+        rotationAngle = rotation;
+        Matrix.setIdentityM(mMVPMatrix, 0);
+        if (rotationAngle != 0) {
+            Matrix.rotateM(mMVPMatrix, 0, rotationAngle, 0, 0, 1);
+        }
+    }
+
+    /**
+     * @param matrix 列优先的4x4颜色矩阵
+     * @param offset 颜色偏移，范围0-1
+     */
+    public void setColorMatrix(float[] matrix, float[] offset) {
+        System.arraycopy(matrix, 0, mColorMatrix, 0, 16);
+        System.arraycopy(offset, 0, mColorOffset, 0, 4);
+    }
+
+    /**
+     * 叠加图片，需要在GL线程调用，图片在调用时上传为纹理
+     *
+     * @param left 相对输出画面的位置，原点在左上角
+     */
+    public void addOverlay(Bitmap bitmap, float left, float top, float right, float bottom) {
+        if (mOverlayProgram == 0) {
+            mOverlayProgram = createProgram(OVERLAY_VERTEX_SHADER, OVERLAY_FRAGMENT_SHADER);
+            if (mOverlayProgram == 0) {
+                throw new RuntimeException("failed creating program");
+            }
+            maOverlayPositionHandle = GLES20.glGetAttribLocation(mOverlayProgram, "aPosition");
+            maOverlayTextureHandle = GLES20.glGetAttribLocation(mOverlayProgram, "aTextureCoord");
+        }
+        mOverlays.add(new Overlay(bitmap, left, top, right, bottom));
+    }
+
+    public void setSourceSize(int width, int height) {
+        mSourceWidth = width;
+        mSourceHeight = height;
+    }
+
     public void drawFrame(SurfaceTexture st, boolean invert) {
         checkGlError("onDrawFrame start");
         st.getTransformMatrix(mSTMatrix);
@@ -74,6 +333,16 @@ public class TextureRenderer {
             mSTMatrix[5] = -mSTMatrix[5];
             mSTMatrix[13] = 1.0f - mSTMatrix[13];
         }
+        // 裁剪作用在画面坐标上，再由纹理变换矩阵映射到纹理
+        Matrix.multiplyMM(mTexMatrix, 0, mSTMatrix, 0, mCropMatrix, 0);
+
+        if (mScaleFilter != FILTER_NEAREST && mSourceWidth > 0 && mSourceHeight > 0) {
+            GLES20.glGetIntegerv(GLES20.GL_VIEWPORT, mViewport, 0);
+            if (drawScaledFrame(mViewport[2], mViewport[3])) {
+                drawOverlays();
+                return;
+            }
+        }
 
         GLES20.glUseProgram(mProgram);
         checkGlError("glUseProgram");
@@ -89,15 +358,201 @@ public class TextureRenderer {
         checkGlError("glVertexAttribPointer maTextureHandle");
         GLES20.glEnableVertexAttribArray(maTextureHandle);
         checkGlError("glEnableVertexAttribArray maTextureHandle");
-        GLES20.glUniformMatrix4fv(muSTMatrixHandle, 1, false, mSTMatrix, 0);
+        GLES20.glUniformMatrix4fv(muSTMatrixHandle, 1, false, mTexMatrix, 0);
         GLES20.glUniformMatrix4fv(muMVPMatrixHandle, 1, false, mMVPMatrix, 0);
+        GLES20.glUniformMatrix4fv(muColorMatrixHandle, 1, false, mColorMatrix, 0);
+        GLES20.glUniform4fv(muColorOffsetHandle, 1, mColorOffset, 0);
         GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
         checkGlError("glDrawArrays");
-        GLES20.glFinish();
+        drawOverlays();
+        // 不调用glFinish，eglSwapBuffers会保证绘制完成后编码器才读取画面
+    }
+
+    /**
+     * 在画面之上按alpha混合叠加图片，图片需要是预乘alpha的
+     */
+    private void drawOverlays() {
+        if (mOverlays.isEmpty()) {
+            return;
+        }
+        GLES20.glUseProgram(mOverlayProgram);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glEnable(GLES20.GL_BLEND);
+        GLES20.glBlendFunc(GLES20.GL_ONE, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+        for (Overlay overlay : mOverlays) {
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, overlay.textureId);
+            overlay.vertices.position(TRIANGLE_VERTICES_DATA_POS_OFFSET);
+            GLES20.glVertexAttribPointer(maOverlayPositionHandle, 3, GLES20.GL_FLOAT, false, TRIANGLE_VERTICES_DATA_STRIDE_BYTES, overlay.vertices);
+            GLES20.glEnableVertexAttribArray(maOverlayPositionHandle);
+            overlay.vertices.position(TRIANGLE_VERTICES_DATA_UV_OFFSET);
+            GLES20.glVertexAttribPointer(maOverlayTextureHandle, 2, GLES20.GL_FLOAT, false, TRIANGLE_VERTICES_DATA_STRIDE_BYTES, overlay.vertices);
+            GLES20.glEnableVertexAttribArray(maOverlayTextureHandle);
+            GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+        }
+        GLES20.glDisable(GLES20.GL_BLEND);
+        checkGlError("draw overlays");
+    }
+
+    /**
+     * 按缩放比例滤波后绘制到当前视口
+     *
+     * @return 不需要缩小时返回false，使用默认方式绘制
+     */
+    private boolean drawScaledFrame(int outputWidth, int outputHeight) {
+        // 旋转90/270度时，画面坐标系中的宽高和输出相反
+        boolean swap = rotationAngle == 90 || rotationAngle == 270;
+        int dstWidth = swap ? outputHeight : outputWidth;
+        int dstHeight = swap ? outputWidth : outputHeight;
+        // 纹理变换矩阵中可能包含视频的旋转，按矩阵算出画面水平和垂直方向在纹理中对应的源像素数
+        float srcWidth = length(mTexMatrix[0] * mSourceWidth, mTexMatrix[1] * mSourceHeight);
+        float srcHeight = length(mTexMatrix[4] * mSourceWidth, mTexMatrix[5] * mSourceHeight);
+        if (srcWidth <= 0 || srcHeight <= 0 || dstWidth <= 0 || dstHeight <= 0
+                || (srcWidth <= dstWidth && srcHeight <= dstHeight)) {
+            return false;
+        }
+        // 纹理坐标中沿画面水平/垂直方向移动一个源像素的偏移
+        float stepXs = mTexMatrix[0] / srcWidth;
+        float stepXt = mTexMatrix[1] / srcWidth;
+        float stepYs = mTexMatrix[4] / srcHeight;
+        float stepYt = mTexMatrix[5] / srcHeight;
+
+        if (mScaleFilter == FILTER_BILINEAR) {
+            if (mBilinearProgram == null) {
+                mBilinearProgram = createScaleProgram(getToneMapDefine() + BILINEAR_SHADER);
+                if (mBilinearProgram == null) {
+                    return false;
+                }
+            }
+            // 采样点位于输出像素覆盖范围的1/4处
+            float scaleX = Math.max(srcWidth / dstWidth, 1) / 4;
+            float scaleY = Math.max(srcHeight / dstHeight, 1) / 4;
+            mBilinearProgram.use(mTextureID, GLES11Ext.GL_TEXTURE_EXTERNAL_OES, mMVPMatrix, mTexMatrix);
+            mBilinearProgram.setColor(mColorMatrix, mColorOffset);
+            GLES20.glUniform2f(mBilinearProgram.uStepXHandle, stepXs * scaleX, stepXt * scaleX);
+            GLES20.glUniform2f(mBilinearProgram.uStepYHandle, stepYs * scaleY, stepYt * scaleY);
+            mBilinearProgram.draw(mTriangleVertices);
+            return true;
+        }
+
+        if (mHorizontalProgram == null) {
+            String define = mScaleFilter == FILTER_LANCZOS ? "#define LANCZOS\n" : "";
+            // 色调映射在采样解码画面的第一遍完成，中间纹理保存的已是SDR颜色
+            ScaleProgram horizontalProgram = createScaleProgram(getToneMapDefine()
+                    + "#extension GL_OES_EGL_image_external : require\n"
+                    + HIGH_PRECISION + define
+                    + "uniform samplerExternalOES sTexture;\n" + SCALE_SHADER);
+            if (horizontalProgram == null) {
+                return false;
+            }
+            ScaleProgram verticalProgram = createScaleProgram(HIGH_PRECISION + define
+                    + "uniform sampler2D sTexture;\n" + SCALE_SHADER);
+            if (verticalProgram == null) {
+                GLES20.glDeleteProgram(horizontalProgram.program);
+                return false;
+            }
+            mHorizontalProgram = horizontalProgram;
+            mVerticalProgram = verticalProgram;
+        }
+        float radius = mScaleFilter == FILTER_LANCZOS ? 3 : 2;
+
+        // 第一遍只缩放水平方向，结果保存在输出宽度x源高度的中间纹理中
+        FrameBuffer frameBuffer = getFrameBuffer(dstWidth, Math.round(srcHeight));
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, frameBuffer.framebufferId);
+        GLES20.glViewport(0, 0, frameBuffer.width, frameBuffer.height);
+        mHorizontalProgram.use(mTextureID, GLES11Ext.GL_TEXTURE_EXTERNAL_OES, IDENTITY_MATRIX, mTexMatrix);
+        // 颜色矩阵只在最后一遍处理
+        mHorizontalProgram.setColor(IDENTITY_MATRIX, ZERO_OFFSET);
+        mHorizontalProgram.setKernel(stepXs, stepXt, srcWidth / dstWidth, radius);
+        mHorizontalProgram.draw(mTriangleVertices);
+
+        // 第二遍缩放垂直方向并绘制到输出
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        GLES20.glViewport(mViewport[0], mViewport[1], mViewport[2], mViewport[3]);
+        mVerticalProgram.use(frameBuffer.textureId, GLES20.GL_TEXTURE_2D, mMVPMatrix, IDENTITY_MATRIX);
+        mVerticalProgram.setColor(mColorMatrix, mColorOffset);
+        mVerticalProgram.setKernel(0, 1f / frameBuffer.height, srcHeight / dstHeight, radius);
+        mVerticalProgram.draw(mTriangleVertices);
+        return true;
+    }
+
+    /**
+     * GPU无法编译缩放着色器时退回最近邻采样，返回null
+     */
+    private ScaleProgram createScaleProgram(String fragmentShader) {
+        try {
+            return new ScaleProgram(fragmentShader);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            setScaleFilter(FILTER_NEAREST);
+            return null;
+        }
+    }
+
+    private FrameBuffer getFrameBuffer(int width, int height) {
+        for (FrameBuffer frameBuffer : mFrameBuffers) {
+            if (frameBuffer.width == width && frameBuffer.height == height) {
+                return frameBuffer;
+            }
+        }
+        FrameBuffer frameBuffer = new FrameBuffer(width, height);
+        mFrameBuffers.add(frameBuffer);
+        return frameBuffer;
+    }
+
+    private void releaseScalePrograms() {
+        if (mBilinearProgram != null) {
+            GLES20.glDeleteProgram(mBilinearProgram.program);
+            mBilinearProgram = null;
+        }
+        if (mHorizontalProgram != null) {
+            GLES20.glDeleteProgram(mHorizontalProgram.program);
+            GLES20.glDeleteProgram(mVerticalProgram.program);
+            mHorizontalProgram = null;
+            mVerticalProgram = null;
+        }
+    }
+
+    public void release() {
+        releaseScalePrograms();
+        for (FrameBuffer frameBuffer : mFrameBuffers) {
+            frameBuffer.release();
+        }
+        mFrameBuffers.clear();
+        for (Overlay overlay : mOverlays) {
+            overlay.release();
+        }
+        mOverlays.clear();
+        if (mOverlayProgram != 0) {
+            GLES20.glDeleteProgram(mOverlayProgram);
+            mOverlayProgram = 0;
+        }
+    }
+
+    private static float length(float x, float y) {
+        return (float) Math.sqrt(x * x + y * y);
     }
 
     public void surfaceCreated() {
-        mProgram = createProgram(VERTEX_SHADER, FRAGMENT_SHADER);
+        createProgram();
+        int[] textures = new int[1];
+        GLES20.glGenTextures(1, textures, 0);
+        mTextureID = textures[0];
+        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, mTextureID);
+        checkGlError("glBindTexture mTextureID");
+        GLES20.glTexParameterf(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
+        GLES20.glTexParameterf(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        checkGlError("glTexParameter");
+
+        Matrix.setIdentityM(mMVPMatrix, 0);
+        if (rotationAngle != 0) {
+            Matrix.rotateM(mMVPMatrix, 0, rotationAngle, 0, 0, 1);
+        }
+    }
+
+    private void createProgram() {
+        mProgram = createProgram(VERTEX_SHADER, getToneMapDefine() + FRAGMENT_SHADER);
         if (mProgram == 0) {
             throw new RuntimeException("failed creating program");
         }
@@ -121,21 +576,7 @@ public class TextureRenderer {
         if (muSTMatrixHandle == -1) {
             throw new RuntimeException("Could not get attrib location for uSTMatrix");
         }
-        int[] textures = new int[1];
-        GLES20.glGenTextures(1, textures, 0);
-        mTextureID = textures[0];
-        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, mTextureID);
-        checkGlError("glBindTexture mTextureID");
-        GLES20.glTexParameterf(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
-        GLES20.glTexParameterf(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
-        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
-        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
-        checkGlError("glTexParameter");
-
-        Matrix.setIdentityM(mMVPMatrix, 0);
-        if (rotationAngle != 0) {
-            Matrix.rotateM(mMVPMatrix, 0, rotationAngle, 0, 0, 1);
-        }
+        getColorHandles();
     }
 
     public void changeFragmentShader(String fragmentShader) {
@@ -144,6 +585,14 @@ public class TextureRenderer {
         if (mProgram == 0) {
             throw new RuntimeException("failed creating program");
         }
+        getColorHandles();
+    }
+
+    // 自定义的片元着色器可以没有颜色矩阵，此时句柄为-1，设置时会被忽略
+    private void getColorHandles() {
+        muColorMatrixHandle = GLES20.glGetUniformLocation(mProgram, "uColorMatrix");
+        muColorOffsetHandle = GLES20.glGetUniformLocation(mProgram, "uColorOffset");
+        checkGlError("glGetUniformLocation uColorMatrix");
     }
 
     private int loadShader(int shaderType, String source) {
@@ -194,4 +643,152 @@ public class TextureRenderer {
             throw new RuntimeException(op + ": glError " + error);
         }
     }
+
+    private class ScaleProgram {
+        final int program;
+        final int aPositionHandle;
+        final int aTextureHandle;
+        final int uMVPMatrixHandle;
+        final int uSTMatrixHandle;
+        final int uStepHandle;
+        final int uStepXHandle;
+        final int uStepYHandle;
+        final int uTapScaleHandle;
+        final int uTapsHandle;
+        final int uColorMatrixHandle;
+        final int uColorOffsetHandle;
+
+        ScaleProgram(String fragmentShader) {
+            program = createProgram(VERTEX_SHADER, fragmentShader);
+            if (program == 0) {
+                throw new RuntimeException("failed creating program");
+            }
+            aPositionHandle = GLES20.glGetAttribLocation(program, "aPosition");
+            aTextureHandle = GLES20.glGetAttribLocation(program, "aTextureCoord");
+            uMVPMatrixHandle = GLES20.glGetUniformLocation(program, "uMVPMatrix");
+            uSTMatrixHandle = GLES20.glGetUniformLocation(program, "uSTMatrix");
+            uStepHandle = GLES20.glGetUniformLocation(program, "uStep");
+            uStepXHandle = GLES20.glGetUniformLocation(program, "uStepX");
+            uStepYHandle = GLES20.glGetUniformLocation(program, "uStepY");
+            uTapScaleHandle = GLES20.glGetUniformLocation(program, "uTapScale");
+            uTapsHandle = GLES20.glGetUniformLocation(program, "uTaps");
+            uColorMatrixHandle = GLES20.glGetUniformLocation(program, "uColorMatrix");
+            uColorOffsetHandle = GLES20.glGetUniformLocation(program, "uColorOffset");
+            checkGlError("create scale program");
+        }
+
+        void use(int textureId, int target, float[] mvpMatrix, float[] stMatrix) {
+            GLES20.glUseProgram(program);
+            GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+            GLES20.glBindTexture(target, textureId);
+            GLES20.glUniformMatrix4fv(uMVPMatrixHandle, 1, false, mvpMatrix, 0);
+            GLES20.glUniformMatrix4fv(uSTMatrixHandle, 1, false, stMatrix, 0);
+        }
+
+        void setColor(float[] colorMatrix, float[] colorOffset) {
+            GLES20.glUniformMatrix4fv(uColorMatrixHandle, 1, false, colorMatrix, 0);
+            GLES20.glUniform4fv(uColorOffsetHandle, 1, colorOffset, 0);
+        }
+
+        /**
+         * @param stepS  纹理坐标中一个源像素的偏移
+         * @param ratio  源尺寸/目标尺寸
+         * @param radius 滤波核的半径
+         */
+        void setKernel(float stepS, float stepT, float ratio, float radius) {
+            // 缩小时按比例展宽滤波核，放大时按插值处理
+            float scale = Math.max(ratio, 1);
+            float support = radius * scale;
+            int taps = (int) Math.ceil(support);
+            float tapStep = 1;
+            if (taps > MAX_TAPS) {
+                tapStep = support / MAX_TAPS;
+                taps = MAX_TAPS;
+            }
+            GLES20.glUniform2f(uStepHandle, stepS * tapStep, stepT * tapStep);
+            GLES20.glUniform1f(uTapScaleHandle, tapStep / scale);
+            GLES20.glUniform1i(uTapsHandle, taps);
+        }
+
+        void draw(FloatBuffer vertices) {
+            vertices.position(TRIANGLE_VERTICES_DATA_POS_OFFSET);
+            GLES20.glVertexAttribPointer(aPositionHandle, 3, GLES20.GL_FLOAT, false, TRIANGLE_VERTICES_DATA_STRIDE_BYTES, vertices);
+            GLES20.glEnableVertexAttribArray(aPositionHandle);
+            vertices.position(TRIANGLE_VERTICES_DATA_UV_OFFSET);
+            GLES20.glVertexAttribPointer(aTextureHandle, 2, GLES20.GL_FLOAT, false, TRIANGLE_VERTICES_DATA_STRIDE_BYTES, vertices);
+            GLES20.glEnableVertexAttribArray(aTextureHandle);
+            GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+            checkGlError("glDrawArrays");
+        }
+    }
+
+    private class FrameBuffer {
+        final int width;
+        final int height;
+        final int textureId;
+        final int framebufferId;
+
+        FrameBuffer(int width, int height) {
+            this.width = width;
+            this.height = height;
+            int[] ids = new int[1];
+            GLES20.glGenTextures(1, ids, 0);
+            textureId = ids[0];
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureId);
+            GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, width, height, 0, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, null);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+            GLES20.glGenFramebuffers(1, ids, 0);
+            framebufferId = ids[0];
+            GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, framebufferId);
+            GLES20.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, GLES20.GL_COLOR_ATTACHMENT0, GLES20.GL_TEXTURE_2D, textureId, 0);
+            int status = GLES20.glCheckFramebufferStatus(GLES20.GL_FRAMEBUFFER);
+            GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+            if (status != GLES20.GL_FRAMEBUFFER_COMPLETE) {
+                throw new RuntimeException("framebuffer not complete: " + status);
+            }
+            checkGlError("create framebuffer");
+        }
+
+        void release() {
+            GLES20.glDeleteFramebuffers(1, new int[]{framebufferId}, 0);
+            GLES20.glDeleteTextures(1, new int[]{textureId}, 0);
+        }
+    }
+
+    private static class Overlay {
+        final int textureId;
+        final FloatBuffer vertices;
+
+        Overlay(Bitmap bitmap, float left, float top, float right, float bottom) {
+            int[] ids = new int[1];
+            GLES20.glGenTextures(1, ids, 0);
+            textureId = ids[0];
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureId);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+            GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, bitmap, 0);
+            // 位图第一行在纹理坐标t=0处，对应画面顶部
+            float x1 = left * 2 - 1;
+            float x2 = right * 2 - 1;
+            float y1 = 1 - top * 2;
+            float y2 = 1 - bottom * 2;
+            float[] data = {
+                    x1, y2, 0, 0.f, 1.f,
+                    x2, y2, 0, 1.f, 1.f,
+                    x1, y1, 0, 0.f, 0.f,
+                    x2, y1, 0, 1.f, 0.f,
+            };
+            vertices = ByteBuffer.allocateDirect(data.length * FLOAT_SIZE_BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+            vertices.put(data).position(0);
+        }
+
+        void release() {
+            GLES20.glDeleteTextures(1, new int[]{textureId}, 0);
+        }
+    }
 }
@@ -0,0 +1,53 @@
+package com.zrh.video
+
+import org.junit.Assert.*
+import org.junit.Test
+
+class BitrateControllerTest {
+    private val frameIntervalUs = 100_000L
+
+    /**
+     * 按固定大小写入frames帧，返回最后一次调整后的码率，没有调整时返回-1
+     */
+    private fun write(controller: BitrateController, frames: Int, size: Int, startFrame: Int = 0): Int {
+        var bitrate = -1
+        for (i in startFrame until startFrame + frames) {
+            val result = controller.onSampleWritten(size, i * frameIntervalUs)
+            if (result > 0) {
+                bitrate = result
+            }
+        }
+        return bitrate
+    }
+
+    @Test
+    fun lowersBitrateWhenOvershooting() {
+        // 目标1Mbps、时长10秒，第一秒按2Mbps输出
+        val controller = BitrateController(1_000_000, 10_000_000, 0.1f)
+        val bitrate = write(controller, 11, 25_000)
+        // 剩余975000字节需要在9秒内写完，约0.87Mbps，实际为2.2Mbps
+        assertEquals(393_939.0, bitrate.toDouble(), 1.0)
+    }
+
+    @Test
+    fun raisesBitrateWhenUndershooting() {
+        val controller = BitrateController(1_000_000, 10_000_000, 0.1f)
+        val bitrate = write(controller, 11, 5_000)
+        assertTrue(bitrate > 1_000_000)
+        assertTrue(bitrate <= 2_000_000)
+    }
+
+    @Test
+    fun noAdjustWithinFirstInterval() {
+        val controller = BitrateController(1_000_000, 10_000_000, 0.1f)
+        assertEquals(-1, write(controller, 10, 25_000))
+    }
+
+    @Test
+    fun restoredBytesCountAgainstBudget() {
+        // 恢复时预算已经用完，码率降到下限
+        val controller = BitrateController(1_000_000, 10_000_000, 0.1f)
+        controller.restore(1_250_000)
+        assertEquals(250_000, write(controller, 11, 12_500, 50))
+    }
+}
@@ -0,0 +1,88 @@
+package com.zrh.video
+
+import org.junit.After
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+import java.nio.file.Files
+
+class CompressJobStoreTest {
+    private lateinit var dir: File
+    private lateinit var store: CompressJobStore
+
+    @Before
+    fun setUp() {
+        dir = Files.createTempDirectory("jobs").toFile()
+        store = CompressJobStore(dir)
+    }
+
+    @After
+    fun tearDown() {
+        dir.deleteRecursively()
+    }
+
+    @Test
+    fun savesJobWithQuality() {
+        val job = CompressJob("a", "/sdcard/DCIM/a.mp4", "/data/out/a.mp4")
+        val quality = VideoQuality(1280, 720, 2_500_000)
+        quality.durationMs = 60_000
+        quality.audioBitrate = 128_000
+        quality.bitrateMode = VideoQuality.BITRATE_MODE_VBR
+        quality.profile = VideoQuality.PROFILE_AVC_HIGH
+        quality.iFrameInterval = 2
+        job.quality = quality
+        store.save(job)
+
+        val saved = store.get("a")!!
+        assertEquals("/sdcard/DCIM/a.mp4", saved.source)
+        assertEquals("/data/out/a.mp4", saved.output)
+        assertEquals(CompressJob.STATE_RUNNING, saved.state)
+        assertTrue(saved.updateTime > 0)
+        val savedQuality = saved.quality
+        assertEquals(1280, savedQuality.width)
+        assertEquals(720, savedQuality.height)
+        assertEquals(2_500_000, savedQuality.bitrate)
+        assertEquals(60_000L, savedQuality.durationMs)
+        assertEquals(128_000, savedQuality.audioBitrate)
+        assertEquals(VideoQuality.BITRATE_MODE_VBR, savedQuality.bitrateMode)
+        assertEquals(VideoQuality.PROFILE_AVC_HIGH, savedQuality.profile)
+        assertEquals(0, savedQuality.level)
+        assertEquals(2, savedQuality.iFrameInterval)
+    }
+
+    @Test
+    fun listsUnfinishedJobs() {
+        store.save(CompressJob("running", "content://media/1", "/data/out/1.mp4"))
+        val done = CompressJob("done", "content://media/2", "/data/out/2.mp4")
+        done.state = CompressJob.STATE_COMPLETED
+        store.save(done)
+
+        assertEquals(setOf("running", "done"), store.jobs.map { it.id }.toSet())
+        assertEquals(listOf("running"), store.unfinishedJobs.map { it.id })
+        assertNull(store.get("running")!!.quality)
+
+        // 覆盖已有记录
+        done.state = CompressJob.STATE_RUNNING
+        store.save(done)
+        assertEquals(2, store.unfinishedJobs.size)
+    }
+
+    @Test
+    fun removesJobAndJournal() {
+        store.save(CompressJob("a", "/a.mp4", "/b.mp4"))
+        store.getJournalFile("a").writeBytes(ByteArray(8))
+
+        store.remove("a")
+        assertNull(store.get("a"))
+        assertFalse(store.getJournalFile("a").exists())
+        assertTrue(store.jobs.isEmpty())
+    }
+
+    @Test
+    fun ignoresCorruptedRecord() {
+        File(dir, "bad.job").writeText("id=bad\nstate=x\n")
+        assertNull(store.get("bad"))
+        assertTrue(store.jobs.isEmpty())
+    }
+}
@@ -0,0 +1,62 @@
+package com.zrh.video
+
+import org.junit.Assert.*
+import org.junit.Test
+
+class CompressMetricsTest {
+
+    @Test
+    fun histogramBuckets() {
+        assertEquals(0, StageHistogram.getBucket(999))
+        assertEquals(1, StageHistogram.getBucket(1_000))
+        assertEquals(2, StageHistogram.getBucket(3_999))
+        assertEquals(11, StageHistogram.getBucket(1_500_000))
+        assertEquals(StageHistogram.BUCKET_COUNT - 1, StageHistogram.getBucket(Long.MAX_VALUE))
+    }
+
+    @Test
+    fun histogramPercentiles() {
+        val histogram = StageHistogram()
+        // 90次约100us，10次约10ms
+        repeat(90) { histogram.record(100_000) }
+        repeat(10) { histogram.record(10_000_000) }
+        assertEquals(100, histogram.count)
+        assertEquals(1_090_000, histogram.averageNs)
+        assertEquals(10_000_000, histogram.maxNs)
+        // 100us在[64us, 128us)的桶中
+        assertEquals(128_000, histogram.getPercentileNs(50f))
+        assertEquals(128_000, histogram.getPercentileNs(90f))
+        // 不超过最大耗时
+        assertEquals(10_000_000, histogram.getPercentileNs(99f))
+        assertEquals(0, StageHistogram().getPercentileNs(50f))
+    }
+
+    @Test
+    fun countersAndSnapshot() {
+        val metrics = CompressMetrics()
+        metrics.onFrameIn()
+        metrics.onFrameIn()
+        metrics.onFrameDecoded(true)
+        metrics.onFrameDecoded(false)
+        metrics.onFrameRendered()
+        metrics.onFrameEncoded(1000)
+        metrics.onBytesWritten(24)
+        metrics.record(CompressMetrics.STAGE_RENDER, 2_000_000)
+        metrics.addEncoderName("c2.android.avc.encoder")
+
+        val snapshot = metrics.copy()
+        metrics.onFrameRendered()
+        metrics.record(CompressMetrics.STAGE_RENDER, 2_000_000)
+        metrics.addEncoderName("c2.android.hevc.encoder")
+
+        assertEquals(2, snapshot.framesIn)
+        assertEquals(2, snapshot.framesDecoded)
+        assertEquals(1, snapshot.framesDropped)
+        assertEquals(1, snapshot.framesRendered)
+        assertEquals(1, snapshot.framesEncoded)
+        assertEquals(1024, snapshot.bytesWritten)
+        assertEquals(1, snapshot.getStage(CompressMetrics.STAGE_RENDER).count)
+        assertEquals(listOf("c2.android.avc.encoder"), snapshot.encoderNames)
+        assertEquals(2, metrics.framesRendered)
+    }
+}
@@ -0,0 +1,48 @@
+package com.zrh.video
+
+import org.junit.Assert.*
+import org.junit.Test
+import java.io.StringWriter
+
+class CompressTracerTest {
+
+    @Test
+    fun ringBufferKeepsLatestEvents() {
+        val tracer = CompressTracer(2)
+        val origin = System.nanoTime()
+        tracer.record(CompressTracer.EVENT_EXTRACT, origin, origin + 1000, 0)
+        tracer.record(CompressTracer.EVENT_DECODE, origin, origin + 1000, 0)
+        tracer.record(CompressTracer.EVENT_WRITE, origin, origin + 1000, 0)
+        assertEquals(2, tracer.size())
+        assertEquals(1, tracer.droppedCount)
+
+        val json = StringWriter().also { tracer.writeJson(it) }.toString()
+        assertFalse(json.contains("\"extract\""))
+        // 按记录顺序输出
+        assertTrue(json.indexOf("\"decode\"") < json.indexOf("\"write\""))
+    }
+
+    @Test
+    fun writesChromeTraceEvents() {
+        val tracer = CompressTracer(8)
+        val begin = System.nanoTime()
+        tracer.record(CompressTracer.EVENT_DRAW, begin, begin + 1500, 33_333)
+        tracer.record(CompressTracer.EVENT_FINISH_MOVIE, begin, begin + 2_000_000, -1)
+
+        val json = StringWriter().also { tracer.writeJson(it) }.toString()
+        assertTrue(json.startsWith("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[{"))
+        assertTrue(json.endsWith("}]}"))
+        assertTrue(json.contains("\"name\":\"draw\",\"cat\":\"render\",\"ph\":\"X\""))
+        assertTrue(json.contains("\"dur\":1.500,\"args\":{\"pts\":33333}}"))
+        assertTrue(json.contains("\"dur\":2000}"))
+    }
+
+    @Test
+    fun clear() {
+        val tracer = CompressTracer(4)
+        tracer.record(CompressTracer.EVENT_SWAP, 0, 1, -1)
+        tracer.clear()
+        assertEquals(0, tracer.size())
+        assertEquals("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[]}", StringWriter().also { tracer.writeJson(it) }.toString())
+    }
+}
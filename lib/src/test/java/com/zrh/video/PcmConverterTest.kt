@@ -0,0 +1,138 @@
+package com.zrh.video
+
+import android.media.AudioFormat
+import org.junit.Assert.*
+import org.junit.Test
+import java.nio.ShortBuffer
+
+class PcmConverterTest {
+
+    @Test
+    fun downmixSurroundToStereo() {
+        val converter = PcmConverter(6, 48000, 2, 48000)
+        // L R C LFE Ls Rs，两帧
+        val input = ShortBuffer.wrap(shortArrayOf(
+            1000, 0, 0, 30000, 0, 0,
+            1000, 0, 0, 30000, 0, 0
+        ))
+        val output = ShortBuffer.allocate(converter.getMaxOutputSamples(input.remaining()))
+        // 第一帧用于插值，两帧输入只输出一帧
+        assertEquals(2, converter.convert(input, output))
+        val scale = 1 / (1 + 2 * 0.7071f)
+        assertEquals(Math.round(1000 * scale).toShort(), output.get(0))
+        // 低音声道不混入
+        assertEquals(0.toShort(), output.get(1))
+    }
+
+    @Test
+    fun stereoToMono() {
+        val converter = PcmConverter(2, 44100, 1, 44100)
+        val input = ShortBuffer.wrap(shortArrayOf(100, 300, 100, 300, 100, 300))
+        val output = ShortBuffer.allocate(converter.getMaxOutputSamples(input.remaining()))
+        assertEquals(2, converter.convert(input, output))
+        assertEquals(200.toShort(), output.get(0))
+        assertEquals(200.toShort(), output.get(1))
+    }
+
+    @Test
+    fun downsampleAcrossChunks() {
+        // 96kHz -> 48kHz，分块输入与一次输入的结果一致
+        val samples = ShortArray(200) { (it * 10).toShort() }
+        val whole = PcmConverter(1, 96000, 1, 48000)
+        val wholeOutput = ShortBuffer.allocate(whole.getMaxOutputSamples(samples.size))
+        whole.convert(ShortBuffer.wrap(samples), wholeOutput)
+
+        val chunked = PcmConverter(1, 96000, 1, 48000)
+        val chunkedOutput = ShortBuffer.allocate(wholeOutput.capacity())
+        for (start in samples.indices step 37) {
+            val end = minOf(start + 37, samples.size)
+            chunked.convert(ShortBuffer.wrap(samples, start, end - start), chunkedOutput)
+        }
+        assertEquals(100, wholeOutput.position())
+        assertEquals(wholeOutput.position(), chunkedOutput.position())
+        for (i in 0 until wholeOutput.position()) {
+            assertEquals(wholeOutput.get(i), chunkedOutput.get(i))
+        }
+        // 低通滤波器填满后斜坡保持不变，只延迟31个输入帧
+        for (i in 32 until wholeOutput.position()) {
+            assertEquals((i * 20 - 310).toFloat(), wholeOutput.get(i).toFloat(), 1f)
+        }
+    }
+
+    @Test
+    fun downsampleRemovesAliasing() {
+        // 96kHz下30kHz的正弦超出48kHz的奈奎斯特频率，不滤波时会混叠为18kHz
+        val samples = ShortArray(9600) { (10000 * Math.sin(2 * Math.PI * 30000 * it / 96000)).toInt().toShort() }
+        val converter = PcmConverter(1, 96000, 1, 48000)
+        val output = ShortBuffer.allocate(converter.getMaxOutputSamples(samples.size))
+        converter.convert(ShortBuffer.wrap(samples), output)
+        var peak = 0
+        for (i in 100 until output.position()) {
+            peak = maxOf(peak, Math.abs(output.get(i).toInt()))
+        }
+        assertTrue("peak $peak", peak < 100)
+    }
+
+    @Test
+    fun downsampleKeepsPassband() {
+        val samples = ShortArray(9600) { (10000 * Math.sin(2 * Math.PI * 1000 * it / 96000)).toInt().toShort() }
+        val converter = PcmConverter(1, 96000, 1, 48000)
+        val output = ShortBuffer.allocate(converter.getMaxOutputSamples(samples.size))
+        converter.convert(ShortBuffer.wrap(samples), output)
+        var peak = 0
+        for (i in 100 until output.position()) {
+            peak = maxOf(peak, Math.abs(output.get(i).toInt()))
+        }
+        assertEquals(10000f, peak.toFloat(), 100f)
+    }
+
+    @Test
+    fun downmixQuad() {
+        // 4声道按FL FR BL BR处理，后置声道混入同侧
+        val converter = PcmConverter(4, 48000, 2, 48000)
+        val input = ShortBuffer.wrap(shortArrayOf(1000, 0, 2000, 0, 1000, 0, 2000, 0))
+        val output = ShortBuffer.allocate(converter.getMaxOutputSamples(input.remaining()))
+        assertEquals(2, converter.convert(input, output))
+        assertEquals(Math.round((1000 + 2000 * 0.7071f) / (1 + 0.7071f)).toShort(), output.get(0))
+        assertEquals(0.toShort(), output.get(1))
+    }
+
+    @Test
+    fun downmixFivePointZero() {
+        // 5声道按FL FR FC BL BR处理，右后只混入右声道
+        val converter = PcmConverter(5, 48000, 2, 48000)
+        val input = ShortBuffer.wrap(shortArrayOf(0, 0, 0, 0, 1000, 0, 0, 0, 0, 1000))
+        val output = ShortBuffer.allocate(converter.getMaxOutputSamples(input.remaining()))
+        assertEquals(2, converter.convert(input, output))
+        assertEquals(0.toShort(), output.get(0))
+        assertEquals(Math.round(1000 * 0.7071f / (1 + 2 * 0.7071f)).toShort(), output.get(1))
+    }
+
+    @Test
+    fun downmixUsesChannelMask() {
+        // 声道掩码为FL FR FC LFE时第4个声道是低音而不是右后
+        val mask = AudioFormat.CHANNEL_OUT_STEREO or AudioFormat.CHANNEL_OUT_FRONT_CENTER or AudioFormat.CHANNEL_OUT_LOW_FREQUENCY
+        val converter = PcmConverter(4, mask, 48000, 2, 48000)
+        val input = ShortBuffer.wrap(shortArrayOf(0, 0, 1000, 30000, 0, 0, 1000, 30000))
+        val output = ShortBuffer.allocate(converter.getMaxOutputSamples(input.remaining()))
+        assertEquals(2, converter.convert(input, output))
+        val expected = Math.round(1000 * 0.7071f / (1 + 0.7071f)).toShort()
+        assertEquals(expected, output.get(0))
+        assertEquals(expected, output.get(1))
+    }
+
+    @Test
+    fun mismatchedMaskFallsBackToCount() {
+        assertEquals(AudioFormat.CHANNEL_OUT_QUAD, PcmConverter.getChannelMask(4, AudioFormat.CHANNEL_OUT_STEREO))
+        assertEquals(AudioFormat.CHANNEL_OUT_5POINT1, PcmConverter.getChannelMask(6, 0))
+    }
+
+    @Test
+    fun upsampleInterpolates() {
+        val converter = PcmConverter(1, 24000, 1, 48000)
+        val input = ShortBuffer.wrap(shortArrayOf(0, 100, 200))
+        val output = ShortBuffer.allocate(converter.getMaxOutputSamples(input.remaining()))
+        assertEquals(4, converter.convert(input, output))
+        assertArrayEquals(shortArrayOf(0, 50, 100, 150), output.array().copyOf(4))
+    }
+}
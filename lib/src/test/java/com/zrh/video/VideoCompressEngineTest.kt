@@ -0,0 +1,56 @@
+package com.zrh.video
+
+import com.zrh.video.filter.ColorMatrixFilter
+import com.zrh.video.filter.CropFilter
+import com.zrh.video.filter.RotateFilter
+import com.zrh.video.filter.VideoFilterChain
+import org.junit.Assert.*
+import org.junit.Test
+
+class VideoCompressEngineTest {
+
+    @Test
+    fun plainJobCanUseSource() {
+        assertTrue(VideoCompressEngine.canUseSource(VideoCompressConfig(), false))
+    }
+
+    @Test
+    fun filteredJobNeverUsesSource() {
+        val filters = listOf(
+            CropFilter(0f, 0f, 0.5f, 1f),
+            RotateFilter(90),
+            ColorMatrixFilter.saturation(0f)
+        )
+        for (filter in filters) {
+            val config = VideoCompressConfig()
+            config.filterChain = VideoFilterChain().add(filter)
+            assertFalse(VideoCompressEngine.canUseSource(config, false))
+        }
+    }
+
+    @Test
+    fun emptyFilterChainCanUseSource() {
+        val config = VideoCompressConfig()
+        config.filterChain = VideoFilterChain()
+        assertTrue(VideoCompressEngine.canUseSource(config, false))
+    }
+
+    @Test
+    fun trimmedJobNeverUsesSource() {
+        val config = VideoCompressConfig()
+        config.setTimeRange(1000, 0)
+        assertFalse(VideoCompressEngine.canUseSource(config, false))
+    }
+
+    @Test
+    fun hdrJobNeverUsesSource() {
+        assertFalse(VideoCompressEngine.canUseSource(VideoCompressConfig(), true))
+    }
+
+    @Test
+    fun projectedSizeIncludesAudio() {
+        // 前2秒写入500KB视频，10秒共2.5MB，加上128kbps音频160KB
+        assertEquals(2_500_000L, VideoCompressEngine.projectSize(500_000, 2_000_000, 10_000_000, 0))
+        assertEquals(2_660_000L, VideoCompressEngine.projectSize(500_000, 2_000_000, 10_000_000, 128_000))
+    }
+}
@@ -0,0 +1,193 @@
+package com.zrh.video
+
+import com.zrh.video.codec.FakeDecoder
+import com.zrh.video.codec.FakeEncoder
+import com.zrh.video.codec.FakeFrameRenderer
+import com.zrh.video.codec.FakeFrameTarget
+import com.zrh.video.codec.FakeSampleSink
+import com.zrh.video.codec.FakeSampleSource
+import org.junit.Assert.*
+import org.junit.Test
+import java.io.File
+
+class VideoPipelineTest {
+    private val frameIntervalUs = 33_333L
+
+    private class Output(val rendition: VideoRendition, val encoder: FakeEncoder, val target: FakeFrameTarget, val sink: FakeSampleSink)
+
+    private open class TestCallback : VideoPipeline.Callback {
+        var running = true
+        var progress = 0f
+
+        override fun isRunning(): Boolean = running
+
+        override fun onProgress(percent: Float) {
+            progress = percent
+        }
+
+        override fun checkOversize(rendition: VideoRendition, presentationTimeUs: Long): Boolean = false
+    }
+
+    private fun createOutput(): Output {
+        val encoder = FakeEncoder()
+        val target = FakeFrameTarget(encoder)
+        val sink = FakeSampleSink()
+        val rendition = VideoRendition(VideoQuality(1280, 720, 2_000_000), File("out.mp4"))
+        rendition.encoder = encoder
+        rendition.inputSurface = target
+        rendition.sink = sink
+        return Output(rendition, encoder, target, sink)
+    }
+
+    private fun createPipeline(
+        source: FakeSampleSource,
+        renderer: FakeFrameRenderer,
+        outputs: List<Output>,
+        callback: VideoPipeline.Callback
+    ): VideoPipeline {
+        val pipeline = VideoPipeline(source, 0, FakeDecoder(renderer), renderer, outputs.map { it.rendition }, callback)
+        pipeline.setDurationMs(1000)
+        return pipeline
+    }
+
+    @Test
+    fun encodesEveryFrame() {
+        val renderer = FakeFrameRenderer()
+        val output = createOutput()
+        val callback = TestCallback()
+        val metrics = CompressMetrics()
+        val pipeline = createPipeline(FakeSampleSource(0, 30, frameIntervalUs), renderer, listOf(output), callback)
+        pipeline.setMetrics(metrics)
+
+        assertTrue(pipeline.run())
+        // 编码配置不写入，轨道在第一个样本之前添加
+        assertEquals(1, output.sink.trackCount)
+        assertEquals(0, output.rendition.videoTrackIndex)
+        assertEquals((0 until 30).map { it * frameIntervalUs }, output.sink.samples.map { it.timeUs })
+        assertTrue(output.rendition.outputDone)
+        // 解码器始终只领先一帧
+        assertEquals(1, renderer.maxPendingFrames)
+        assertEquals(30, renderer.drawCount)
+        assertEquals(96.7f, callback.progress, 0.1f)
+        assertEquals(30, metrics.framesIn)
+        assertEquals(30, metrics.framesRendered)
+        assertEquals(30, metrics.framesEncoded)
+        assertEquals(30_000, metrics.bytesWritten)
+    }
+
+    @Test
+    fun trimsTimeRange() {
+        val output = createOutput()
+        val renderer = FakeFrameRenderer()
+        val source = FakeSampleSource(0, 30, frameIntervalUs)
+        val pipeline = createPipeline(source, renderer, listOf(output), TestCallback())
+        pipeline.setTimeRange(10 * frameIntervalUs, 20 * frameIntervalUs)
+
+        assertTrue(pipeline.run())
+        // 起始时间之前的帧只解码，时间戳从0开始
+        assertEquals((0..10).map { it * frameIntervalUs }, output.sink.samples.map { it.timeUs })
+        // 超出结束时间后不再读取
+        assertEquals(21, source.index)
+    }
+
+    @Test
+    fun resumesFromCheckpoint() {
+        val output = createOutput()
+        val renderer = FakeFrameRenderer()
+        val source = FakeSampleSource(0, 30, frameIntervalUs)
+        val pipeline = createPipeline(source, renderer, listOf(output), TestCallback())
+        pipeline.setTimeRange(5 * frameIntervalUs, Long.MAX_VALUE)
+        pipeline.setResumeTimeUs(10 * frameIntervalUs)
+
+        assertTrue(pipeline.run())
+        // 恢复时间之前的帧只解码，时间戳与第一次压缩时一致
+        assertEquals((10 until 25).map { it * frameIntervalUs }, output.sink.samples.map { it.timeUs })
+        assertEquals(15, renderer.drawCount)
+    }
+
+    @Test
+    fun dropsFramesForLowerFrameRate() {
+        val output = createOutput()
+        val metrics = CompressMetrics()
+        val pipeline = createPipeline(FakeSampleSource(0, 60, 16_667), FakeFrameRenderer(), listOf(output), TestCallback())
+        pipeline.setFrameRateController(FrameRateController(30, 60), false)
+        pipeline.setMetrics(metrics)
+
+        assertTrue(pipeline.run())
+        assertEquals(30, output.sink.samples.size)
+        assertEquals(60, metrics.framesDecoded)
+        assertEquals(30, metrics.framesDropped)
+    }
+
+    @Test
+    fun skippedFramesStopAtTrimEnd() {
+        val output = createOutput()
+        // 全部为非参考B帧的Annex-B样本
+        val nonRefBSlice = byteArrayOf(0, 0, 0, 1, 0x01, 0x9E.toByte(), 0x42, 0x45, 0x11, 0x2C)
+        val source = FakeSampleSource(0, 60, 16_667, sampleData = { nonRefBSlice })
+        val pipeline = createPipeline(source, FakeFrameRenderer(), listOf(output), TestCallback())
+        pipeline.setTimeRange(0, 21 * 16_667L)
+        pipeline.setFrameRateController(FrameRateController(30, 60), true)
+
+        assertTrue(pipeline.run())
+        // 跳过最后一个范围内的帧后不再读取超出结束时间的样本
+        assertEquals(22, source.index)
+        assertTrue(output.sink.samples.all { it.timeUs <= 21 * 16_667L })
+    }
+
+    @Test
+    fun drawsOnceForEveryOutput() {
+        val renderer = FakeFrameRenderer()
+        val outputs = listOf(createOutput(), createOutput())
+        val pipeline = createPipeline(FakeSampleSource(0, 30, frameIntervalUs), renderer, outputs, TestCallback())
+
+        assertTrue(pipeline.run())
+        for (output in outputs) {
+            assertEquals(30, output.sink.samples.size)
+            assertEquals(30, output.target.makeCurrentCount)
+        }
+        assertEquals(60, renderer.drawCount)
+    }
+
+    @Test
+    fun stopsWhenCancelled() {
+        val output = createOutput()
+        val callback = object : TestCallback() {
+            override fun onProgress(percent: Float) {
+                super.onProgress(percent)
+                if (percent >= 50) running = false
+            }
+        }
+        val pipeline = createPipeline(FakeSampleSource(0, 30, frameIntervalUs), FakeFrameRenderer(), listOf(output), callback)
+
+        assertFalse(pipeline.run())
+        assertTrue(output.sink.samples.size < 30)
+        assertFalse(output.rendition.outputDone)
+    }
+
+    @Test
+    fun stopsWhenOversize() {
+        val output = createOutput()
+        val callback = object : TestCallback() {
+            override fun checkOversize(rendition: VideoRendition, presentationTimeUs: Long): Boolean =
+                rendition.sink.writtenSize >= 5_000
+        }
+        val pipeline = createPipeline(FakeSampleSource(0, 30, frameIntervalUs), FakeFrameRenderer(), listOf(output), callback)
+
+        assertTrue(pipeline.run())
+        assertTrue(pipeline.isOversize)
+        assertEquals(5, output.sink.samples.size)
+    }
+
+    @Test
+    fun adjustsBitrate() {
+        val output = createOutput()
+        // 每帧1000字节、30fps约240kbps，远低于目标码率时按上限提高码率
+        output.rendition.bitrateController = BitrateController(2_000_000, 90 * frameIntervalUs, 0.05f)
+        val pipeline = createPipeline(FakeSampleSource(0, 90, frameIntervalUs), FakeFrameRenderer(), listOf(output), TestCallback())
+
+        assertTrue(pipeline.run())
+        assertEquals(90, output.sink.samples.size)
+        assertEquals(4_000_000, output.encoder.bitrate)
+    }
+}
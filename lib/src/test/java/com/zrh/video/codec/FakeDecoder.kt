@@ -0,0 +1,81 @@
+package com.zrh.video.codec
+
+import android.media.MediaFormat
+import java.nio.ByteBuffer
+
+/**
+ * 输入的样本在缓存latency帧后按原时间戳输出，绘制的帧交给renderer
+ */
+class FakeDecoder(
+    private val renderer: FakeFrameRenderer,
+    private val latency: Int = 2,
+    inputBufferCount: Int = 4
+) : VideoCodec {
+    private class Frame(val timeUs: Long, val size: Int, val flags: Int)
+
+    private val inputBuffers = Array(inputBufferCount) { ByteBuffer.allocate(1024) }
+    private val freeInputs = ArrayDeque((0 until inputBufferCount).toList())
+    private val decoding = ArrayDeque<Frame>()
+    private val outputs = ArrayDeque<Frame>()
+    private val dequeued = HashMap<Int, Frame>()
+    private var nextOutputIndex = 0
+    private var formatReported = false
+    var started = false
+        private set
+    var released = false
+        private set
+
+    override fun getName(): String = "fake.decoder"
+
+    override fun start() {
+        started = true
+    }
+
+    override fun dequeueInputBuffer(timeoutUs: Long): Int = freeInputs.removeFirstOrNull() ?: -1
+
+    override fun getInputBuffer(index: Int): ByteBuffer = inputBuffers[index]
+
+    override fun queueInputBuffer(index: Int, offset: Int, size: Int, presentationTimeUs: Long, flags: Int) {
+        freeInputs.addLast(index)
+        decoding.addLast(Frame(presentationTimeUs, size, flags))
+        val eos = flags and VideoCodec.BUFFER_FLAG_END_OF_STREAM != 0
+        while (decoding.size > latency || (eos && decoding.isNotEmpty())) {
+            outputs.addLast(decoding.removeFirst())
+        }
+    }
+
+    override fun dequeueOutputBuffer(info: CodecBufferInfo, timeoutUs: Long): Int {
+        if (!formatReported) {
+            formatReported = true
+            return VideoCodec.INFO_OUTPUT_FORMAT_CHANGED
+        }
+        val frame = outputs.removeFirstOrNull() ?: return VideoCodec.INFO_TRY_AGAIN_LATER
+        info.set(0, frame.size, frame.timeUs, frame.flags)
+        val index = nextOutputIndex++
+        dequeued[index] = frame
+        return index
+    }
+
+    override fun getOutputBuffer(index: Int): ByteBuffer? = null
+
+    override fun getOutputFormat(): MediaFormat? = null
+
+    override fun releaseOutputBuffer(index: Int, render: Boolean) {
+        val frame = dequeued.remove(index) ?: throw IllegalStateException("unknown output buffer $index")
+        if (render) {
+            renderer.onFrameAvailable(frame.timeUs)
+        }
+    }
+
+    override fun signalEndOfInputStream() {
+        throw IllegalStateException("decoder input is not a surface")
+    }
+
+    override fun setVideoBitrate(bitrate: Int) {}
+
+    override fun stop() {}
+
+    override fun release() {
+        released = true
+    }
+}
@@ -0,0 +1,74 @@
+package com.zrh.video.codec
+
+import android.media.MediaFormat
+import java.nio.ByteBuffer
+
+/**
+ * 每个输入帧输出一个固定大小的样本，先输出格式变化和编码配置，结束输入后输出结束标记
+ */
+class FakeEncoder(
+    private val frameSize: Int = 1000,
+    private val keyFrameInterval: Int = 30
+) : VideoCodec {
+    private class Sample(val timeUs: Long, val size: Int, val flags: Int)
+
+    private val outputs = ArrayDeque<Sample>()
+    private val buffer = ByteBuffer.allocate(frameSize)
+    private var formatReported = false
+    private var inputFrames = 0
+    var bitrate = 0
+        private set
+
+    init {
+        outputs.addLast(Sample(0, 16, VideoCodec.BUFFER_FLAG_CODEC_CONFIG))
+    }
+
+    fun onInputFrame(timeUs: Long) {
+        val flags = if (inputFrames % keyFrameInterval == 0) VideoCodec.BUFFER_FLAG_KEY_FRAME else 0
+        outputs.addLast(Sample(timeUs, frameSize, flags))
+        inputFrames++
+    }
+
+    override fun getName(): String = "fake.encoder"
+
+    override fun start() {}
+
+    override fun dequeueInputBuffer(timeoutUs: Long): Int = throw IllegalStateException("encoder input is a surface")
+
+    override fun getInputBuffer(index: Int): ByteBuffer = throw IllegalStateException("encoder input is a surface")
+
+    override fun queueInputBuffer(index: Int, offset: Int, size: Int, presentationTimeUs: Long, flags: Int) {
+        throw IllegalStateException("encoder input is a surface")
+    }
+
+    override fun dequeueOutputBuffer(info: CodecBufferInfo, timeoutUs: Long): Int {
+        if (!formatReported) {
+            formatReported = true
+            return VideoCodec.INFO_OUTPUT_FORMAT_CHANGED
+        }
+        val sample = outputs.removeFirstOrNull() ?: return VideoCodec.INFO_TRY_AGAIN_LATER
+        info.set(0, sample.size, sample.timeUs, sample.flags)
+        return 0
+    }
+
+    override fun getOutputBuffer(index: Int): ByteBuffer {
+        buffer.clear()
+        return buffer
+    }
+
+    override fun getOutputFormat(): MediaFormat? = null
+
+    override fun releaseOutputBuffer(index: Int, render: Boolean) {}
+
+    override fun signalEndOfInputStream() {
+        outputs.addLast(Sample(0, 0, VideoCodec.BUFFER_FLAG_END_OF_STREAM))
+    }
+
+    override fun setVideoBitrate(bitrate: Int) {
+        this.bitrate = bitrate
+    }
+
+    override fun stop() {}
+
+    override fun release() {}
+}
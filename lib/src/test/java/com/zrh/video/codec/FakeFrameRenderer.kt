@@ -0,0 +1,27 @@
+package com.zrh.video.codec
+
+/**
+ * 记录解码器送达的帧，awaitNewImage时没有帧则抛出异常
+ */
+class FakeFrameRenderer : FrameRenderer {
+    private val available = ArrayDeque<Long>()
+    var drawCount = 0
+        private set
+    var maxPendingFrames = 0
+        private set
+
+    fun onFrameAvailable(timeUs: Long) {
+        available.addLast(timeUs)
+        maxPendingFrames = maxOf(maxPendingFrames, available.size)
+    }
+
+    override fun awaitNewImage() {
+        available.removeFirstOrNull() ?: throw IllegalStateException("no frame available")
+    }
+
+    override fun drawImage(invert: Boolean) {
+        drawCount++
+    }
+
+    override fun release() {}
+}
@@ -0,0 +1,25 @@
+package com.zrh.video.codec
+
+/**
+ * swapBuffers时把画面交给编码器
+ */
+class FakeFrameTarget(private val encoder: FakeEncoder) : FrameTarget {
+    private var presentationTimeNs = 0L
+    var makeCurrentCount = 0
+        private set
+
+    override fun makeCurrent() {
+        makeCurrentCount++
+    }
+
+    override fun setPresentationTime(nsecs: Long) {
+        presentationTimeNs = nsecs
+    }
+
+    override fun swapBuffers(): Boolean {
+        encoder.onInputFrame(presentationTimeNs / 1000)
+        return true
+    }
+
+    override fun release() {}
+}
@@ -0,0 +1,28 @@
+package com.zrh.video.codec
+
+import android.media.MediaFormat
+import java.nio.ByteBuffer
+
+/**
+ * 记录写入的样本，轨道未添加时写入会抛出异常
+ */
+class FakeSampleSink : SampleSink {
+    data class Sample(val trackIndex: Int, val timeUs: Long, val size: Int, val flags: Int)
+
+    val samples = ArrayList<Sample>()
+    var trackCount = 0
+        private set
+    private var writtenSize = 0L
+
+    override fun addTrack(format: MediaFormat?, isAudio: Boolean): Int = trackCount++
+
+    override fun writeSampleData(trackIndex: Int, buffer: ByteBuffer, info: CodecBufferInfo, isAudio: Boolean) {
+        if (trackIndex !in 0 until trackCount) {
+            throw IllegalStateException("track $trackIndex not added")
+        }
+        samples.add(Sample(trackIndex, info.presentationTimeUs, info.size, info.flags))
+        writtenSize += info.size
+    }
+
+    override fun getWrittenSize(): Long = writtenSize
+}
@@ -0,0 +1,42 @@
+package com.zrh.video.codec
+
+import java.nio.ByteBuffer
+
+/**
+ * 按固定帧间隔生成样本，内容为帧序号，指定sampleData时使用其返回的数据
+ */
+class FakeSampleSource(
+    private val trackIndex: Int,
+    private val frameCount: Int,
+    private val frameIntervalUs: Long,
+    private val sampleSize: Int = 64,
+    private val sampleData: ((Int) -> ByteArray)? = null
+) : SampleSource {
+    var index = 0
+        private set
+
+    override fun getSampleTrackIndex(): Int = if (index < frameCount) trackIndex else -1
+
+    override fun getSampleTime(): Long = if (index < frameCount) index * frameIntervalUs else -1
+
+    override fun readSampleData(buffer: ByteBuffer, offset: Int): Int {
+        if (index >= frameCount) return -1
+        buffer.clear()
+        buffer.position(offset)
+        val data = sampleData?.invoke(index)
+        if (data != null) {
+            buffer.put(data)
+        } else {
+            for (i in 0 until sampleSize) {
+                buffer.put(index.toByte())
+            }
+        }
+        buffer.flip()
+        return data?.size ?: sampleSize
+    }
+
+    override fun advance(): Boolean {
+        index++
+        return index < frameCount
+    }
+}
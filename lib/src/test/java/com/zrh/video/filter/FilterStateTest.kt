@@ -0,0 +1,68 @@
+package com.zrh.video.filter
+
+import org.junit.Assert.*
+import org.junit.Test
+
+class FilterStateTest {
+
+    @Test
+    fun cropAndRotateOutputSize() {
+        val chain = VideoFilterChain()
+            .add(CropFilter(0f, 0f, 0.5f, 1f))
+            .add(RotateFilter(90))
+        assertArrayEquals(intArrayOf(720, 640), chain.getOutputSize(1280, 720))
+    }
+
+    @Test
+    fun cropAfterRotateMapsToSource() {
+        // 顺时针旋转90度后画面的上半部分对应原画面的左半部分
+        val state = VideoFilterChain()
+            .add(RotateFilter(90))
+            .add(CropFilter(0f, 0f, 1f, 0.5f))
+            .createState()
+        assertArrayEquals(floatArrayOf(0f, 0f, 0.5f, 1f), state.crop, 1e-6f)
+        assertEquals(90, state.rotation)
+    }
+
+    @Test
+    fun nestedCrop() {
+        val state = VideoFilterChain()
+            .add(CropFilter(0.5f, 0.5f, 1f, 1f))
+            .add(CropFilter(0f, 0f, 0.5f, 0.5f))
+            .createState()
+        assertArrayEquals(floatArrayOf(0.5f, 0.5f, 0.75f, 0.75f), state.crop, 1e-6f)
+    }
+
+    @Test
+    fun rotationWrapsAround() {
+        val state = VideoFilterChain()
+            .add(RotateFilter(270))
+            .add(RotateFilter(180))
+            .createState()
+        assertEquals(90, state.rotation)
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun rejectsArbitraryRotation() {
+        RotateFilter(45)
+    }
+
+    @Test
+    fun colorMatrixWithOffset() {
+        // 反色：c' = -c + 255
+        val invert = floatArrayOf(
+            -1f, 0f, 0f, 0f, 255f,
+            0f, -1f, 0f, 0f, 255f,
+            0f, 0f, -1f, 0f, 255f,
+            0f, 0f, 0f, 1f, 0f
+        )
+        val state = VideoFilterChain()
+            .add(ColorMatrixFilter(invert))
+            .add(ColorMatrixFilter(invert))
+            .createState()
+        // 两次反色后还原
+        val identity = floatArrayOf(1f, 0f, 0f, 0f, 0f, 1f, 0f, 0f, 0f, 0f, 1f, 0f, 0f, 0f, 0f, 1f)
+        assertArrayEquals(identity, state.colorMatrix, 1e-6f)
+        assertArrayEquals(floatArrayOf(0f, 0f, 0f, 0f), state.colorOffset, 1e-6f)
+    }
+}